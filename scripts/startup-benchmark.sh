@@ -0,0 +1,49 @@
+#!/usr/bin/env bash
+#
+# 启动耗时与内存基准测试
+#
+# 分别以普通模式和 AppCDS 模式执行若干次 --once 单次查询，
+# 统计 JVM 启动到首次请求完成的耗时（time-to-first-request）以及进程常驻内存（RSS / 峰值RSS，读取自 /proc/self/status）。
+#
+# 用法：
+#   mvn -B package -Pcds -Dmaven.test.skip=true
+#   scripts/startup-benchmark.sh [jar路径] [jsa路径] [执行次数]
+#
+# 在项目根目录执行，查询使用 CONFIG_DIR（默认 src/main/resources）下的 config.json。
+#
+set -euo pipefail
+
+JAR=${1:-$(ls target/apple-monitor-*.jar | grep -v original | head -n 1)}
+JSA=${2:-${JAR%.jar}.jsa}
+RUNS=${3:-5}
+CONFIG_DIR=${CONFIG_DIR:-src/main/resources}
+
+run_mode() {
+  local name=$1
+  shift
+  local total_ttfr=0
+  local total_rss=0
+  for i in $(seq 1 "$RUNS"); do
+    local out
+    out=$(java "$@" -jar "$JAR" --once 2>&1)
+    local ttfr rss
+    ttfr=$(echo "$out" | grep -o 'time-to-first-request=[0-9]*' | tail -n 1 | cut -d= -f2)
+    rss=$(echo "$out" | grep -o 'max-rss-kb=[0-9]*' | tail -n 1 | cut -d= -f2)
+    printf '%-8s run %2d  time-to-first-request=%6sms  max-rss=%6sKB\n' "$name" "$i" "${ttfr:-?}" "${rss:-?}"
+    total_ttfr=$((total_ttfr + ${ttfr:-0}))
+    total_rss=$((total_rss + ${rss:-0}))
+  done
+  printf '%-8s avg     time-to-first-request=%6sms  max-rss=%6sKB\n\n' "$name" $((total_ttfr / RUNS)) $((total_rss / RUNS))
+}
+
+JAR=$(realpath "$JAR")
+[ -f "$JSA" ] && JSA=$(realpath "$JSA")
+cd "$CONFIG_DIR"
+
+run_mode default -Xshare:auto
+if [ -f "$JSA" ]; then
+  run_mode appcds -XX:SharedArchiveFile="$JSA" -Xshare:auto
+  run_mode cds+sgc -XX:SharedArchiveFile="$JSA" -Xshare:auto -XX:+UseSerialGC
+else
+  echo "未找到CDS归档 $JSA，请先执行 mvn -B package -Pcds" >&2
+fi
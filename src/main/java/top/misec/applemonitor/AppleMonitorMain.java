@@ -1,14 +1,37 @@
 package top.misec.applemonitor;
 
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.*;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
 
+import cn.hutool.core.convert.Convert;
+import cn.hutool.core.date.DateUtil;
+import cn.hutool.core.io.FileUtil;
 import cn.hutool.core.util.StrUtil;
 import cn.hutool.cron.CronUtil;
-import cn.hutool.setting.Setting;
+import cn.hutool.cron.task.Task;
+import cn.hutool.http.HttpGlobalConfig;
 import lombok.extern.slf4j.Slf4j;
+import top.misec.applemonitor.api.ApiServer;
+import top.misec.applemonitor.cluster.ClusterNode;
 import top.misec.applemonitor.config.AppCfg;
+import top.misec.applemonitor.config.AppleTaskConfig;
 import top.misec.applemonitor.config.CfgSingleton;
+import top.misec.applemonitor.config.DeviceItem;
+import top.misec.applemonitor.http.ConnectionPrewarmer;
+import top.misec.applemonitor.http.EgressPool;
+import top.misec.applemonitor.job.AppleMonitor;
+import top.misec.applemonitor.replay.RecordedResponse;
+import top.misec.applemonitor.replay.ReplayHarness;
+import top.misec.applemonitor.replay.ResponseRecorder;
+import top.misec.applemonitor.state.CheckpointManager;
+import top.misec.applemonitor.sweep.CatalogSweep;
+import top.misec.applemonitor.sweep.SweepMatrix;
 
 /**
  * Apple库存监控程序主入口类
@@ -36,13 +59,38 @@ public class AppleMonitorMain {
      * 4. 初始化并启动定时任务
      * 5. 保持程序运行状态
      * 
-     * @param args 命令行参数（暂未使用）
+     * @param args 命令行参数，支持 --once（仅执行一次查询后退出，用于AppCDS训练和启动耗时测试）
      */
     public static void main(String[] args) {
 
         // 获取配置单例实例
         AppCfg appCfg = CfgSingleton.getInstance().config;
 
+        // 设置全局HTTP超时，覆盖推送SDK等未单独设置超时的请求
+        if (appCfg != null) {
+            HttpGlobalConfig.setTimeout(appCfg.getHttpConfig().getReadTimeoutMillis());
+            // DNS缓存时间需在第一次域名解析前设置
+            ConnectionPrewarmer.applyDnsPolicy(appCfg.getPrewarmConfig());
+        }
+
+        // 单次执行模式
+        if (Arrays.asList(args).contains("--once")) {
+            runOnce(appCfg);
+            return;
+        }
+
+        // 全型号扫描模式
+        if (Arrays.asList(args).contains("--sweep")) {
+            runSweep(appCfg, args);
+            return;
+        }
+
+        // 离线回放模式
+        if (option(args, "--replay") != null) {
+            runReplay(appCfg, args);
+            return;
+        }
+
         // 验证配置是否有效
         if (appCfg.getAppleTaskConfig().valid()) {
 
@@ -55,13 +103,26 @@ public class AppleMonitorMain {
             // 提示用户推荐的cron表达式，避免请求过于频繁被限制
             log.info("您本次共监控{}个机型，过短的执行时间间隔会导致请求被限制，建议您的cron表达式设置为:{}", size, cronExpress);
 
-            // 创建定时任务配置
-            Setting setting = new Setting();
-            // 设置AppleMonitor.monitor方法的执行时间表达式
-            setting.set("top.misec.applemonitor.job.AppleMonitor.monitor", appCfg.getAppleTaskConfig().cronExpressions);
+            // 开启集群模式时启动心跳服务，各节点按一致性哈希分摊监控目标
+            ClusterNode clusterNode = ClusterNode.getInstance();
+            if (clusterNode != null) {
+                log.info("集群模式已开启，本节点:{}，存活节点:{}", clusterNode.getSelfId(), clusterNode.getLiveNodes());
+            }
+
+            // 开启运行状态检查点时，先恢复上次保存的状态，第一轮监控即按恢复的状态去重和控制节奏
+            CheckpointManager.getInstance();
+
+            // 开启本地查询接口时启动内置HTTP服务
+            ApiServer.getInstance();
+
+            // 开启连接预热时，每轮监控前预先解析域名并建立连接
+            ConnectionPrewarmer.getInstance();
+
+            // 监控引擎在整个运行期间只创建一次，预编译的请求和白名单在每轮监控中复用
+            AppleMonitor monitor = new AppleMonitor();
+            // 设置监控任务的执行时间表达式，上一轮未结束时由监控引擎跳过本次触发
+            CronUtil.schedule(appCfg.getAppleTaskConfig().cronExpressions, (Task) monitor::monitor);
 
-            // 应用cron配置
-            CronUtil.setCronSetting(setting);
             // 启用秒级匹配（支持秒级cron表达式）
             CronUtil.setMatchSecond(true);
             // 启动定时任务（守护线程模式）
@@ -83,4 +144,139 @@ public class AppleMonitorMain {
 
     }
 
+    /**
+     * 单次执行模式
+     *
+     * 仅对第一个设备发起一次查询后退出，不启动定时任务。
+     * 用于生成AppCDS归档（训练运行）以及统计启动到首次请求完成的耗时，
+     * 查询失败不影响退出码，保证构建流程不因网络问题中断。
+     *
+     * @param appCfg 应用配置
+     */
+    private static void runOnce(AppCfg appCfg) {
+        if (appCfg == null || !appCfg.getAppleTaskConfig().valid()) {
+            log.info("配置无效，单次执行模式跳过查询");
+            return;
+        }
+        new AppleMonitor().doMonitor(appCfg.getAppleTaskConfig().getDeviceCodeList().get(0));
+
+        // 输出固定格式，供 scripts/startup-benchmark.sh 解析
+        log.info("time-to-first-request={}ms rss-kb={} max-rss-kb={}", ManagementFactory.getRuntimeMXBean().getUptime(),
+                readProcStatus("VmRSS"), readProcStatus("VmHWM"));
+    }
+
+    /**
+     * 全型号扫描模式
+     *
+     * 对型号列表做一次批量扫描后退出，不启动定时任务，结果写入CSV矩阵。支持的参数：
+     * --parts=型号1,型号2 指定型号；--parts-file=文件 从文件中提取型号（例如 docs/apple-device-codes.md），
+     * 都不指定时扫描配置文件中的型号；--batch-size=N 每次请求的型号数量，默认10；
+     * --parallelism=N 并行请求数，默认为出口线路数量；--out=文件 输出路径
+     *
+     * @param appCfg 应用配置
+     * @param args   命令行参数
+     */
+    private static void runSweep(AppCfg appCfg, String[] args) {
+        AppleTaskConfig taskConfig = appCfg == null ? null : appCfg.getAppleTaskConfig();
+        if (taskConfig == null || StrUtil.hasBlank(taskConfig.getCountry(), taskConfig.getLocation())) {
+            log.info("扫描模式需要配置country和location");
+            return;
+        }
+
+        List<String> parts;
+        if (option(args, "--parts") != null) {
+            parts = StrUtil.splitTrim(option(args, "--parts"), ',');
+        } else if (option(args, "--parts-file") != null) {
+            parts = CatalogSweep.parseParts(FileUtil.readUtf8String(option(args, "--parts-file")));
+        } else {
+            parts = taskConfig.getDeviceCodeList() == null ? Collections.emptyList()
+                    : taskConfig.getDeviceCodeList().stream().map(DeviceItem::getDeviceCode).distinct().collect(Collectors.toList());
+        }
+        if (parts.isEmpty()) {
+            log.info("没有需要扫描的型号");
+            return;
+        }
+
+        Set<String> locations = new LinkedHashSet<>();
+        locations.add(taskConfig.getLocation().trim());
+        if (taskConfig.getLocations() != null) {
+            taskConfig.getLocations().stream().filter(StrUtil::isNotBlank).map(String::trim).forEach(locations::add);
+        }
+
+        int batchSize = Convert.toInt(option(args, "--batch-size"), 10);
+        int parallelism = Convert.toInt(option(args, "--parallelism"), EgressPool.getInstance().getRoutes().size());
+        String out = StrUtil.blankToDefault(option(args, "--out"),
+                StrUtil.format("sweep-{}-{}.csv", taskConfig.getCountry(), DateUtil.format(new Date(), "yyyyMMddHHmmss")));
+
+        AppleMonitor monitor = new AppleMonitor();
+        try {
+            SweepMatrix matrix = new CatalogSweep((batch, location) -> monitor.fetchPickupMessage(batch, null, location),
+                    batchSize, parallelism).run(parts, new ArrayList<>(locations));
+            matrix.writeCsv(FileUtil.file(out));
+            log.info("库存矩阵已写入{}", FileUtil.file(out).getAbsolutePath());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 离线回放模式
+     *
+     * 在虚拟时钟上把录制文件（见 recordConfig）回放给监控流程，输出发现延迟、推送次数和请求次数后退出。支持的参数：
+     * --replay=文件 录制文件；--poll-seconds=N 两轮监控的间隔，默认10秒；
+     * --request-millis=N 每次请求占用的时间，默认1500毫秒；--alert-interval-minutes=N 覆盖配置的提醒间隔
+     *
+     * @param appCfg 应用配置
+     * @param args   命令行参数
+     */
+    private static void runReplay(AppCfg appCfg, String[] args) {
+        if (appCfg == null || !appCfg.getAppleTaskConfig().valid()) {
+            log.info("配置无效，回放模式需要配置country、location和deviceCodeList");
+            return;
+        }
+        if (option(args, "--alert-interval-minutes") != null) {
+            appCfg.getAppleTaskConfig().setAlertIntervalMinutes(Convert.toInt(option(args, "--alert-interval-minutes")));
+        }
+        long pollMillis = Convert.toLong(option(args, "--poll-seconds"), 10L) * 1000;
+        long requestMillis = Convert.toLong(option(args, "--request-millis"), 1500L);
+
+        List<RecordedResponse> recording = ResponseRecorder.load(FileUtil.file(option(args, "--replay")));
+        log.info("已读取{}条录制记录", recording.size());
+        log.info(new ReplayHarness(appCfg, recording).run(pollMillis, requestMillis).toString());
+    }
+
+    /**
+     * 读取 --name=value 形式的命令行参数
+     *
+     * @param args 命令行参数
+     * @param name 参数名
+     * @return 参数值，未指定时返回null
+     */
+    private static String option(String[] args, String name) {
+        for (String arg : args) {
+            if (arg.startsWith(name + "=")) {
+                return arg.substring(name.length() + 1);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 读取 /proc/self/status 中的内存指标（仅Linux）
+     *
+     * @param key 指标名称，如 VmRSS、VmHWM
+     * @return 以KB为单位的数值，无法读取时返回-1
+     */
+    private static long readProcStatus(String key) {
+        try {
+            return Files.readAllLines(Paths.get("/proc/self/status")).stream()
+                    .filter(line -> line.startsWith(key + ":"))
+                    .map(line -> line.replaceAll("\\D", ""))
+                    .mapToLong(Long::parseLong)
+                    .findFirst().orElse(-1);
+        } catch (IOException | RuntimeException e) {
+            return -1;
+        }
+    }
+
 }
@@ -0,0 +1,232 @@
+package top.misec.applemonitor.api;
+
+import cn.hutool.core.thread.ThreadFactoryBuilder;
+import cn.hutool.http.server.HttpServerRequest;
+import cn.hutool.http.server.HttpServerResponse;
+import cn.hutool.http.server.SimpleServer;
+import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.JSONArray;
+import com.alibaba.fastjson2.JSONObject;
+import lombok.extern.slf4j.Slf4j;
+import top.misec.applemonitor.cache.PartStatus;
+import top.misec.applemonitor.cache.PartValidityCache;
+import top.misec.applemonitor.config.ApiConfig;
+import top.misec.applemonitor.config.CfgSingleton;
+import top.misec.applemonitor.http.TransferStats;
+import top.misec.applemonitor.planner.PollScheduler;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 本地查询接口
+ *
+ * 内置HTTP服务，提供以下接口：
+ * 1. GET /api/availability?country=&part=&store=&available=
+ *    返回内存中每个（国家/地区、门店、型号）最近一次查询到的库存状态，包含查询时间、状态变化时间和过期标记
+ * 2. GET /api/availability/stream?country=&part=&store=
+ *    Server-Sent Events 长连接，监控线程检测到可取货状态变化时立即推送，见 {@link TransitionBroadcaster}
+ * 3. GET /api/stats
+ *    Apple响应的传输统计，见 {@link TransferStats}
+ * 4. GET /api/freshness
+ *    各监控目标的查询间隔和新鲜度目标达成情况，见 {@link PollScheduler}
+ * 5. GET /api/parts?valid=
+ *    各型号的有效性状态，valid=false 时只返回被确认无效、正在退避的型号，见 {@link PartValidityCache}
+ *
+ * 接口只读取 {@link AvailabilityStore}，不会触发任何Apple请求
+ *
+ * @author moshi
+ */
+@Slf4j
+public class ApiServer {
+
+    private static volatile ApiServer instance;
+
+    private static volatile boolean initialized;
+
+    private final ApiConfig config;
+
+    private final AvailabilityStore store;
+
+    private final TransitionBroadcaster broadcaster;
+
+    private final SimpleServer server;
+
+    private final ExecutorService executor;
+
+    public ApiServer(ApiConfig config, AvailabilityStore store, TransitionBroadcaster broadcaster) {
+        this.config = config;
+        this.store = store;
+        this.broadcaster = broadcaster;
+        this.server = new SimpleServer(config.getHost(), config.getPort());
+        // 每个SSE连接占用一个线程，线程池容量需额外预留
+        this.executor = Executors.newFixedThreadPool(Math.max(1, config.getThreads()) + Math.max(0, config.getMaxStreamClients()),
+                ThreadFactoryBuilder.create().setNamePrefix("api-").setDaemon(true).build());
+        this.server.setExecutor(executor);
+        // 上下文按最长前缀匹配，stream需单独注册
+        this.server.addAction("/api/availability/stream", this::stream);
+        this.server.addAction("/api/availability", this::availability);
+        this.server.addAction("/api/stats", (request, response) -> response.write(
+                new JSONObject(TransferStats.getInstance().snapshot()).toJSONString(), "application/json;charset=UTF-8"));
+        this.server.addAction("/api/freshness", (request, response) -> response.write(
+                JSON.toJSONString(PollScheduler.getInstance().snapshot()), "application/json;charset=UTF-8"));
+        this.server.addAction("/api/parts", this::parts);
+    }
+
+    /**
+     * 获取全局查询接口，未配置时返回null
+     * 首次调用时启动服务
+     *
+     * @return 查询接口或null
+     */
+    public static ApiServer getInstance() {
+        if (!initialized) {
+            synchronized (ApiServer.class) {
+                if (!initialized) {
+                    ApiConfig apiConfig = CfgSingleton.getInstance().config.getApiConfig();
+                    if (apiConfig != null) {
+                        instance = new ApiServer(apiConfig, AvailabilityStore.getInstance(), TransitionBroadcaster.getInstance());
+                        instance.start();
+                    }
+                    initialized = true;
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * 启动服务
+     */
+    public void start() {
+        server.start();
+        log.info("本地查询接口已启动: http://{}:{}/api/availability", config.getHost(), server.getAddress().getPort());
+    }
+
+    /**
+     * 停止服务
+     */
+    public void stop() {
+        server.getRawServer().stop(0);
+        executor.shutdownNow();
+    }
+
+    /**
+     * 获取实际监听端口
+     *
+     * @return 端口号
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    private void availability(HttpServerRequest request, HttpServerResponse response) {
+        String available = request.getParam("available");
+        List<AvailabilityRecord> records = store.query(request.getParam("country"), request.getParam("part"),
+                request.getParam("store"));
+
+        long now = System.currentTimeMillis();
+        JSONArray items = new JSONArray(records.size());
+        for (AvailabilityRecord record : records) {
+            if (available == null || Boolean.parseBoolean(available) == record.isAvailable()) {
+                items.add(toJson(record, now, config.getStaleAfterMillis()));
+            }
+        }
+
+        JSONObject body = new JSONObject();
+        body.put("generatedAt", now);
+        body.put("staleAfterMillis", config.getStaleAfterMillis());
+        body.put("count", items.size());
+        body.put("items", items);
+        response.write(body.toJSONString(), "application/json;charset=UTF-8");
+    }
+
+    private void parts(HttpServerRequest request, HttpServerResponse response) {
+        String valid = request.getParam("valid");
+        PartValidityCache cache = PartValidityCache.getInstance();
+        List<PartStatus> statuses;
+        if ("false".equalsIgnoreCase(valid)) {
+            statuses = cache.invalidParts();
+        } else {
+            statuses = cache.snapshot();
+            if (valid != null) {
+                statuses.removeIf(status -> !status.isValid());
+            }
+            statuses.sort(Comparator.comparing(PartStatus::getCountry).thenComparing(PartStatus::getPart));
+        }
+
+        JSONObject body = new JSONObject();
+        body.put("generatedAt", System.currentTimeMillis());
+        body.put("count", statuses.size());
+        body.put("items", statuses);
+        response.write(body.toJSONString(), "application/json;charset=UTF-8");
+    }
+
+    private void stream(HttpServerRequest request, HttpServerResponse response) {
+        if (broadcaster.subscriberCount() >= config.getMaxStreamClients()) {
+            response.sendError(503, "too many stream clients");
+            return;
+        }
+        String name = String.valueOf(request.getHttpExchange().getRemoteAddress());
+        TransitionBroadcaster.Subscriber subscriber = broadcaster.subscribe(name, request.getParam("country"),
+                request.getParam("part"), request.getParam("store"), config.getStreamBufferSize());
+        log.info("SSE订阅方{}已连接，当前连接数:{}", name, broadcaster.subscriberCount());
+        try {
+            response.setHeader("Content-Type", "text/event-stream;charset=UTF-8");
+            response.setHeader("Cache-Control", "no-cache");
+            response.send(200, 0);
+            OutputStream out = response.getOut();
+            // 建立连接后立即发送一条注释，客户端据此确认订阅成功
+            out.write(": connected\n\n".getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            while (!subscriber.isClosed()) {
+                AvailabilityTransition transition = subscriber.poll(config.getStreamKeepAliveMillis());
+                String frame = transition == null ? ": keep-alive\n\n"
+                        : "id: " + transition.getSequence() + "\nevent: transition\ndata: " + transition.getPayload() + "\n\n";
+                out.write(frame.getBytes(StandardCharsets.UTF_8));
+                out.flush();
+            }
+        } catch (InterruptedException | IOException e) {
+            log.debug("SSE订阅方{}断开: {}", name, e.toString());
+        } finally {
+            subscriber.close();
+            // 订阅方被广播器断开时发送线程会被中断，归还线程池前清除中断标记
+            Thread.interrupted();
+            log.info("SSE订阅方{}已断开，当前连接数:{}", name, broadcaster.subscriberCount());
+        }
+    }
+
+    /**
+     * 将库存状态转换为接口输出格式
+     *
+     * @param record           库存状态
+     * @param now              当前时间戳
+     * @param staleAfterMillis 过期阈值（毫秒）
+     * @return JSON对象
+     */
+    static JSONObject toJson(AvailabilityRecord record, long now, long staleAfterMillis) {
+        JSONObject json = new JSONObject();
+        json.put("country", record.getCountry());
+        json.put("part", record.getPart());
+        json.put("productTitle", record.getProductTitle());
+        json.put("storeNumber", record.getStoreNumber());
+        json.put("storeName", record.getStoreName());
+        json.put("available", record.isAvailable());
+        json.put("pickupDisplay", record.getPickupDisplay());
+        json.put("pickupSearchQuote", record.getPickupSearchQuote());
+        json.put("pickupQuote", record.getPickupQuote());
+        json.put("deliveryQuote", record.getDeliveryQuote());
+        json.put("location", record.getLocation());
+        json.put("checkedAt", record.getCheckedAt());
+        json.put("changedAt", record.getChangedAt());
+        long age = now - record.getCheckedAt();
+        json.put("ageMillis", age);
+        json.put("stale", age > staleAfterMillis);
+        return json;
+    }
+}
@@ -0,0 +1,104 @@
+package top.misec.applemonitor.api;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 某个国家/地区、门店、型号的最新库存状态
+ *
+ * 对象发布后不再修改，每次查询结果都替换为新对象，读取方无需加锁
+ *
+ * @author moshi
+ */
+@Getter
+@AllArgsConstructor
+public class AvailabilityRecord {
+
+    /**
+     * 国家/地区代码
+     */
+    private final String country;
+
+    /**
+     * 产品型号代码
+     */
+    private final String part;
+
+    /**
+     * 门店编号，例如 R448
+     */
+    private final String storeNumber;
+
+    /**
+     * 门店名称
+     */
+    private final String storeName;
+
+    /**
+     * 产品名称，未知时为null
+     */
+    private final String productTitle;
+
+    /**
+     * 是否可取货（pickupDisplay为available）
+     */
+    private final boolean available;
+
+    /**
+     * Apple返回的取货显示状态
+     */
+    private final String pickupDisplay;
+
+    /**
+     * Apple返回的取货提示文案
+     */
+    private final String pickupSearchQuote;
+
+    /**
+     * Apple返回的取货时间说明，缺失时为null
+     */
+    private final String pickupQuote;
+
+    /**
+     * 送货上门的预计送达日期，缺失时为null
+     */
+    private final String deliveryQuote;
+
+    /**
+     * 返回该门店的查询地区
+     */
+    private final String location;
+
+    /**
+     * 最近一次查询到该状态的时间戳
+     */
+    private final long checkedAt;
+
+    /**
+     * 可取货状态最近一次发生变化的时间戳
+     */
+    private final long changedAt;
+
+    /**
+     * 生成状态键
+     *
+     * @param country     国家/地区代码
+     * @param storeNumber 门店编号
+     * @param part        产品型号代码
+     * @return 状态键
+     */
+    public static String key(String country, String storeNumber, String part) {
+        return country + "|" + storeNumber + "|" + part;
+    }
+
+    /**
+     * 复制当前状态并替换状态变化时间
+     *
+     * @param changedAt 状态变化时间戳
+     * @return 新的状态对象
+     */
+    public AvailabilityRecord withChangedAt(long changedAt) {
+        return new AvailabilityRecord(country, part, storeNumber, storeName, productTitle, available, pickupDisplay,
+                pickupSearchQuote, pickupQuote, deliveryQuote, location, checkedAt, changedAt);
+    }
+}
@@ -0,0 +1,132 @@
+package top.misec.applemonitor.api;
+
+import cn.hutool.core.util.StrUtil;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 内存库存状态表
+ *
+ * 保存每个（国家/地区、门店、型号）最近一次查询到的库存状态，供本地查询接口读取：
+ * 1. 每个状态键对应一个 AtomicReference，首次出现时创建，之后监控线程只做CAS替换，不加锁
+ * 2. 状态对象不可变，读取方遍历时拿到的总是某一次完整的查询结果
+ * 3. 读取不会触发任何Apple请求，任意数量的读取方互不影响，也不影响监控线程
+ *
+ * @author moshi
+ */
+public class AvailabilityStore {
+
+    private static final AvailabilityStore INSTANCE = new AvailabilityStore();
+
+    private static final Comparator<AvailabilityRecord> ORDER = Comparator.comparing(AvailabilityRecord::getCountry)
+            .thenComparing(AvailabilityRecord::getPart)
+            .thenComparing(AvailabilityRecord::getStoreNumber);
+
+    private final ConcurrentHashMap<String, AtomicReference<AvailabilityRecord>> records = new ConcurrentHashMap<>();
+
+    /**
+     * 获取全局库存状态表
+     *
+     * @return 库存状态表
+     */
+    public static AvailabilityStore getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * 写入一次查询结果
+     *
+     * 可取货状态未变化时沿用原来的状态变化时间
+     *
+     * @param observed 本次查询到的状态，changedAt取值同checkedAt
+     * @return 写入前的状态，首次出现时返回null
+     */
+    public AvailabilityRecord update(AvailabilityRecord observed) {
+        String key = AvailabilityRecord.key(observed.getCountry(), observed.getStoreNumber(), observed.getPart());
+        AtomicReference<AvailabilityRecord> ref = records.get(key);
+        if (ref == null) {
+            ref = records.computeIfAbsent(key, k -> new AtomicReference<>());
+        }
+        while (true) {
+            AvailabilityRecord previous = ref.get();
+            AvailabilityRecord next = previous != null && previous.isAvailable() == observed.isAvailable()
+                    ? observed.withChangedAt(previous.getChangedAt()) : observed;
+            if (ref.compareAndSet(previous, next)) {
+                return previous;
+            }
+        }
+    }
+
+    /**
+     * 获取指定门店、型号的状态
+     *
+     * @param country     国家/地区代码
+     * @param storeNumber 门店编号
+     * @param part        产品型号代码
+     * @return 最新状态，未查询过时返回null
+     */
+    public AvailabilityRecord get(String country, String storeNumber, String part) {
+        AtomicReference<AvailabilityRecord> ref = records.get(AvailabilityRecord.key(country, storeNumber, part));
+        return ref == null ? null : ref.get();
+    }
+
+    /**
+     * 按条件查询状态，条件为空时不过滤
+     *
+     * @param country 国家/地区代码，精确匹配（忽略大小写）
+     * @param part    产品型号代码，精确匹配（忽略大小写）
+     * @param store   门店编号精确匹配或门店名称包含该关键词
+     * @return 按国家、型号、门店编号排序的状态列表
+     */
+    public List<AvailabilityRecord> query(String country, String part, String store) {
+        List<AvailabilityRecord> result = new ArrayList<>();
+        for (AtomicReference<AvailabilityRecord> ref : records.values()) {
+            AvailabilityRecord record = ref.get();
+            if (record != null && matches(record, country, part, store)) {
+                result.add(record);
+            }
+        }
+        result.sort(ORDER);
+        return result;
+    }
+
+    /**
+     * 判断状态是否满足过滤条件
+     *
+     * @param record  库存状态
+     * @param country 国家/地区代码，为空时不过滤
+     * @param part    产品型号代码，为空时不过滤
+     * @param store   门店编号或名称关键词，为空时不过滤
+     * @return 满足条件返回true
+     */
+    public static boolean matches(AvailabilityRecord record, String country, String part, String store) {
+        return (StrUtil.isEmpty(country) || country.equalsIgnoreCase(record.getCountry()))
+                && (StrUtil.isEmpty(part) || part.equalsIgnoreCase(record.getPart()))
+                && (StrUtil.isEmpty(store) || store.equalsIgnoreCase(record.getStoreNumber())
+                || StrUtil.contains(record.getStoreName(), store));
+    }
+
+    /**
+     * 从检查点恢复状态，已有的状态不会被覆盖
+     *
+     * @param list 库存状态列表
+     */
+    public void restore(Collection<AvailabilityRecord> list) {
+        for (AvailabilityRecord record : list) {
+            records.putIfAbsent(AvailabilityRecord.key(record.getCountry(), record.getStoreNumber(), record.getPart()),
+                    new AtomicReference<>(record));
+        }
+    }
+
+    /**
+     * 清空全部状态
+     */
+    public void clear() {
+        records.clear();
+    }
+}
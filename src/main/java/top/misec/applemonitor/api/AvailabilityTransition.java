@@ -0,0 +1,31 @@
+package top.misec.applemonitor.api;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 库存状态变化事件
+ *
+ * 推送给订阅方的内容在发布时序列化一次，所有订阅方共享同一份数据
+ *
+ * @author moshi
+ */
+@Getter
+@AllArgsConstructor
+public class AvailabilityTransition {
+
+    /**
+     * 事件序号，单调递增，用作SSE的事件ID
+     */
+    private final long sequence;
+
+    /**
+     * 变化后的状态
+     */
+    private final AvailabilityRecord current;
+
+    /**
+     * 序列化后的事件内容（JSON）
+     */
+    private final String payload;
+}
@@ -0,0 +1,169 @@
+package top.misec.applemonitor.api;
+
+import com.alibaba.fastjson2.JSONObject;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 库存状态变化广播器
+ *
+ * 监控线程检测到可取货状态变化后立即发布事件，广播器把事件放入每个订阅方各自的有界队列：
+ * 1. 发布只做非阻塞的入队，不会因为任何订阅方而变慢
+ * 2. 订阅方队列已满说明消费过慢，直接断开该订阅方（中断其发送线程），由客户端自行重连
+ * 3. 订阅方可以按国家/地区、型号、门店过滤，过滤规则与查询接口一致
+ *
+ * @author moshi
+ */
+@Slf4j
+public class TransitionBroadcaster {
+
+    private static final TransitionBroadcaster INSTANCE = new TransitionBroadcaster();
+
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    /**
+     * 获取全局广播器
+     *
+     * @return 广播器
+     */
+    public static TransitionBroadcaster getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * 判断一次状态写入是否构成可取货状态变化
+     *
+     * @param previous 写入前的状态，首次出现时为null
+     * @param current  写入后的状态
+     * @return 首次出现即可取货，或可取货状态发生变化时返回true
+     */
+    public static boolean isTransition(AvailabilityRecord previous, AvailabilityRecord current) {
+        return previous == null ? current.isAvailable() : previous.isAvailable() != current.isAvailable();
+    }
+
+    /**
+     * 发布状态变化事件，没有订阅方时不做任何处理
+     *
+     * @param previous 变化前的状态，首次出现时为null
+     * @param current  变化后的状态
+     */
+    public void publish(AvailabilityRecord previous, AvailabilityRecord current) {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        long seq = sequence.incrementAndGet();
+        JSONObject json = ApiServer.toJson(current, current.getCheckedAt(), Long.MAX_VALUE);
+        json.remove("ageMillis");
+        json.remove("stale");
+        json.put("sequence", seq);
+        json.put("previousAvailable", previous == null ? null : previous.isAvailable());
+        AvailabilityTransition transition = new AvailabilityTransition(seq, current, json.toJSONString());
+
+        for (Subscriber subscriber : subscribers) {
+            if (subscriber.matches(current) && !subscriber.queue.offer(transition)) {
+                log.warn("订阅方{}消费过慢，缓冲区已满（{}条），断开连接", subscriber.name, subscriber.queue.size());
+                subscriber.close();
+            }
+        }
+    }
+
+    /**
+     * 新增订阅方
+     *
+     * @param name       订阅方名称，用于日志
+     * @param country    国家/地区过滤条件，可为空
+     * @param part       型号过滤条件，可为空
+     * @param store      门店编号或名称关键词过滤条件，可为空
+     * @param bufferSize 缓冲区大小
+     * @return 订阅方
+     */
+    public Subscriber subscribe(String name, String country, String part, String store, int bufferSize) {
+        Subscriber subscriber = new Subscriber(name, country, part, store, Math.max(1, bufferSize));
+        subscribers.add(subscriber);
+        return subscriber;
+    }
+
+    /**
+     * 当前订阅方数量
+     *
+     * @return 订阅方数量
+     */
+    public int subscriberCount() {
+        return subscribers.size();
+    }
+
+    /**
+     * 订阅方
+     *
+     * 由一个发送线程调用 {@link #poll(long)} 消费事件，断开时该线程会被中断
+     */
+    public class Subscriber implements AutoCloseable {
+
+        @Getter
+        private final String name;
+        private final String country;
+        private final String part;
+        private final String store;
+        private final BlockingQueue<AvailabilityTransition> queue;
+
+        @Getter
+        private volatile boolean closed;
+
+        private volatile Thread consumer;
+
+        private Subscriber(String name, String country, String part, String store, int bufferSize) {
+            this.name = name;
+            this.country = country;
+            this.part = part;
+            this.store = store;
+            this.queue = new ArrayBlockingQueue<>(bufferSize);
+        }
+
+        private boolean matches(AvailabilityRecord record) {
+            return !closed && AvailabilityStore.matches(record, country, part, store);
+        }
+
+        /**
+         * 获取下一个事件，并把当前线程登记为发送线程
+         *
+         * @param timeoutMillis 最长等待时间
+         * @return 事件，超时返回null
+         * @throws InterruptedException 订阅方被断开或线程被中断
+         */
+        public AvailabilityTransition poll(long timeoutMillis) throws InterruptedException {
+            consumer = Thread.currentThread();
+            if (closed) {
+                throw new InterruptedException("subscriber closed");
+            }
+            return queue.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+        }
+
+        /**
+         * 断开订阅方：移出广播列表并中断发送线程，发送线程阻塞在写socket时也会被唤醒
+         */
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            subscribers.remove(this);
+            queue.clear();
+            Thread thread = consumer;
+            if (thread == Thread.currentThread()) {
+                consumer = null;
+            } else if (thread != null) {
+                thread.interrupt();
+            }
+        }
+    }
+}
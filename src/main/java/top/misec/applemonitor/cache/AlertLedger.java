@@ -0,0 +1,103 @@
+package top.misec.applemonitor.cache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 到货通知台账
+ *
+ * 记录每个（国家/地区、型号、门店）最近一次发送到货通知的时间：
+ * 1. 门店持续有货时，在配置的提醒间隔内不再重复推送
+ * 2. 门店无货后清除记录，下次到货立即推送
+ * 3. 台账随检查点保存，重启后不会对仍然有货的门店重新推送一遍
+ *
+ * @author moshi
+ */
+public class AlertLedger {
+
+    private static final AlertLedger INSTANCE = new AlertLedger();
+
+    /**
+     * 已发送的通知，key为 国家|型号|门店编号
+     */
+    private final Map<String, AlertRecord> alerts = new ConcurrentHashMap<>();
+
+    /**
+     * 获取全局通知台账
+     *
+     * @return 台账实例
+     */
+    public static AlertLedger getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * 判断是否需要发送到货通知
+     *
+     * @param country        国家/地区代码
+     * @param part           产品型号代码
+     * @param storeNumber    门店编号
+     * @param intervalMillis 同一门店重复提醒的间隔，不大于0时每轮都推送
+     * @param now            当前时间戳
+     * @return 未发送过或距上次发送已超过提醒间隔时返回true
+     */
+    public boolean shouldAlert(String country, String part, String storeNumber, long intervalMillis, long now) {
+        AlertRecord record = alerts.get(key(country, part, storeNumber));
+        return record == null || intervalMillis <= 0 || now - record.getSentAt() >= intervalMillis;
+    }
+
+    /**
+     * 记录已发送到货通知
+     *
+     * @param country     国家/地区代码
+     * @param part        产品型号代码
+     * @param storeNumber 门店编号
+     * @param now         发送时间戳
+     */
+    public void markSent(String country, String part, String storeNumber, long now) {
+        AlertRecord record = new AlertRecord();
+        record.setCountry(country);
+        record.setPart(part);
+        record.setStoreNumber(storeNumber);
+        record.setSentAt(now);
+        alerts.put(key(country, part, storeNumber), record);
+    }
+
+    /**
+     * 门店无货时清除通知记录
+     *
+     * @param country     国家/地区代码
+     * @param part        产品型号代码
+     * @param storeNumber 门店编号
+     */
+    public void clear(String country, String part, String storeNumber) {
+        alerts.remove(key(country, part, storeNumber));
+    }
+
+    /**
+     * 获取全部通知记录
+     *
+     * @return 通知记录列表
+     */
+    public List<AlertRecord> snapshot() {
+        return new ArrayList<>(alerts.values());
+    }
+
+    /**
+     * 从检查点恢复通知记录，已有的记录不会被覆盖
+     *
+     * @param records 通知记录
+     */
+    public void restore(Collection<AlertRecord> records) {
+        for (AlertRecord record : records) {
+            alerts.putIfAbsent(key(record.getCountry(), record.getPart(), record.getStoreNumber()), record);
+        }
+    }
+
+    private static String key(String country, String part, String storeNumber) {
+        return country + "|" + part + "|" + storeNumber;
+    }
+}
@@ -0,0 +1,32 @@
+package top.misec.applemonitor.cache;
+
+import lombok.Data;
+
+/**
+ * 一条已发送的到货通知
+ *
+ * @author moshi
+ */
+@Data
+public class AlertRecord {
+
+    /**
+     * 国家/地区代码
+     */
+    private String country;
+
+    /**
+     * 产品型号代码
+     */
+    private String part;
+
+    /**
+     * 门店编号
+     */
+    private String storeNumber;
+
+    /**
+     * 发送时间戳
+     */
+    private long sentAt;
+}
@@ -0,0 +1,63 @@
+package top.misec.applemonitor.cache;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 预计送达日期台账
+ *
+ * 记录每个（国家/地区、型号）上一次查询到的预计送达日期：
+ * 1. 送达日期变化时由监控任务发送送达日期变化通知
+ * 2. 台账随检查点保存，重启后第一轮即可与重启前的日期比较，不会漏掉期间的变化
+ *
+ * @author moshi
+ */
+public class DeliveryQuoteLedger {
+
+    private static final DeliveryQuoteLedger INSTANCE = new DeliveryQuoteLedger();
+
+    /**
+     * 预计送达日期，key为 国家|型号
+     */
+    private final Map<String, String> quotes = new ConcurrentHashMap<>();
+
+    /**
+     * 获取全局送达日期台账
+     *
+     * @return 台账实例
+     */
+    public static DeliveryQuoteLedger getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * 记录最新的预计送达日期
+     *
+     * @param country 国家/地区代码
+     * @param part    产品型号代码
+     * @param quote   预计送达日期
+     * @return 上一次记录的预计送达日期，没有时返回null
+     */
+    public String update(String country, String part, String quote) {
+        return quotes.put(country + "|" + part, quote);
+    }
+
+    /**
+     * 获取全部送达日期
+     *
+     * @return key为 国家|型号 的送达日期
+     */
+    public Map<String, String> snapshot() {
+        return new HashMap<>(quotes);
+    }
+
+    /**
+     * 从检查点恢复送达日期，已有的记录不会被覆盖
+     *
+     * @param snapshot key为 国家|型号 的送达日期
+     */
+    public void restore(Map<String, String> snapshot) {
+        snapshot.forEach(quotes::putIfAbsent);
+    }
+}
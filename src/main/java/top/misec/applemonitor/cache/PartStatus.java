@@ -0,0 +1,47 @@
+package top.misec.applemonitor.cache;
+
+import lombok.Data;
+
+/**
+ * 产品型号在某个国家/地区的有效性状态
+ *
+ * @author moshi
+ */
+@Data
+public class PartStatus {
+
+    /**
+     * 国家/地区代码
+     */
+    private String country;
+
+    /**
+     * 产品型号代码
+     */
+    private String part;
+
+    /**
+     * 是否有效，最近一次查询返回了门店列表即为有效
+     */
+    private boolean valid;
+
+    /**
+     * 产品名称（storePickupProductTitle），有效时缓存
+     */
+    private String title;
+
+    /**
+     * 连续被确认无效的次数
+     */
+    private int failures;
+
+    /**
+     * 最近一次查询时间戳
+     */
+    private long lastCheckedAt;
+
+    /**
+     * 无效型号下一次允许重试的时间戳
+     */
+    private long nextRetryAt;
+}
@@ -0,0 +1,179 @@
+package top.misec.applemonitor.cache;
+
+import cn.hutool.core.date.DateUtil;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * 产品型号有效性缓存
+ *
+ * 产品代码填错或不在该国家/地区销售时，Apple返回的 pickupMessage 中没有门店列表，
+ * 旧版本每轮都会重复查询这些型号，白白消耗请求预算。该缓存：
+ * 1. 记录被确认无效的型号，按指数退避（1分钟起，最长6小时）重试，期间跳过查询
+ * 2. 记录有效型号及其产品名称，避免每个门店都重新解析 storePickupProductTitle
+ * 3. 通过 {@link #invalidParts()} 和 {@link #snapshot()} 对外报告型号状态
+ *
+ * 状态对象发布后不再修改，每次更新都替换为新对象
+ *
+ * @author moshi
+ */
+@Slf4j
+public class PartValidityCache {
+
+    private static final PartValidityCache INSTANCE = new PartValidityCache(60_000, 6 * 3600_000L);
+
+    private final long baseBackoffMillis;
+
+    private final long maxBackoffMillis;
+
+    /**
+     * 型号状态，key为 国家|型号
+     */
+    private final Map<String, PartStatus> statuses = new ConcurrentHashMap<>();
+
+    public PartValidityCache(long baseBackoffMillis, long maxBackoffMillis) {
+        this.baseBackoffMillis = baseBackoffMillis;
+        this.maxBackoffMillis = Math.max(baseBackoffMillis, maxBackoffMillis);
+    }
+
+    /**
+     * 获取全局型号有效性缓存
+     *
+     * @return 缓存实例
+     */
+    public static PartValidityCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * 判断本轮是否需要查询该型号
+     *
+     * @param country 国家/地区代码
+     * @param part    产品型号代码
+     * @return 型号有效、状态未知或已到重试时间时返回true
+     */
+    public boolean shouldQuery(String country, String part) {
+        PartStatus status = statuses.get(key(country, part));
+        return status == null || status.isValid() || System.currentTimeMillis() >= status.getNextRetryAt();
+    }
+
+    /**
+     * 标记型号有效
+     *
+     * @param country 国家/地区代码
+     * @param part    产品型号代码
+     * @param title   产品名称，为null时保留已缓存的名称
+     */
+    public void markValid(String country, String part, String title) {
+        statuses.compute(key(country, part), (k, previous) -> {
+            if (previous != null && !previous.isValid()) {
+                log.info("型号{}({})已恢复有效", part, country);
+            }
+            PartStatus status = previous == null ? newStatus(country, part) : copy(previous);
+            status.setValid(true);
+            status.setFailures(0);
+            status.setNextRetryAt(0);
+            status.setLastCheckedAt(System.currentTimeMillis());
+            if (title != null) {
+                status.setTitle(title);
+            }
+            return status;
+        });
+    }
+
+    /**
+     * 标记型号无效，并计算下一次重试时间
+     *
+     * @param country 国家/地区代码
+     * @param part    产品型号代码
+     */
+    public void markInvalid(String country, String part) {
+        statuses.compute(key(country, part), (k, previous) -> {
+            PartStatus status = previous == null ? newStatus(country, part) : copy(previous);
+            long now = System.currentTimeMillis();
+            int failures = status.getFailures() + 1;
+            long backoff = Math.min(maxBackoffMillis, baseBackoffMillis << Math.min(failures - 1, 30));
+            status.setValid(false);
+            status.setFailures(failures);
+            status.setLastCheckedAt(now);
+            status.setNextRetryAt(now + backoff);
+            log.warn("型号{}在{}无门店信息，可能填错产品代码，第{}次确认，{}后重试", part, country, failures,
+                    DateUtil.formatBetween(backoff));
+            return status;
+        });
+    }
+
+    /**
+     * 获取已缓存的产品名称
+     *
+     * @param country 国家/地区代码
+     * @param part    产品型号代码
+     * @return 产品名称，未缓存时返回null
+     */
+    public String getTitle(String country, String part) {
+        PartStatus status = statuses.get(key(country, part));
+        return status == null ? null : status.getTitle();
+    }
+
+    /**
+     * 获取所有被确认无效的型号
+     *
+     * @return 无效型号状态列表（副本），按下一次重试时间排序
+     */
+    public List<PartStatus> invalidParts() {
+        return statuses.values().stream()
+                .filter(status -> !status.isValid())
+                .map(PartValidityCache::copy)
+                .sorted(Comparator.comparingLong(PartStatus::getNextRetryAt))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 获取全部型号状态
+     *
+     * @return 型号状态列表（副本）
+     */
+    public List<PartStatus> snapshot() {
+        List<PartStatus> list = new ArrayList<>(statuses.size());
+        statuses.values().forEach(status -> list.add(copy(status)));
+        return list;
+    }
+
+    /**
+     * 从检查点恢复型号状态，已有的状态不会被覆盖
+     *
+     * @param list 型号状态列表
+     */
+    public void restore(List<PartStatus> list) {
+        for (PartStatus status : list) {
+            statuses.putIfAbsent(key(status.getCountry(), status.getPart()), copy(status));
+        }
+    }
+
+    private static PartStatus newStatus(String country, String part) {
+        PartStatus status = new PartStatus();
+        status.setCountry(country);
+        status.setPart(part);
+        return status;
+    }
+
+    private static PartStatus copy(PartStatus source) {
+        PartStatus status = newStatus(source.getCountry(), source.getPart());
+        status.setValid(source.isValid());
+        status.setTitle(source.getTitle());
+        status.setFailures(source.getFailures());
+        status.setLastCheckedAt(source.getLastCheckedAt());
+        status.setNextRetryAt(source.getNextRetryAt());
+        return status;
+    }
+
+    private static String key(String country, String part) {
+        return country + "|" + part;
+    }
+}
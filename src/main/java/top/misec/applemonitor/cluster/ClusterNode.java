@@ -0,0 +1,232 @@
+package top.misec.applemonitor.cluster;
+
+import cn.hutool.core.lang.ConsistentHash;
+import cn.hutool.core.lang.hash.MurmurHash;
+import cn.hutool.core.thread.ThreadFactoryBuilder;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.http.HttpRequest;
+import cn.hutool.http.HttpResponse;
+import cn.hutool.http.server.SimpleServer;
+import com.alibaba.fastjson2.JSONObject;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import top.misec.applemonitor.config.CfgSingleton;
+import top.misec.applemonitor.config.ClusterConfig;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 集群节点
+ *
+ * 无中心协调的静态集群实现：
+ * 1. 每个节点内置一个HTTP心跳接口 /cluster/heartbeat，并定时向其他节点发送心跳
+ * 2. 收到心跳请求或心跳响应都视为对方存活，超过 failureTimeoutMillis 未联系即视为下线
+ * 3. 存活节点组成一致性哈希环，监控目标（国家、地区、型号）按哈希落到唯一的节点上
+ * 4. 节点上下线时只有该节点负责的目标会迁移，其余目标保持不变
+ *
+ * 启动时乐观地认为所有节点存活，避免集群同时启动时各节点重复查询全部目标
+ *
+ * @author moshi
+ */
+@Slf4j
+public class ClusterNode {
+
+    private static volatile ClusterNode instance;
+
+    private static volatile boolean initialized;
+
+    /**
+     * 本节点标识（host:port）
+     */
+    @Getter
+    private final String selfId;
+
+    /**
+     * 其他节点标识列表
+     */
+    private final List<String> peers;
+
+    private final ClusterConfig config;
+
+    /**
+     * 各节点最近一次联系成功的时间戳
+     */
+    private final Map<String, Long> lastSeen = new ConcurrentHashMap<>();
+
+    private final SimpleServer server;
+
+    private final ScheduledExecutorService heartbeatExecutor;
+
+    /**
+     * 当前成员视图，成员变化时整体替换
+     */
+    private volatile Membership membership;
+
+    public ClusterNode(ClusterConfig config) {
+        if (StrUtil.isBlank(config.getSelf()) || !config.getSelf().contains(":")) {
+            throw new IllegalArgumentException("集群配置self必须为 host:port 格式");
+        }
+        this.config = config;
+        this.selfId = config.getSelf().trim();
+        List<String> others = new ArrayList<>();
+        if (config.getPeers() != null) {
+            config.getPeers().stream().map(String::trim)
+                    .filter(peer -> StrUtil.isNotEmpty(peer) && !peer.equals(selfId) && !others.contains(peer))
+                    .forEach(others::add);
+        }
+        this.peers = Collections.unmodifiableList(others);
+
+        long now = System.currentTimeMillis();
+        peers.forEach(peer -> lastSeen.put(peer, now));
+        this.membership = buildMembership(liveNodes(now));
+
+        int port = Integer.parseInt(StrUtil.subAfter(selfId, ":", true));
+        this.server = new SimpleServer(port);
+        this.server.addAction("/cluster/heartbeat", (request, response) -> {
+            String from = request.getParam("from");
+            if (from != null && peers.contains(from)) {
+                lastSeen.put(from, System.currentTimeMillis());
+            }
+            JSONObject body = new JSONObject();
+            body.put("node", selfId);
+            body.put("live", refreshMembership().live);
+            response.write(body.toJSONString(), "application/json;charset=UTF-8");
+        });
+        this.heartbeatExecutor = Executors.newScheduledThreadPool(Math.max(1, peers.size()),
+                ThreadFactoryBuilder.create().setNamePrefix("cluster-heartbeat-").setDaemon(true).build());
+    }
+
+    /**
+     * 获取全局集群节点，未配置集群模式时返回null
+     * 首次调用时启动心跳服务
+     *
+     * @return 集群节点或null
+     */
+    public static ClusterNode getInstance() {
+        if (!initialized) {
+            synchronized (ClusterNode.class) {
+                if (!initialized) {
+                    ClusterConfig clusterConfig = CfgSingleton.getInstance().config.getClusterConfig();
+                    if (clusterConfig != null) {
+                        instance = new ClusterNode(clusterConfig);
+                        instance.start();
+                    }
+                    initialized = true;
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * 生成监控目标的哈希键
+     *
+     * @param country    国家/地区代码
+     * @param location   查询地区
+     * @param deviceCode 产品型号
+     * @return 目标键
+     */
+    public static String targetKey(String country, String location, String deviceCode) {
+        return country + "|" + location + "|" + deviceCode;
+    }
+
+    /**
+     * 启动心跳服务和定时心跳
+     */
+    public void start() {
+        server.start();
+        long interval = config.getHeartbeatIntervalMillis();
+        peers.forEach(peer -> heartbeatExecutor.scheduleWithFixedDelay(() -> heartbeat(peer), 0, interval, TimeUnit.MILLISECONDS));
+        log.info("集群节点{}已启动，其他节点:{}", selfId, peers);
+    }
+
+    /**
+     * 停止心跳服务，其他节点会在超时后接管本节点的目标
+     */
+    public void stop() {
+        heartbeatExecutor.shutdownNow();
+        server.getRawServer().stop(0);
+    }
+
+    /**
+     * 判断监控目标是否由本节点负责
+     *
+     * @param targetKey 目标键，参见 {@link #targetKey(String, String, String)}
+     * @return 由本节点负责返回true
+     */
+    public boolean owns(String targetKey) {
+        return selfId.equals(refreshMembership().ring.get(targetKey));
+    }
+
+    /**
+     * 获取当前存活节点
+     *
+     * @return 按字典序排列的存活节点列表
+     */
+    public List<String> getLiveNodes() {
+        return new ArrayList<>(refreshMembership().live);
+    }
+
+    private void heartbeat(String peer) {
+        int timeout = (int) Math.max(500, config.getHeartbeatIntervalMillis());
+        try (HttpResponse response = HttpRequest.get("http://" + peer + "/cluster/heartbeat")
+                .form("from", selfId)
+                .timeout(timeout)
+                .execute()) {
+            if (response.isOk()) {
+                lastSeen.put(peer, System.currentTimeMillis());
+            }
+        } catch (Exception e) {
+            log.debug("集群节点{}心跳失败:{}", peer, e.getMessage());
+        }
+    }
+
+    private SortedSet<String> liveNodes(long now) {
+        SortedSet<String> live = new TreeSet<>();
+        live.add(selfId);
+        lastSeen.forEach((peer, seenAt) -> {
+            if (now - seenAt <= config.getFailureTimeoutMillis()) {
+                live.add(peer);
+            }
+        });
+        return live;
+    }
+
+    private Membership refreshMembership() {
+        SortedSet<String> live = liveNodes(System.currentTimeMillis());
+        Membership current = membership;
+        if (current.live.equals(live)) {
+            return current;
+        }
+        synchronized (this) {
+            if (!membership.live.equals(live)) {
+                log.info("集群成员变化:{} -> {}，重新分配监控目标", membership.live, live);
+                membership = buildMembership(live);
+            }
+            return membership;
+        }
+    }
+
+    private Membership buildMembership(SortedSet<String> live) {
+        ConsistentHash<String> ring = new ConsistentHash<>(key -> MurmurHash.hash32(key.toString()),
+                Math.max(1, config.getVirtualNodes()), live);
+        return new Membership(Collections.unmodifiableSortedSet(live), ring);
+    }
+
+    /**
+     * 不可变的成员视图
+     */
+    private static final class Membership {
+        private final SortedSet<String> live;
+        private final ConsistentHash<String> ring;
+
+        private Membership(SortedSet<String> live, ConsistentHash<String> ring) {
+            this.live = live;
+            this.ring = ring;
+        }
+    }
+}
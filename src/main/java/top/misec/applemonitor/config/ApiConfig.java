@@ -0,0 +1,50 @@
+package top.misec.applemonitor.config;
+
+import lombok.Data;
+
+/**
+ * 本地查询接口配置类
+ *
+ * 开启后内置一个HTTP服务，直接返回内存中最近一次查询到的库存状态，
+ * 其他工具读取该接口即可，无需解析日志或自行请求Apple官网
+ *
+ * @author moshi
+ */
+@Data
+public class ApiConfig {
+
+    /**
+     * 监听地址，默认只监听本机
+     */
+    private String host = "127.0.0.1";
+
+    /**
+     * 监听端口
+     */
+    private int port = 8686;
+
+    /**
+     * 处理请求的线程数
+     */
+    private int threads = 4;
+
+    /**
+     * 超过该时长未更新的库存状态标记为过期（毫秒）
+     */
+    private long staleAfterMillis = 120_000;
+
+    /**
+     * 状态变化推送（SSE）的最大同时连接数
+     */
+    private int maxStreamClients = 32;
+
+    /**
+     * 每个SSE连接的事件缓冲区大小，写满时断开该连接
+     */
+    private int streamBufferSize = 256;
+
+    /**
+     * SSE连接空闲时发送心跳注释的间隔（毫秒）
+     */
+    private long streamKeepAliveMillis = 15_000;
+}
@@ -18,4 +18,67 @@ public class AppCfg {
      * 包含监控的设备列表、位置、定时表达式、国家代码等信息
      */
     private AppleTaskConfig appleTaskConfig;
+
+    /**
+     * 出口线路池配置（可选）
+     * 配置多个代理或本机出口地址以分摊Apple的按IP限流
+     */
+    private EgressConfig egressConfig;
+
+    /**
+     * 跨进程共享请求预算配置（可选）
+     * 同一主机上的多个监控进程共用一个按站点和出口计算的请求预算
+     */
+    private SharedBudgetConfig sharedBudgetConfig;
+
+    /**
+     * 集群模式配置（可选）
+     * 多个实例按一致性哈希分摊监控目标
+     */
+    private ClusterConfig clusterConfig;
+
+    /**
+     * HTTP请求配置（可选），包含超时设置
+     */
+    private HttpConfig httpConfig = new HttpConfig();
+
+    /**
+     * 熔断器配置（可选）
+     */
+    private CircuitBreakerConfig circuitBreakerConfig = new CircuitBreakerConfig();
+
+    /**
+     * 会话配置（可选），包含Cookie预热和会话刷新设置
+     */
+    private SessionConfig sessionConfig = new SessionConfig();
+
+    /**
+     * 对冲请求配置（可选）
+     * 请求迟迟未返回时发送一个备份请求，降低长尾延迟
+     */
+    private HedgeConfig hedgeConfig;
+
+    /**
+     * 连接预热配置（可选）
+     * 每轮监控前预先解析域名并建立连接，同时设置DNS缓存时间
+     */
+    private PrewarmConfig prewarmConfig;
+
+    /**
+     * 运行状态检查点配置（可选）
+     * 定期保存库存状态、已发送通知和线路节奏，重启后恢复
+     */
+    private CheckpointConfig checkpointConfig;
+
+    /**
+     * 响应录制配置（可选）
+     * 把查询到的取货信息连同时间戳写入录制文件，供离线回放使用
+     */
+    private RecordConfig recordConfig;
+
+    /**
+     * 本地查询接口配置（可选）
+     * 通过内置HTTP服务对外提供内存中的最新库存状态
+     */
+    private ApiConfig apiConfig;
 }
@@ -4,9 +4,8 @@ import cn.hutool.core.collection.CollectionUtil;
 import cn.hutool.core.util.StrUtil;
 import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
-import top.misec.applemonitor.push.impl.FeiShuBotPush;
-import top.misec.applemonitor.push.pojo.feishu.FeiShuPushDTO;
-import top.misec.bark.BarkPush;
+import top.misec.applemonitor.push.PushDispatcher;
+import top.misec.applemonitor.push.PushMessage;
 import top.misec.bark.enums.SoundEnum;
 
 import java.util.Collections;
@@ -34,6 +33,30 @@ public class AppleTaskConfig {
      * 格式：广东 深圳 南山区（中国大陆）或邮政编码（其他国家/地区）
      */
     public String location;
+
+    /**
+     * 额外的候选查询地区（可选）
+     * 覆盖范围较大的门店白名单时填写多个地区，程序会学习每个地区返回的门店，
+     * 并只查询能覆盖全部白名单门店的最少地区组合
+     */
+    public List<String> locations;
+
+    /**
+     * 门店覆盖信息的刷新周期（分钟），默认360
+     * 超过该周期的地区会被重新查询以发现新门店
+     */
+    public Integer coverageRefreshMinutes;
+    
+    /**
+     * 同一门店持续有货时重复提醒的间隔（分钟），不填或为0时每轮都推送
+     * 门店无货后再次到货会立即推送
+     */
+    public Integer alertIntervalMinutes;
+
+    /**
+     * 通知消息语言，可选 zh、ja、ko、en，auto表示按country选择，不填时为中文
+     */
+    public String messageLanguage;
     
     /**
      * 定时任务cron表达式
@@ -108,20 +131,9 @@ public class AppleTaskConfig {
                 log.info("机器人开始干活啦");
                 String content = StrUtil.format("您的机器人开始监控{}附近的Apple直营店啦", location);
 
-                // 如果配置了Bark推送，发送启动通知
-                if (StrUtil.isAllNotEmpty(push.getBarkPushUrl(), push.getBarkPushToken())) {
-                    BarkPush pusher = new BarkPush(push.getBarkPushUrl(), push.getBarkPushToken());
-                    pusher.simpleWithResp(content);
-                }
-                
-                // 如果配置了飞书机器人，发送启动通知
-                if (StrUtil.isAllNotEmpty(push.getFeishuBotSecret(), push.getFeishuBotWebhooks())) {
-                    FeiShuBotPush.pushTextMessage(FeiShuPushDTO.builder()
-                            .text(content).secret(push.getFeishuBotSecret())
-                            .botWebHooks(push.getFeishuBotWebhooks())
-                            .build());
-                }
-
+                // 通过该推送配置的全部渠道发送启动通知
+                PushDispatcher.getInstance().dispatch(Collections.singletonList(push),
+                        Collections.singletonList(PushMessage.of(content)));
             });
         });
 
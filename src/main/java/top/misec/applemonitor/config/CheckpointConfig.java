@@ -0,0 +1,29 @@
+package top.misec.applemonitor.config;
+
+import lombok.Data;
+
+/**
+ * 运行状态检查点配置类
+ *
+ * 定期把库存状态、已发送的通知、线路节奏等运行状态写入本地文件，重启后恢复
+ *
+ * @author moshi
+ */
+@Data
+public class CheckpointConfig {
+
+    /**
+     * 检查点文件路径，相对路径基于当前工作目录
+     */
+    private String path = "state/checkpoint.jsonb";
+
+    /**
+     * 写入间隔（秒）
+     */
+    private int intervalSeconds = 30;
+
+    /**
+     * 检查点的最大有效时间（分钟），超过后启动时不再恢复
+     */
+    private int maxAgeMinutes = 60;
+}
@@ -0,0 +1,50 @@
+package top.misec.applemonitor.config;
+
+import lombok.Data;
+
+/**
+ * 熔断器配置类
+ *
+ * 每个Apple国家站点和每个推送地址各自拥有一个熔断器，
+ * 失败或慢调用比例过高时熔断，熔断期间直接跳过调用，到期后放行少量探测请求
+ *
+ * @author moshi
+ */
+@Data
+public class CircuitBreakerConfig {
+
+    /**
+     * 统计窗口内的调用次数
+     */
+    private int windowSize = 10;
+
+    /**
+     * 窗口内至少有多少次调用才开始计算比例
+     */
+    private int minimumCalls = 5;
+
+    /**
+     * 失败比例阈值（百分比），达到后熔断
+     */
+    private int failureRateThreshold = 50;
+
+    /**
+     * 慢调用比例阈值（百分比），达到后熔断
+     */
+    private int slowCallRateThreshold = 80;
+
+    /**
+     * 超过该耗时的调用视为慢调用（毫秒）
+     */
+    private long slowCallDurationMillis = 3000;
+
+    /**
+     * 熔断持续时长（毫秒），到期后进入半开状态
+     */
+    private long openMillis = 30_000;
+
+    /**
+     * 半开状态下允许的探测请求数，全部成功后恢复
+     */
+    private int halfOpenProbes = 2;
+}
@@ -0,0 +1,42 @@
+package top.misec.applemonitor.config;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 集群模式配置类
+ *
+ * 多个监控实例使用同一份配置时，按一致性哈希把监控目标分配到存活节点上，
+ * 节点之间通过HTTP心跳互相探测，某个节点下线后其负责的目标会自动迁移到其他节点
+ *
+ * @author moshi
+ */
+@Data
+public class ClusterConfig {
+
+    /**
+     * 本节点地址（host:port），同时作为节点标识，必须与其他节点peers中填写的一致
+     */
+    private String self;
+
+    /**
+     * 全部节点地址列表（host:port），可以包含本节点
+     */
+    private List<String> peers;
+
+    /**
+     * 心跳间隔（毫秒）
+     */
+    private long heartbeatIntervalMillis = 2000;
+
+    /**
+     * 超过该时长未收到心跳即认为节点下线（毫秒）
+     */
+    private long failureTimeoutMillis = 6000;
+
+    /**
+     * 每个节点在哈希环上的虚拟节点数
+     */
+    private int virtualNodes = 160;
+}
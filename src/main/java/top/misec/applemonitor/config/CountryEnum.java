@@ -3,6 +3,9 @@ package top.misec.applemonitor.config;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 
+import java.util.HashMap;
+import java.util.Map;
+
 /**
  * 国家/地区枚举类
  * 
@@ -42,6 +45,17 @@ public enum CountryEnum {
      */
     final String url;
 
+    /**
+     * 国家/地区代码到官网URL的索引
+     */
+    private static final Map<String, String> URL_BY_COUNTRY = new HashMap<>();
+
+    static {
+        for (CountryEnum countryEnum : values()) {
+            URL_BY_COUNTRY.put(countryEnum.country, countryEnum.url);
+        }
+    }
+
     /**
      * 根据国家代码获取对应的Apple官网URL
      * 
@@ -49,14 +63,8 @@ public enum CountryEnum {
      * @return 对应的Apple官网URL，如果找不到则返回中国大陆的URL
      */
     public static String getUrlByCountry(String country) {
-        // 遍历所有枚举值
-        for (CountryEnum countryEnum : CountryEnum.values()) {
-            // 如果找到匹配的国家代码，返回对应的URL
-            if (countryEnum.getCountry().equals(country)) {
-                return countryEnum.getUrl();
-            }
-        }
-        // 默认返回中国大陆的URL
-        return CN.url;
+        // 找不到时默认返回中国大陆的URL
+        String url = country == null ? null : URL_BY_COUNTRY.get(country);
+        return url == null ? CN.url : url;
     }
 }
@@ -21,6 +21,23 @@ public class DeviceItem {
      * 不同国家/地区的设备代码可能不同
      */
     private String deviceCode;
+
+    /**
+     * 产品系列（可选），对应购买页路径中的系列名称
+     * 例如：iphone-16-pro，为空时根据产品名称推断
+     */
+    private String productFamily;
+    
+    /**
+     * 优先级（可选），数值越大越先查询，默认0
+     */
+    private Integer priority;
+
+    /**
+     * 新鲜度目标（可选，秒），两次查询的间隔不应超过该值
+     * 本轮查询期间超过该值时重新插队查询，未达到时输出警告
+     */
+    private Integer freshnessSeconds;
     
     /**
      * 商店白名单
@@ -29,6 +46,11 @@ public class DeviceItem {
      * 例如：["益田假日", "万象城"]
      */
     public List<String> storeWhiteList;
+
+    /**
+     * 是否监控送货上门的预计送达日期（可选），开启后送达日期变化时推送通知，默认关闭
+     */
+    private Boolean watchDelivery;
     
     /**
      * 推送配置列表
@@ -0,0 +1,38 @@
+package top.misec.applemonitor.config;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 出口线路池配置类
+ *
+ * Apple按来源IP限流，配置多条出口线路（HTTP/SOCKS代理或本机绑定地址）后，
+ * 请求会在线路之间分摊，每条线路拥有独立的请求预算和健康状态
+ * 不配置时使用默认线路（直连，每1.5秒最多一次请求）
+ *
+ * @author moshi
+ */
+@Data
+public class EgressConfig {
+
+    /**
+     * 出口线路列表
+     */
+    private List<EgressRouteConfig> routes;
+
+    /**
+     * 连续被拒绝（403/541）或连接失败多少次后摘除线路
+     */
+    private int maxConsecutiveRejections = 3;
+
+    /**
+     * 线路首次被摘除的时长（毫秒），再次被摘除时翻倍，最长不超过 maxEjectMillis
+     */
+    private long ejectMillis = 60_000;
+
+    /**
+     * 线路被摘除的最长时长（毫秒）
+     */
+    private long maxEjectMillis = 30 * 60_000;
+}
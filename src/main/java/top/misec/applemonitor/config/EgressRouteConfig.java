@@ -0,0 +1,47 @@
+package top.misec.applemonitor.config;
+
+import lombok.Data;
+
+/**
+ * 单条出口线路配置
+ *
+ * type 可选值：
+ * DIRECT（直连，可通过 localAddress 绑定本机出口地址）、
+ * HTTP（HTTP代理）、SOCKS（SOCKS代理）
+ *
+ * @author moshi
+ */
+@Data
+public class EgressRouteConfig {
+
+    /**
+     * 线路名称，用于日志和状态展示，为空时自动生成
+     */
+    private String name;
+
+    /**
+     * 线路类型：DIRECT、HTTP、SOCKS
+     */
+    private String type = "DIRECT";
+
+    /**
+     * 代理主机地址（HTTP/SOCKS）
+     */
+    private String host;
+
+    /**
+     * 代理端口（HTTP/SOCKS）
+     */
+    private int port;
+
+    /**
+     * 绑定的本机出口地址（仅DIRECT线路的HTTPS请求生效），用于多IP主机
+     */
+    private String localAddress;
+
+    /**
+     * 该线路两次请求之间的最小间隔（毫秒）
+     * 被限流时间隔会自动加倍，请求成功后逐步恢复
+     */
+    private long minIntervalMillis = 1500;
+}
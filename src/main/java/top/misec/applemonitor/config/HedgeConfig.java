@@ -0,0 +1,40 @@
+package top.misec.applemonitor.config;
+
+import lombok.Data;
+
+/**
+ * 对冲请求配置类
+ *
+ * 请求超过该站点近期响应时间的分位数仍未返回时，再发送一个相同的请求，
+ * 采用先返回的结果并取消另一个请求，用于降低长尾延迟
+ *
+ * @author moshi
+ */
+@Data
+public class HedgeConfig {
+
+    /**
+     * 触发对冲的响应时间分位数
+     */
+    private int percentile = 95;
+
+    /**
+     * 每个站点保留的响应时间样本数
+     */
+    private int windowSize = 100;
+
+    /**
+     * 样本数达到该值后才开始对冲，样本不足时不对冲
+     */
+    private int minSamples = 20;
+
+    /**
+     * 对冲等待时间下限（毫秒），避免响应很快的站点频繁对冲
+     */
+    private long minDelayMillis = 300;
+
+    /**
+     * 对冲请求占全部请求的比例上限
+     */
+    private double maxHedgeRatio = 0.1;
+}
@@ -0,0 +1,24 @@
+package top.misec.applemonitor.config;
+
+import lombok.Data;
+
+/**
+ * HTTP请求配置类
+ *
+ * 控制访问Apple官网以及推送服务时的网络参数
+ *
+ * @author moshi
+ */
+@Data
+public class HttpConfig {
+
+    /**
+     * 连接超时（毫秒）
+     */
+    private int connectTimeoutMillis = 3000;
+
+    /**
+     * 读取超时（毫秒）
+     */
+    private int readTimeoutMillis = 5000;
+}
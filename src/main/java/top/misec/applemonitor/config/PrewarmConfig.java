@@ -0,0 +1,35 @@
+package top.misec.applemonitor.config;
+
+import lombok.Data;
+
+/**
+ * 连接预热配置类
+ *
+ * 每轮监控开始前提前解析域名并建立到Apple站点和推送服务的连接，
+ * 使每轮的第一个请求和第一条推送不再承担DNS解析、TCP连接和TLS握手的耗时
+ *
+ * @author moshi
+ */
+@Data
+public class PrewarmConfig {
+
+    /**
+     * 在每轮监控开始前多久进行预热（毫秒），需小于JDK空闲连接保留时间（5秒）
+     */
+    private long leadMillis = 1500;
+
+    /**
+     * DNS解析结果缓存时间（秒）
+     */
+    private int dnsCacheTtlSeconds = 60;
+
+    /**
+     * DNS解析失败结果的缓存时间（秒）
+     */
+    private int dnsNegativeCacheTtlSeconds = 5;
+
+    /**
+     * 是否同时预热推送服务（Bark、飞书）的连接
+     */
+    private boolean warmPushEndpoints = true;
+}
@@ -2,12 +2,14 @@ package top.misec.applemonitor.config;
 
 import lombok.Data;
 
+import java.util.Map;
 
 /**
  * 推送配置类
  * 
  * 包含各种推送方式的配置信息
- * 支持Bark推送（iOS）和飞书机器人推送
+ * 支持Bark推送（iOS）、飞书机器人推送、通用JSON Webhook和本地推送，
+ * 也可以通过 channel 和 options 使用classpath中的第三方推送渠道
  * 
  * @author moshi
  */
@@ -49,4 +51,32 @@ public class PushConfig {
      * 用于验证请求的合法性
      */
     public String feishuBotSecret;
+
+    /**
+     * 通用JSON Webhook地址（可选）
+     * 一批通知以一个POST请求发送
+     */
+    public String webhookUrl;
+
+    /**
+     * 本地推送路径（可选），用于测试和对接本机程序
+     * 文件路径：追加写入JSON行；unix:/path/to.sock：发送到Unix域套接字
+     */
+    public String localSinkPath;
+
+    /**
+     * 推送目标每分钟允许的调用次数（可选），覆盖渠道的默认值（飞书100次，其他渠道不限制），0表示不限制
+     * 超出配额的通知排队合并，令牌补充后推送
+     */
+    public Integer pushRatePerMinute;
+
+    /**
+     * 第三方推送渠道名称（可选），与渠道实现的 name() 相同的渠道会用于推送
+     */
+    public String channel;
+
+    /**
+     * 第三方推送渠道参数（可选），程序不解析，随推送配置原样交给渠道实现，由渠道在 send() 中读取
+     */
+    public Map<String, String> options;
 }
@@ -0,0 +1,19 @@
+package top.misec.applemonitor.config;
+
+import lombok.Data;
+
+/**
+ * 响应录制配置类
+ *
+ * 把每次成功查询到的取货信息连同查询时间写入录制文件，供离线回放（--replay）使用
+ *
+ * @author moshi
+ */
+@Data
+public class RecordConfig {
+
+    /**
+     * 录制文件路径，相对路径基于当前工作目录，每行一条JSON记录
+     */
+    private String path = "state/recordings.jsonl";
+}
@@ -0,0 +1,35 @@
+package top.misec.applemonitor.config;
+
+import lombok.Data;
+
+/**
+ * 会话配置类
+ *
+ * 每条出口线路访问每个国家站点时维护一个独立会话（Cookie和浏览器请求头），
+ * 请求接口前先访问购买页获取Cookie，被拒绝时更换请求头并重新建立会话
+ *
+ * @author moshi
+ */
+@Data
+public class SessionConfig {
+
+    /**
+     * 是否在首次请求前访问购买页获取Cookie
+     */
+    private boolean warmUp = true;
+
+    /**
+     * 预热访问的页面路径
+     */
+    private String warmUpPath = "/shop/buy-iphone";
+
+    /**
+     * 会话有效期（分钟），到期后重新预热并更换请求头
+     */
+    private long sessionTtlMinutes = 30;
+
+    /**
+     * 会话连续被拒绝达到该次数后丢弃，下次请求重新建立会话
+     */
+    private int refreshAfterRejections = 2;
+}
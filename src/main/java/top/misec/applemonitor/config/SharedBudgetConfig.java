@@ -0,0 +1,30 @@
+package top.misec.applemonitor.config;
+
+import lombok.Data;
+
+/**
+ * 跨进程共享请求预算配置类
+ *
+ * 同一台主机上的多个监控进程（例如多个容器）映射同一个预算文件，
+ * 对同一Apple站点、同一出口的请求共用一个令牌桶，避免各进程各自控制节奏时叠加超出按IP的限流
+ *
+ * @author moshi
+ */
+@Data
+public class SharedBudgetConfig {
+
+    /**
+     * 预算文件路径，共享预算的进程需要映射同一个文件（容器之间可挂载同一目录，例如 /dev/shm）
+     */
+    private String path = "state/shared-budget.bin";
+
+    /**
+     * 同一站点、同一出口每分钟允许的请求次数（全部进程合计）
+     */
+    private int requestsPerMinute = 40;
+
+    /**
+     * 允许连续发出的请求数（突发）
+     */
+    private int burst = 1;
+}
@@ -0,0 +1,100 @@
+package top.misec.applemonitor.http;
+
+import lombok.Getter;
+
+import java.net.HttpCookie;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Apple站点会话
+ *
+ * 对应一条出口线路访问一个国家站点的浏览器会话，保存固定的请求头模板和服务端下发的Cookie
+ *
+ * @author moshi
+ */
+public class AppleSession {
+
+    /**
+     * 会话键：线路名称|国家站点地址
+     */
+    @Getter
+    private final String key;
+
+    @Getter
+    private final HeaderProfile profile;
+
+    @Getter
+    private final long createdAt;
+
+    private final Map<String, String> cookies = new ConcurrentHashMap<>();
+
+    /**
+     * 缓存的 Cookie 请求头，Cookie变化时清空
+     */
+    private String cookieHeader;
+
+    /**
+     * 是否已完成预热，预热失败同样视为完成，避免反复预热
+     */
+    @Getter
+    volatile boolean warmedUp;
+
+    /**
+     * 连续被拒绝的次数
+     */
+    @Getter
+    volatile int rejections;
+
+    public AppleSession(String key, HeaderProfile profile, long createdAt) {
+        this.key = key;
+        this.profile = profile;
+        this.createdAt = createdAt;
+    }
+
+    /**
+     * 合并服务端下发的 Set-Cookie，过期的Cookie会被删除
+     *
+     * @param setCookieHeaders Set-Cookie 响应头，可为null
+     */
+    public synchronized void mergeCookies(List<String> setCookieHeaders) {
+        if (setCookieHeaders == null) {
+            return;
+        }
+        for (String header : setCookieHeaders) {
+            try {
+                for (HttpCookie cookie : HttpCookie.parse(header)) {
+                    if (cookie.hasExpired()) {
+                        cookies.remove(cookie.getName());
+                    } else {
+                        cookies.put(cookie.getName(), cookie.getValue());
+                    }
+                    cookieHeader = null;
+                }
+            } catch (IllegalArgumentException e) {
+                // 忽略无法解析的Cookie
+            }
+        }
+    }
+
+    /**
+     * 生成 Cookie 请求头
+     *
+     * @return Cookie请求头，没有Cookie时返回null
+     */
+    public synchronized String cookieHeader() {
+        String header = cookieHeader;
+        if (header == null && !cookies.isEmpty()) {
+            header = cookies.entrySet().stream().map(e -> e.getKey() + "=" + e.getValue()).collect(Collectors.joining("; "));
+            cookieHeader = header;
+        }
+        return header;
+    }
+
+    @Override
+    public String toString() {
+        return key + "(" + profile + ", cookies=" + cookies.size() + ")";
+    }
+}
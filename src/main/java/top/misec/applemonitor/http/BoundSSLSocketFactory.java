@@ -0,0 +1,75 @@
+package top.misec.applemonitor.http;
+
+import cn.hutool.http.ssl.DefaultSSLInfo;
+
+import javax.net.ssl.SSLSocketFactory;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+/**
+ * 绑定本机出口地址的SSL套接字工厂
+ *
+ * HttpsURLConnection 直连时通过无参 {@link #createSocket()} 创建未连接的套接字后再发起连接，
+ * 在此处先绑定本机地址即可指定请求的来源IP
+ * 其余行为委托给Hutool默认的SSL套接字工厂，与未绑定时保持一致
+ *
+ * @author moshi
+ */
+public class BoundSSLSocketFactory extends SSLSocketFactory {
+
+    private final SSLSocketFactory delegate = DefaultSSLInfo.DEFAULT_SSF;
+
+    private final InetAddress localAddress;
+
+    public BoundSSLSocketFactory(String localAddress) {
+        try {
+            this.localAddress = InetAddress.getByName(localAddress);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("无效的本机出口地址: " + localAddress, e);
+        }
+    }
+
+    @Override
+    public Socket createSocket() throws IOException {
+        Socket socket = delegate.createSocket();
+        socket.bind(new InetSocketAddress(localAddress, 0));
+        return socket;
+    }
+
+    @Override
+    public Socket createSocket(String host, int port) throws IOException {
+        return delegate.createSocket(host, port, localAddress, 0);
+    }
+
+    @Override
+    public Socket createSocket(String host, int port, InetAddress localHost, int localPort) throws IOException {
+        return delegate.createSocket(host, port, localAddress, localPort);
+    }
+
+    @Override
+    public Socket createSocket(InetAddress host, int port) throws IOException {
+        return delegate.createSocket(host, port, localAddress, 0);
+    }
+
+    @Override
+    public Socket createSocket(InetAddress address, int port, InetAddress localAddress, int localPort) throws IOException {
+        return delegate.createSocket(address, port, this.localAddress, localPort);
+    }
+
+    @Override
+    public Socket createSocket(Socket s, String host, int port, boolean autoClose) throws IOException {
+        return delegate.createSocket(s, host, port, autoClose);
+    }
+
+    @Override
+    public String[] getDefaultCipherSuites() {
+        return delegate.getDefaultCipherSuites();
+    }
+
+    @Override
+    public String[] getSupportedCipherSuites() {
+        return delegate.getSupportedCipherSuites();
+    }
+}
@@ -0,0 +1,159 @@
+package top.misec.applemonitor.http;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import top.misec.applemonitor.config.CircuitBreakerConfig;
+
+/**
+ * 熔断器
+ *
+ * 状态流转：
+ * 1. CLOSED（关闭）：正常放行，按最近 windowSize 次调用统计失败比例和慢调用比例，任一超过阈值即熔断
+ * 2. OPEN（打开）：直接拒绝调用，持续 openMillis 后进入半开状态
+ * 3. HALF_OPEN（半开）：最多放行 halfOpenProbes 个探测请求，全部成功则关闭，任一失败或超时则重新熔断
+ *
+ * 调用方先通过 {@link #tryAcquire()} 获取许可，调用结束后用 {@link #onSuccess(long)} 或 {@link #onError(long)} 上报结果
+ *
+ * @author moshi
+ */
+@Slf4j
+public class CircuitBreaker {
+
+    /**
+     * 熔断器状态
+     */
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    @Getter
+    private final String name;
+
+    private final CircuitBreakerConfig config;
+
+    /**
+     * 环形统计窗口，记录每次调用是否失败、是否慢调用
+     */
+    private final boolean[] failedCalls;
+    private final boolean[] slowCalls;
+    private int windowIndex;
+    private int windowCount;
+    private int failureCount;
+    private int slowCount;
+
+    @Getter
+    private State state = State.CLOSED;
+
+    /**
+     * 进入OPEN或HALF_OPEN状态的时间戳
+     */
+    private long openedAt;
+
+    /**
+     * 半开状态下已放行和已成功的探测请求数
+     */
+    private int probesIssued;
+    private int probesSucceeded;
+
+    public CircuitBreaker(String name, CircuitBreakerConfig config) {
+        this.name = name;
+        this.config = config;
+        int size = Math.max(1, config.getWindowSize());
+        this.failedCalls = new boolean[size];
+        this.slowCalls = new boolean[size];
+    }
+
+    /**
+     * 尝试获取调用许可
+     *
+     * @return 允许调用返回true，熔断中返回false
+     */
+    public synchronized boolean tryAcquire() {
+        if (state == State.OPEN) {
+            if (System.currentTimeMillis() - openedAt < config.getOpenMillis()) {
+                return false;
+            }
+            transition(State.HALF_OPEN);
+        }
+        if (state == State.HALF_OPEN) {
+            if (probesIssued >= Math.max(1, config.getHalfOpenProbes())) {
+                // 探测请求迟迟没有上报结果（例如线程被中断）时，重新放行探测
+                if (System.currentTimeMillis() - openedAt < config.getOpenMillis()) {
+                    return false;
+                }
+                transition(State.HALF_OPEN);
+            }
+            probesIssued++;
+        }
+        return true;
+    }
+
+    /**
+     * 上报调用成功
+     *
+     * @param durationMillis 调用耗时
+     */
+    public synchronized void onSuccess(long durationMillis) {
+        record(false, durationMillis >= config.getSlowCallDurationMillis());
+    }
+
+    /**
+     * 上报调用失败
+     *
+     * @param durationMillis 调用耗时
+     */
+    public synchronized void onError(long durationMillis) {
+        record(true, durationMillis >= config.getSlowCallDurationMillis());
+    }
+
+    private void record(boolean failed, boolean slow) {
+        if (state == State.HALF_OPEN) {
+            if (failed || slow) {
+                transition(State.OPEN);
+            } else if (++probesSucceeded >= Math.max(1, config.getHalfOpenProbes())) {
+                transition(State.CLOSED);
+            }
+            return;
+        }
+        if (state == State.OPEN) {
+            // 熔断前已放行的调用，结果不再计入
+            return;
+        }
+
+        if (windowCount == failedCalls.length) {
+            failureCount -= failedCalls[windowIndex] ? 1 : 0;
+            slowCount -= slowCalls[windowIndex] ? 1 : 0;
+        } else {
+            windowCount++;
+        }
+        failedCalls[windowIndex] = failed;
+        slowCalls[windowIndex] = slow;
+        failureCount += failed ? 1 : 0;
+        slowCount += slow ? 1 : 0;
+        windowIndex = (windowIndex + 1) % failedCalls.length;
+
+        if (windowCount >= Math.min(config.getMinimumCalls(), failedCalls.length)) {
+            int failureRate = failureCount * 100 / windowCount;
+            int slowRate = slowCount * 100 / windowCount;
+            if (failureRate >= config.getFailureRateThreshold() || slowRate >= config.getSlowCallRateThreshold()) {
+                log.warn("[{}]失败率{}%，慢调用率{}%，熔断{}秒", name, failureRate, slowRate, config.getOpenMillis() / 1000);
+                transition(State.OPEN);
+            }
+        }
+    }
+
+    private void transition(State next) {
+        if (next == State.OPEN || next == State.HALF_OPEN) {
+            openedAt = System.currentTimeMillis();
+        } else if (next == State.CLOSED) {
+            log.info("[{}]探测成功，熔断恢复", name);
+        }
+        state = next;
+        probesIssued = 0;
+        probesSucceeded = 0;
+        windowIndex = 0;
+        windowCount = 0;
+        failureCount = 0;
+        slowCount = 0;
+    }
+}
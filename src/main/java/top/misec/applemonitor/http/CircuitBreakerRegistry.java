@@ -0,0 +1,74 @@
+package top.misec.applemonitor.http;
+
+import cn.hutool.core.util.URLUtil;
+import top.misec.applemonitor.config.AppCfg;
+import top.misec.applemonitor.config.CfgSingleton;
+import top.misec.applemonitor.config.CircuitBreakerConfig;
+
+import java.net.URL;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 熔断器注册表
+ *
+ * 按依赖划分熔断器：每个Apple国家站点一个，每个推送地址一个，
+ * 某个依赖故障只会熔断它自己，不影响其他站点和推送渠道
+ *
+ * @author moshi
+ */
+public class CircuitBreakerRegistry {
+
+    private static final Map<String, CircuitBreaker> BREAKERS = new ConcurrentHashMap<>();
+
+    private CircuitBreakerRegistry() {
+    }
+
+    /**
+     * 获取Apple国家站点的熔断器
+     *
+     * @param baseCountryUrl 国家站点地址，例如 https://www.apple.com/jp
+     * @return 熔断器
+     */
+    public static CircuitBreaker forApple(String baseCountryUrl) {
+        return get("apple:" + baseCountryUrl);
+    }
+
+    /**
+     * 获取推送地址的熔断器，同一主机和路径共享一个熔断器
+     * 飞书Webhook路径中包含令牌，名称中只保留路径的哈希值，避免泄露到日志中
+     *
+     * @param pushUrl 推送地址（Bark服务器地址或飞书Webhook）
+     * @return 熔断器
+     */
+    public static CircuitBreaker forPush(String pushUrl) {
+        String key;
+        try {
+            URL url = URLUtil.url(pushUrl);
+            key = url.getHost() + "#" + Integer.toHexString(url.getPath().hashCode());
+        } catch (Exception e) {
+            // 地址无法解析时按原始字符串的哈希值区分
+            key = Integer.toHexString(String.valueOf(pushUrl).hashCode());
+        }
+        return get("push:" + key);
+    }
+
+    /**
+     * 获取全部熔断器
+     *
+     * @return 熔断器集合
+     */
+    public static Collection<CircuitBreaker> all() {
+        return Collections.unmodifiableCollection(BREAKERS.values());
+    }
+
+    private static CircuitBreaker get(String name) {
+        return BREAKERS.computeIfAbsent(name, key -> {
+            AppCfg appCfg = CfgSingleton.getInstance().config;
+            CircuitBreakerConfig config = appCfg == null ? null : appCfg.getCircuitBreakerConfig();
+            return new CircuitBreaker(key, config == null ? new CircuitBreakerConfig() : config);
+        });
+    }
+}
@@ -0,0 +1,257 @@
+package top.misec.applemonitor.http;
+
+import cn.hutool.core.date.CalendarUtil;
+import cn.hutool.core.thread.ThreadFactoryBuilder;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.core.util.URLUtil;
+import cn.hutool.cron.pattern.CronPattern;
+import cn.hutool.http.HttpRequest;
+import cn.hutool.http.HttpResponse;
+import lombok.extern.slf4j.Slf4j;
+import top.misec.applemonitor.config.*;
+import top.misec.applemonitor.push.PushChannel;
+import top.misec.applemonitor.push.PushDispatcher;
+
+import java.net.InetAddress;
+import java.net.URL;
+import java.net.UnknownHostException;
+import java.security.Security;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 连接预热器
+ *
+ * 根据cron表达式计算下一轮监控的执行时间，在执行前 leadMillis 毫秒：
+ * 1. 重新解析Apple站点和推送服务的域名，过期的DNS缓存在这里刷新，而不是在监控请求中
+ * 2. 通过每条出口线路向Apple站点发送HEAD请求，建立好的连接保留在JDK连接缓存中，供本轮库存请求直接复用；
+ *    HEAD请求与库存请求一样占用线路的请求预算（包括跨进程共享预算），当前没有预算的线路跳过预热
+ * 3. 向推送服务发送HEAD请求，提前完成TCP连接和TLS握手
+ *
+ * 两轮监控的间隔小于JDK空闲连接保留时间（{@link Connections#KEEP_ALIVE_MILLIS}）时，上一轮的连接仍然可用，不再预热
+ *
+ * @author moshi
+ */
+@Slf4j
+public class ConnectionPrewarmer {
+
+    private static volatile ConnectionPrewarmer instance;
+
+    private static volatile boolean initialized;
+
+    /**
+     * 向后查找的最大执行次数，超过后在最后一次查找到的执行时间重新计算
+     */
+    private static final int MAX_LOOKAHEAD = 1000;
+
+    private final PrewarmConfig config;
+
+    private final CronPattern pattern;
+
+    private final String baseCountryUrl;
+
+    private final EgressPool egressPool;
+
+    private final List<String> pushUrls;
+
+    private final SessionManager sessionManager;
+
+    private final HttpConfig httpConfig;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+            ThreadFactoryBuilder.create().setNamePrefix("prewarm-").setDaemon(true).build());
+
+    public ConnectionPrewarmer(PrewarmConfig config, String cronExpression, String baseCountryUrl, EgressPool egressPool,
+                               List<String> pushUrls, SessionManager sessionManager, HttpConfig httpConfig) {
+        this.config = config;
+        this.pattern = CronPattern.of(cronExpression);
+        this.baseCountryUrl = baseCountryUrl;
+        this.egressPool = egressPool;
+        this.pushUrls = pushUrls;
+        this.sessionManager = sessionManager;
+        this.httpConfig = httpConfig == null ? new HttpConfig() : httpConfig;
+    }
+
+    /**
+     * 获取全局连接预热器，未配置时返回null
+     * 首次调用时开始调度
+     *
+     * @return 连接预热器或null
+     */
+    public static ConnectionPrewarmer getInstance() {
+        if (!initialized) {
+            synchronized (ConnectionPrewarmer.class) {
+                if (!initialized) {
+                    AppCfg appCfg = CfgSingleton.getInstance().config;
+                    if (appCfg.getPrewarmConfig() != null) {
+                        AppleTaskConfig taskConfig = appCfg.getAppleTaskConfig();
+                        instance = new ConnectionPrewarmer(appCfg.getPrewarmConfig(), taskConfig.getCronExpressions(),
+                                CountryEnum.getUrlByCountry(taskConfig.getCountry()), EgressPool.getInstance(),
+                                pushUrls(taskConfig), SessionManager.getInstance(), appCfg.getHttpConfig());
+                        instance.start();
+                    }
+                    initialized = true;
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * 设置JVM的DNS缓存时间，需在第一次域名解析前调用
+     *
+     * @param config 预热配置，为null时保持JVM默认值
+     */
+    public static void applyDnsPolicy(PrewarmConfig config) {
+        if (config == null) {
+            return;
+        }
+        Security.setProperty("networkaddress.cache.ttl", String.valueOf(config.getDnsCacheTtlSeconds()));
+        Security.setProperty("networkaddress.cache.negative.ttl", String.valueOf(config.getDnsNegativeCacheTtlSeconds()));
+    }
+
+    /**
+     * 开始调度
+     */
+    public void start() {
+        scheduleNext();
+        log.info("连接预热已开启，每轮监控前{}毫秒预热{}条线路和{}个推送地址", config.getLeadMillis(), egressPool.getRoutes().size(),
+                config.isWarmPushEndpoints() ? pushUrls.size() : 0);
+    }
+
+    /**
+     * 停止调度
+     */
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * 立即执行一次预热
+     */
+    public void warm() {
+        long start = System.currentTimeMillis();
+        Set<String> hosts = new LinkedHashSet<>();
+        hosts.add(URLUtil.url(baseCountryUrl).getHost());
+        if (config.isWarmPushEndpoints()) {
+            pushUrls.forEach(pushUrl -> hosts.add(URLUtil.url(pushUrl).getHost()));
+        }
+        // 缓存过期时重新解析，失败结果同样按配置缓存
+        for (String host : hosts) {
+            try {
+                InetAddress.getAllByName(host);
+            } catch (UnknownHostException e) {
+                log.debug("域名{}解析失败", host);
+            }
+        }
+
+        int warmed = 0;
+        for (EgressRoute route : egressPool.getRoutes()) {
+            if (!egressPool.tryAcquire(route)) {
+                log.debug("线路{}当前没有请求预算，跳过预热", route);
+                continue;
+            }
+            int status = sessionManager.preconnect(route, baseCountryUrl);
+            if (status < 0) {
+                egressPool.onError(route);
+            } else {
+                egressPool.onResponse(route, status);
+                warmed++;
+            }
+        }
+        if (config.isWarmPushEndpoints()) {
+            for (String pushUrl : pushUrls) {
+                if (preconnect(pushUrl)) {
+                    warmed++;
+                }
+            }
+        }
+        log.debug("连接预热完成，解析{}个域名，建立{}个连接，耗时{}ms", hosts.size(), warmed, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * 计算下一次预热时间
+     *
+     * 只预热与上一次执行间隔不小于连接保留时间的那一轮；now之后的第一轮无法得知上一次执行时间，时间来得及时一律预热
+     *
+     * @param now 当前时间戳
+     * @return 下一次预热时间戳；向后 {@link #MAX_LOOKAHEAD} 轮都无需预热时返回负数，其绝对值为重新计算的时间
+     */
+    long nextWarmAt(long now) {
+        long lead = Math.max(0, config.getLeadMillis());
+        long previous = -1;
+        long fire = nextFire(now);
+        for (int i = 0; i < MAX_LOOKAHEAD; i++) {
+            boolean idle = previous < 0 || fire - previous >= Connections.KEEP_ALIVE_MILLIS;
+            if (idle && fire - lead > now) {
+                return fire - lead;
+            }
+            previous = fire;
+            fire = nextFire(fire);
+        }
+        return -previous;
+    }
+
+    private long nextFire(long after) {
+        return pattern.nextMatchAfter(CalendarUtil.calendar(after)).getTimeInMillis();
+    }
+
+    private void scheduleNext() {
+        long now = System.currentTimeMillis();
+        long warmAt = nextWarmAt(now);
+        boolean warm = warmAt > 0;
+        scheduler.schedule(() -> {
+            try {
+                if (warm) {
+                    warm();
+                }
+            } catch (Exception e) {
+                log.debug("连接预热失败:{}", e.getMessage());
+            } finally {
+                scheduleNext();
+            }
+        }, Math.max(0, Math.abs(warmAt) - now), TimeUnit.MILLISECONDS);
+    }
+
+    private boolean preconnect(String pushUrl) {
+        URL url = URLUtil.url(pushUrl);
+        HttpResponse response = null;
+        try {
+            response = HttpRequest.head(url.getProtocol() + "://" + url.getAuthority() + "/")
+                    .setConnectionTimeout(httpConfig.getConnectTimeoutMillis())
+                    .setReadTimeout(httpConfig.getReadTimeoutMillis())
+                    .executeAsync();
+            Connections.finish(response, true);
+            return true;
+        } catch (Exception e) {
+            log.debug("推送地址{}预连接失败:{}", url.getHost(), e.getMessage());
+            Connections.finish(response, false);
+            return false;
+        }
+    }
+
+    /**
+     * 收集全部推送渠道的推送地址，去重并忽略非HTTP地址
+     *
+     * @param taskConfig 监控任务配置
+     * @return 推送地址列表
+     */
+    static List<String> pushUrls(AppleTaskConfig taskConfig) {
+        Set<String> urls = new LinkedHashSet<>();
+        for (DeviceItem deviceItem : taskConfig.getDeviceCodeList()) {
+            if (deviceItem.getPushConfigs() == null) {
+                continue;
+            }
+            for (PushConfig push : deviceItem.getPushConfigs()) {
+                for (PushChannel channel : PushDispatcher.getInstance().resolve(push)) {
+                    if (StrUtil.startWithIgnoreCase(channel.target(push), "http")) {
+                        urls.add(channel.target(push));
+                    }
+                }
+            }
+        }
+        return new ArrayList<>(urls);
+    }
+}
@@ -0,0 +1,63 @@
+package top.misec.applemonitor.http;
+
+import cn.hutool.core.io.IORuntimeException;
+import cn.hutool.core.io.IoUtil;
+import cn.hutool.http.HttpException;
+import cn.hutool.http.HttpResponse;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 连接复用工具
+ *
+ * Hutool 的 {@link HttpResponse#close()}（同步模式的 execute() 也会调用）总是断开底层连接，
+ * JDK 的 keep-alive 连接缓存因此从未生效，每个请求都要重新进行DNS解析、TCP连接和TLS握手。
+ * 使用异步模式（executeAsync）读完响应体后只关闭响应流，连接会回到JDK的连接缓存中供下一个请求复用
+ *
+ * @author moshi
+ */
+public class Connections {
+
+    /**
+     * JDK对未声明 Keep-Alive 超时的服务端默认保留空闲连接5秒
+     */
+    public static final long KEEP_ALIVE_MILLIS = 5_000;
+
+    private Connections() {
+    }
+
+    /**
+     * 结束异步模式的响应
+     *
+     * @param response 异步模式执行的响应
+     * @param reusable 响应体已正常读完时为true，连接放回缓存；请求失败或被取消时为false，直接断开连接
+     */
+    public static void finish(HttpResponse response, boolean reusable) {
+        if (response == null) {
+            return;
+        }
+        if (reusable) {
+            IoUtil.close(response.bodyStream());
+        } else {
+            response.close();
+        }
+    }
+
+    /**
+     * 读取异步模式响应的全部内容并结束响应
+     * 不能使用 {@link HttpResponse#body()}，它在读取后会断开连接
+     *
+     * @param response 异步模式执行的响应
+     * @return 响应内容（UTF-8）
+     */
+    public static String readBody(HttpResponse response) {
+        try {
+            String body = IoUtil.read(response.bodyStream(), StandardCharsets.UTF_8);
+            finish(response, true);
+            return body;
+        } catch (IORuntimeException e) {
+            finish(response, false);
+            throw new HttpException(e);
+        }
+    }
+}
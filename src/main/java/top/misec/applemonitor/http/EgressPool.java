@@ -0,0 +1,297 @@
+package top.misec.applemonitor.http;
+
+import cn.hutool.core.util.URLUtil;
+import lombok.extern.slf4j.Slf4j;
+import top.misec.applemonitor.config.AppCfg;
+import top.misec.applemonitor.config.CfgSingleton;
+import top.misec.applemonitor.config.CountryEnum;
+import top.misec.applemonitor.config.EgressConfig;
+import top.misec.applemonitor.config.EgressRouteConfig;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 出口线路池
+ *
+ * 负责在多条出口线路之间分摊Apple请求：
+ * 1. 每条线路按各自的最小请求间隔排队，调度器总是选择最早可用的健康线路
+ * 2. 线路被限流（403/429/541）时请求间隔自动加倍，成功后逐步恢复
+ * 3. 连续被拒绝或连接失败达到阈值后摘除线路，摘除时长按次数指数增长
+ * 4. 摘除到期后线路重新参与调度，再次失败会立即被摘除
+ *
+ * 未配置出口线路时，池中只有一条直连线路，节奏与原先每个设备间隔1.5秒一致
+ *
+ * 配置了跨进程共享预算时，线路自身的节奏之外，每次请求还需从 {@link SharedRateBudget} 中预订，
+ * 同一主机上访问同一站点、使用同一出口的全部进程合计不超出预算
+ *
+ * @author moshi
+ */
+@Slf4j
+public class EgressPool {
+
+    private static volatile EgressPool instance;
+
+    private final List<EgressRoute> routes;
+
+    private final int maxConsecutiveRejections;
+
+    private final long ejectMillis;
+
+    private final long maxEjectMillis;
+
+    /**
+     * 跨进程共享预算，未配置时为null
+     */
+    private final SharedRateBudget sharedBudget;
+
+    /**
+     * 共享预算的站点部分，与线路的出口标识组成桶名称
+     */
+    private final String budgetHost;
+
+    /**
+     * 轮询起点，保证间隔相同的线路被均匀选择
+     */
+    private int cursor;
+
+    public EgressPool(EgressConfig config) {
+        this(config, null, null);
+    }
+
+    public EgressPool(EgressConfig config, SharedRateBudget sharedBudget, String budgetHost) {
+        if (config == null) {
+            config = new EgressConfig();
+        }
+        List<EgressRouteConfig> routeConfigs = config.getRoutes();
+        if (routeConfigs == null || routeConfigs.isEmpty()) {
+            routeConfigs = Collections.singletonList(new EgressRouteConfig());
+        }
+        List<EgressRoute> list = new ArrayList<>(routeConfigs.size());
+        for (int i = 0; i < routeConfigs.size(); i++) {
+            list.add(EgressRoute.of(routeConfigs.get(i), i));
+        }
+        this.routes = Collections.unmodifiableList(list);
+        this.maxConsecutiveRejections = Math.max(1, config.getMaxConsecutiveRejections());
+        this.ejectMillis = config.getEjectMillis();
+        this.maxEjectMillis = Math.max(config.getEjectMillis(), config.getMaxEjectMillis());
+        this.sharedBudget = sharedBudget;
+        this.budgetHost = budgetHost;
+    }
+
+    /**
+     * 获取全局线路池，首次调用时根据配置文件创建
+     *
+     * @return 线路池实例
+     */
+    public static EgressPool getInstance() {
+        if (instance == null) {
+            synchronized (EgressPool.class) {
+                if (instance == null) {
+                    AppCfg appCfg = CfgSingleton.getInstance().config;
+                    if (appCfg.getSharedBudgetConfig() == null) {
+                        instance = new EgressPool(appCfg.getEgressConfig());
+                    } else {
+                        String host = URLUtil.url(CountryEnum.getUrlByCountry(appCfg.getAppleTaskConfig().getCountry())).getHost();
+                        instance = new EgressPool(appCfg.getEgressConfig(), new SharedRateBudget(appCfg.getSharedBudgetConfig()), host);
+                        log.info("跨进程共享请求预算已开启，预算文件:{}，每分钟{}次", appCfg.getSharedBudgetConfig().getPath(),
+                                appCfg.getSharedBudgetConfig().getRequestsPerMinute());
+                    }
+                    log.info("出口线路池已就绪，共{}条线路:{}", instance.routes.size(), instance.routes);
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * 获取一条线路用于发起请求，必要时阻塞等待该线路的请求预算
+     *
+     * @return 本次请求使用的线路
+     * @throws InterruptedException 等待期间线程被中断
+     */
+    public EgressRoute acquire() throws InterruptedException {
+        EgressRoute route;
+        long startAt;
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            route = select(now);
+            startAt = Math.max(now, Math.max(route.nextAllowedAt, route.ejectedUntil));
+            reserve(route, startAt);
+        }
+        // 共享预算在池锁之外预订，CAS不会阻塞其他线程选择线路
+        if (sharedBudget != null) {
+            startAt = sharedBudget.reserve(budgetKey(route), startAt);
+        }
+        long waitMillis = startAt - System.currentTimeMillis();
+        if (waitMillis > 0) {
+            Thread.sleep(waitMillis);
+        }
+        return route;
+    }
+
+    /**
+     * 尝试获取一条当前立即可用的线路，不阻塞
+     *
+     * @return 可用线路，当前没有可用预算时返回null
+     */
+    public synchronized EgressRoute tryAcquire() {
+        long now = System.currentTimeMillis();
+        EgressRoute route = select(now);
+        if (route.isEjected(now) || route.nextAllowedAt > now) {
+            return null;
+        }
+        if (sharedBudget != null && !sharedBudget.tryAcquire(budgetKey(route), now)) {
+            return null;
+        }
+        reserve(route, now);
+        return route;
+    }
+
+    /**
+     * 尝试占用指定线路当前立即可用的请求预算，不阻塞，用于预连接等必须使用某条线路的请求
+     *
+     * @param route 线路
+     * @return 占用成功返回true，线路被摘除或预算不足时返回false
+     */
+    public synchronized boolean tryAcquire(EgressRoute route) {
+        long now = System.currentTimeMillis();
+        if (route.isEjected(now) || route.nextAllowedAt > now) {
+            return false;
+        }
+        if (sharedBudget != null && !sharedBudget.tryAcquire(budgetKey(route), now)) {
+            return false;
+        }
+        reserve(route, now);
+        return true;
+    }
+
+    /**
+     * 记录请求的响应状态码
+     *
+     * @param route  请求使用的线路
+     * @param status HTTP状态码
+     */
+    public synchronized void onResponse(EgressRoute route, int status) {
+        if (isRejection(status)) {
+            route.intervalMillis = Math.min(EgressRoute.MAX_INTERVAL_MILLIS, Math.max(route.intervalMillis * 2, route.getBaseIntervalMillis()));
+            recordRejection(route, "状态码" + status);
+        } else if (status >= 200 && status < 300) {
+            route.consecutiveRejections = 0;
+            route.ejectCount = 0;
+            route.intervalMillis = Math.max(route.getBaseIntervalMillis(), route.intervalMillis * 3 / 4);
+        }
+    }
+
+    /**
+     * 记录请求的连接异常（代理不可用、超时等）
+     *
+     * @param route 请求使用的线路
+     */
+    public synchronized void onError(EgressRoute route) {
+        recordRejection(route, "连接失败");
+    }
+
+    /**
+     * 获取池中所有线路
+     *
+     * @return 不可修改的线路列表
+     */
+    public List<EgressRoute> getRoutes() {
+        return routes;
+    }
+
+    /**
+     * 获取全部线路的请求节奏和健康状态
+     *
+     * @return 线路状态快照
+     */
+    public synchronized List<RoutePacing> snapshotPacing() {
+        List<RoutePacing> list = new ArrayList<>(routes.size());
+        for (EgressRoute route : routes) {
+            RoutePacing pacing = new RoutePacing();
+            pacing.setName(route.getName());
+            pacing.setIntervalMillis(route.intervalMillis);
+            pacing.setNextAllowedAt(route.nextAllowedAt);
+            pacing.setConsecutiveRejections(route.consecutiveRejections);
+            pacing.setEjectedUntil(route.ejectedUntil);
+            pacing.setEjectCount(route.ejectCount);
+            list.add(pacing);
+        }
+        return list;
+    }
+
+    /**
+     * 恢复线路的请求节奏和健康状态，按名称匹配，配置中已不存在的线路忽略
+     * 恢复后的请求间隔不低于线路当前配置的最小间隔
+     *
+     * @param pacings 线路状态快照
+     */
+    public synchronized void restorePacing(List<RoutePacing> pacings) {
+        for (RoutePacing pacing : pacings) {
+            for (EgressRoute route : routes) {
+                if (route.getName().equals(pacing.getName())) {
+                    route.intervalMillis = Math.min(EgressRoute.MAX_INTERVAL_MILLIS,
+                            Math.max(route.getBaseIntervalMillis(), pacing.getIntervalMillis()));
+                    route.nextAllowedAt = Math.max(route.nextAllowedAt, pacing.getNextAllowedAt());
+                    route.consecutiveRejections = pacing.getConsecutiveRejections();
+                    route.ejectedUntil = pacing.getEjectedUntil();
+                    route.ejectCount = pacing.getEjectCount();
+                }
+            }
+        }
+    }
+
+    /**
+     * 判断状态码是否表示被Apple拒绝或限流
+     *
+     * @param status HTTP状态码
+     * @return 403、429、541返回true
+     */
+    public static boolean isRejection(int status) {
+        return status == 403 || status == 429 || status == 541;
+    }
+
+    /**
+     * 选择最早可用的健康线路；全部被摘除时选择最早恢复的线路
+     */
+    private EgressRoute select(long now) {
+        EgressRoute best = null;
+        long bestAt = Long.MAX_VALUE;
+        boolean bestHealthy = false;
+        int size = routes.size();
+        for (int i = 0; i < size; i++) {
+            EgressRoute route = routes.get((cursor + i) % size);
+            boolean healthy = !route.isEjected(now);
+            long at = Math.max(route.nextAllowedAt, route.ejectedUntil);
+            if (best == null || (healthy && !bestHealthy) || (healthy == bestHealthy && at < bestAt)) {
+                best = route;
+                bestAt = at;
+                bestHealthy = healthy;
+            }
+        }
+        cursor = (cursor + 1) % size;
+        return best;
+    }
+
+    private String budgetKey(EgressRoute route) {
+        return budgetHost + "|" + route.getEgressKey();
+    }
+
+    private void reserve(EgressRoute route, long startAt) {
+        route.nextAllowedAt = startAt + route.intervalMillis;
+        route.requests++;
+    }
+
+    private void recordRejection(EgressRoute route, String reason) {
+        route.rejections++;
+        route.consecutiveRejections++;
+        if (route.consecutiveRejections >= maxConsecutiveRejections) {
+            long duration = Math.min(maxEjectMillis, ejectMillis << Math.min(route.ejectCount, 20));
+            route.ejectCount++;
+            route.ejectedUntil = System.currentTimeMillis() + duration;
+            log.warn("出口线路[{}]连续{}次{}，摘除{}秒", route.getName(), route.consecutiveRejections, reason, duration / 1000);
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package top.misec.applemonitor.http;
+
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.http.HttpRequest;
+import lombok.Getter;
+import top.misec.applemonitor.config.EgressRouteConfig;
+
+import javax.net.ssl.SSLSocketFactory;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+
+/**
+ * 出口线路
+ *
+ * 封装一条出口线路的连接方式（直连/代理/绑定本机地址）、请求节奏和健康状态
+ * 节奏与健康状态的读写均由 {@link EgressPool} 在持有池锁时完成，外部通过 {@link EgressPool#snapshotPacing()} 读取
+ *
+ * @author moshi
+ */
+public class EgressRoute {
+
+    /**
+     * 被限流时请求间隔的上限（毫秒）
+     */
+    static final long MAX_INTERVAL_MILLIS = 60_000;
+
+    /**
+     * 线路名称
+     */
+    @Getter
+    private final String name;
+
+    /**
+     * 代理，直连时为 {@link Proxy#NO_PROXY}
+     */
+    @Getter
+    private final Proxy proxy;
+
+    /**
+     * 绑定本机出口地址的SSL套接字工厂，未绑定时为null
+     */
+    @Getter
+    private final SSLSocketFactory socketFactory;
+
+    /**
+     * 配置的最小请求间隔（毫秒）
+     */
+    @Getter
+    private final long baseIntervalMillis;
+
+    /**
+     * 出口标识，用于跨进程共享请求预算：直连为 direct 或 direct@本机地址，代理为代理地址
+     * 不同进程中配置相同的线路得到相同的标识，与线路名称无关
+     */
+    @Getter
+    private final String egressKey;
+
+    /**
+     * 当前生效的请求间隔（毫秒），被限流时加倍，成功后逐步回落
+     */
+    long intervalMillis;
+
+    /**
+     * 下一次允许发起请求的时间戳
+     */
+    long nextAllowedAt;
+
+    /**
+     * 连续被拒绝或失败的次数
+     */
+    int consecutiveRejections;
+
+    /**
+     * 摘除截止时间戳，0表示未被摘除
+     */
+    long ejectedUntil;
+
+    /**
+     * 累计被摘除次数，用于计算下一次摘除时长
+     */
+    int ejectCount;
+
+    /**
+     * 累计请求数
+     */
+    long requests;
+
+    /**
+     * 累计被拒绝（403/541）或失败次数
+     */
+    long rejections;
+
+    public EgressRoute(String name, Proxy proxy, SSLSocketFactory socketFactory, long baseIntervalMillis) {
+        this(name, proxy, socketFactory, baseIntervalMillis, name);
+    }
+
+    public EgressRoute(String name, Proxy proxy, SSLSocketFactory socketFactory, long baseIntervalMillis, String egressKey) {
+        this.name = name;
+        this.proxy = proxy;
+        this.socketFactory = socketFactory;
+        this.baseIntervalMillis = baseIntervalMillis;
+        this.intervalMillis = baseIntervalMillis;
+        this.egressKey = egressKey;
+    }
+
+    /**
+     * 根据配置创建线路
+     *
+     * @param cfg   线路配置
+     * @param index 线路序号，用于生成默认名称
+     * @return 出口线路
+     */
+    public static EgressRoute of(EgressRouteConfig cfg, int index) {
+        String type = StrUtil.blankToDefault(cfg.getType(), "DIRECT").toUpperCase();
+        Proxy proxy;
+        switch (type) {
+            case "HTTP":
+                proxy = new Proxy(Proxy.Type.HTTP, new InetSocketAddress(cfg.getHost(), cfg.getPort()));
+                break;
+            case "SOCKS":
+                proxy = new Proxy(Proxy.Type.SOCKS, new InetSocketAddress(cfg.getHost(), cfg.getPort()));
+                break;
+            case "DIRECT":
+                proxy = Proxy.NO_PROXY;
+                break;
+            default:
+                throw new IllegalArgumentException("不支持的出口线路类型: " + cfg.getType());
+        }
+
+        SSLSocketFactory socketFactory = null;
+        if (Proxy.NO_PROXY == proxy && StrUtil.isNotBlank(cfg.getLocalAddress())) {
+            socketFactory = new BoundSSLSocketFactory(cfg.getLocalAddress());
+        }
+
+        String name = cfg.getName();
+        if (StrUtil.isBlank(name)) {
+            name = Proxy.NO_PROXY == proxy
+                    ? StrUtil.format("direct-{}{}", index, socketFactory == null ? "" : "@" + cfg.getLocalAddress())
+                    : StrUtil.format("{}-{}:{}", type.toLowerCase(), cfg.getHost(), cfg.getPort());
+        }
+        String egressKey = Proxy.NO_PROXY == proxy
+                ? (socketFactory == null ? "direct" : "direct@" + cfg.getLocalAddress())
+                : StrUtil.format("{}-{}:{}", type.toLowerCase(), cfg.getHost(), cfg.getPort());
+        return new EgressRoute(name, proxy, socketFactory, Math.max(0, cfg.getMinIntervalMillis()), egressKey);
+    }
+
+    /**
+     * 将线路的连接方式应用到请求上
+     *
+     * @param request 待发送的请求
+     * @return 同一个请求对象
+     */
+    public HttpRequest apply(HttpRequest request) {
+        if (Proxy.NO_PROXY != proxy) {
+            request.setProxy(proxy);
+        }
+        if (socketFactory != null) {
+            request.setSSLSocketFactory(socketFactory);
+        }
+        return request;
+    }
+
+    /**
+     * 线路在指定时间是否处于摘除状态，调用方需持有池锁
+     *
+     * @param now 当前时间戳
+     * @return 被摘除返回true
+     */
+    boolean isEjected(long now) {
+        return ejectedUntil > now;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
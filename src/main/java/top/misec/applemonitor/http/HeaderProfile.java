@@ -0,0 +1,63 @@
+package top.misec.applemonitor.http;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 浏览器请求头模板
+ *
+ * 同一会话内始终使用同一个模板，User-Agent与Client Hints保持一致，避免出现自相矛盾的请求头组合
+ *
+ * @author moshi
+ */
+@Getter
+@AllArgsConstructor
+public class HeaderProfile {
+
+    /**
+     * 内置模板：主流桌面浏览器的较新稳定版本
+     */
+    public static final List<HeaderProfile> BUILT_IN = Collections.unmodifiableList(Arrays.asList(
+            new HeaderProfile("chrome-win",
+                    "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/141.0.0.0 Safari/537.36",
+                    "\"Google Chrome\";v=\"141\", \"Not?A_Brand\";v=\"8\", \"Chromium\";v=\"141\"", "\"Windows\""),
+            new HeaderProfile("chrome-mac",
+                    "Mozilla/5.0 (Macintosh; Intel Mac OS X 10_15_7) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/141.0.0.0 Safari/537.36",
+                    "\"Google Chrome\";v=\"141\", \"Not?A_Brand\";v=\"8\", \"Chromium\";v=\"141\"", "\"macOS\""),
+            new HeaderProfile("edge-win",
+                    "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/141.0.0.0 Safari/537.36 Edg/141.0.0.0",
+                    "\"Microsoft Edge\";v=\"141\", \"Not?A_Brand\";v=\"8\", \"Chromium\";v=\"141\"", "\"Windows\""),
+            new HeaderProfile("safari-mac",
+                    "Mozilla/5.0 (Macintosh; Intel Mac OS X 10_15_7) AppleWebKit/605.1.15 (KHTML, like Gecko) Version/26.0 Safari/605.1.15",
+                    null, null),
+            new HeaderProfile("firefox-win",
+                    "Mozilla/5.0 (Windows NT 10.0; Win64; x64; rv:144.0) Gecko/20100101 Firefox/144.0",
+                    null, null)
+    ));
+
+    /**
+     * 模板名称
+     */
+    private final String name;
+
+    private final String userAgent;
+
+    /**
+     * sec-ch-ua，仅Chromium内核浏览器发送，其他浏览器为null
+     */
+    private final String secChUa;
+
+    /**
+     * sec-ch-ua-platform，仅Chromium内核浏览器发送，其他浏览器为null
+     */
+    private final String secChUaPlatform;
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
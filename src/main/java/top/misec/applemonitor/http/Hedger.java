@@ -0,0 +1,211 @@
+package top.misec.applemonitor.http;
+
+import cn.hutool.core.thread.ThreadFactoryBuilder;
+import lombok.extern.slf4j.Slf4j;
+import top.misec.applemonitor.config.CfgSingleton;
+import top.misec.applemonitor.config.HedgeConfig;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 对冲请求执行器
+ *
+ * 执行流程：
+ * 1. 站点样本不足时直接在当前线程执行请求
+ * 2. 否则在工作线程执行请求，当前线程最多等待该站点近期响应时间的分位数（默认p95）
+ * 3. 超时仍未返回时向调用方申请一个对冲请求（调用方从出口线路池获取预算，没有预算时不对冲）
+ * 4. 采用先返回的结果，取消另一个请求；先返回的请求失败时继续等待另一个请求
+ *
+ * 对冲请求数量不超过全部请求的 maxHedgeRatio。对冲请求胜出时，被取消的首个请求以已等待的时间作为响应时间的下限计入统计，
+ * 避免慢请求被取消后分位数越来越低、对冲越来越频繁
+ *
+ * @author moshi
+ */
+@Slf4j
+public class Hedger {
+
+    private static volatile Hedger instance;
+
+    private static volatile boolean initialized;
+
+    private final HedgeConfig config;
+
+    private final LatencyTracker latencyTracker;
+
+    private final ExecutorService executor = Executors.newCachedThreadPool(
+            ThreadFactoryBuilder.create().setNamePrefix("hedge-").setDaemon(true).build());
+
+    private final LongAdder calls = new LongAdder();
+
+    private final LongAdder hedges = new LongAdder();
+
+    private final LongAdder hedgeWins = new LongAdder();
+
+    public Hedger(HedgeConfig config) {
+        this.config = config;
+        this.latencyTracker = new LatencyTracker(config.getWindowSize());
+    }
+
+    /**
+     * 获取全局对冲执行器，未配置时返回null
+     *
+     * @return 对冲执行器或null
+     */
+    public static Hedger getInstance() {
+        if (!initialized) {
+            synchronized (Hedger.class) {
+                if (!initialized) {
+                    HedgeConfig hedgeConfig = CfgSingleton.getInstance().config.getHedgeConfig();
+                    if (hedgeConfig != null) {
+                        instance = new Hedger(hedgeConfig);
+                    }
+                    initialized = true;
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * 可取消的请求
+     *
+     * @param <T> 结果类型
+     */
+    public interface Attempt<T> extends Callable<T> {
+
+        /**
+         * 取消请求，需能中断阻塞中的网络读写
+         */
+        void cancel();
+    }
+
+    /**
+     * 执行请求，必要时发送对冲请求
+     *
+     * @param host         站点，用于统计响应时间
+     * @param primary      首个请求
+     * @param hedgeFactory 创建对冲请求，没有请求预算时返回null
+     * @param <T>          结果类型
+     * @return 先成功返回的结果
+     * @throws Exception 全部请求失败时抛出首个请求的异常
+     */
+    public <T> T call(String host, Attempt<T> primary, Supplier<Attempt<T>> hedgeFactory) throws Exception {
+        calls.increment();
+        long delay = hedgeDelay(host);
+        if (delay < 0) {
+            return timed(host, primary);
+        }
+
+        CompletionService<T> completion = new ExecutorCompletionService<>(executor);
+        long primaryStart = System.currentTimeMillis();
+        Future<T> primaryFuture = completion.submit(() -> timed(host, primary));
+        Future<T> done;
+        try {
+            done = completion.poll(delay, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            // 等待期间被中断时取消首个请求，释放其占用的线路预算和连接
+            cancel(primaryFuture, primary);
+            throw e;
+        }
+        if (done != null) {
+            return await(done, primary);
+        }
+
+        Attempt<T> hedge = hedgeAllowed() ? hedgeFactory.get() : null;
+        if (hedge == null) {
+            return await(primaryFuture, primary);
+        }
+        hedges.increment();
+        log.debug("{}请求超过{}ms未返回，发送对冲请求", host, delay);
+        Future<T> hedgeFuture = completion.submit(() -> timed(host, hedge));
+
+        Exception firstFailure = null;
+        for (int i = 0; i < 2; i++) {
+            Future<T> future;
+            try {
+                future = completion.take();
+            } catch (InterruptedException e) {
+                cancel(primaryFuture, primary);
+                cancel(hedgeFuture, hedge);
+                throw e;
+            }
+            try {
+                T result = future.get();
+                if (future == hedgeFuture) {
+                    hedgeWins.increment();
+                    if (!primaryFuture.isDone()) {
+                        latencyTracker.record(host, System.currentTimeMillis() - primaryStart);
+                    }
+                    cancel(primaryFuture, primary);
+                } else {
+                    cancel(hedgeFuture, hedge);
+                }
+                return result;
+            } catch (ExecutionException e) {
+                if (future == primaryFuture || firstFailure == null) {
+                    firstFailure = unwrap(e);
+                }
+            }
+        }
+        throw firstFailure;
+    }
+
+    /**
+     * 获取对冲统计
+     *
+     * @return 请求总数、对冲次数、对冲请求先返回的次数
+     */
+    public long[] stats() {
+        return new long[]{calls.sum(), hedges.sum(), hedgeWins.sum()};
+    }
+
+    /**
+     * 计算站点的对冲等待时间
+     *
+     * @param host 站点
+     * @return 等待时间（毫秒），样本不足时返回-1
+     */
+    long hedgeDelay(String host) {
+        long p = latencyTracker.percentile(host, config.getPercentile(), config.getMinSamples());
+        return p < 0 ? -1 : Math.max(config.getMinDelayMillis(), p);
+    }
+
+    private boolean hedgeAllowed() {
+        return hedges.sum() + 1 <= calls.sum() * config.getMaxHedgeRatio();
+    }
+
+    private <T> T timed(String host, Attempt<T> attempt) throws Exception {
+        long start = System.currentTimeMillis();
+        T result = attempt.call();
+        latencyTracker.record(host, System.currentTimeMillis() - start);
+        return result;
+    }
+
+    private static <T> T await(Future<T> future, Attempt<T> attempt) throws Exception {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            cancel(future, attempt);
+            throw e;
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        }
+    }
+
+    private static void cancel(Future<?> future, Attempt<?> attempt) {
+        if (!future.isDone()) {
+            attempt.cancel();
+            future.cancel(true);
+        }
+    }
+
+    private static Exception unwrap(ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof Exception) {
+            return (Exception) cause;
+        }
+        throw new IllegalStateException(cause);
+    }
+}
@@ -0,0 +1,118 @@
+package top.misec.applemonitor.http;
+
+import cn.hutool.core.convert.Convert;
+import cn.hutool.http.Header;
+import cn.hutool.http.HttpResponse;
+import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.JSONException;
+import com.alibaba.fastjson2.JSONObject;
+import org.brotli.dec.BrotliInputStream;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 流式读取JSON响应
+ *
+ * 配合 {@link cn.hutool.http.HttpRequest#executeAsync()} 使用：Hutool按 Content-Encoding 对响应流做gzip/deflate解压，
+ * Brotli（br）由 org.brotli:dec 解压，解压后的数据直接交给fastjson2解析，不再先把完整响应体读成 byte[] 再转成 String
+ *
+ * @author moshi
+ */
+public class JsonResponseReader {
+
+    /**
+     * 请求时声明支持的压缩格式
+     */
+    public static final String ACCEPT_ENCODING = "gzip, deflate, br";
+
+    private JsonResponseReader() {
+    }
+
+    /**
+     * 解析响应体并记录传输统计
+     *
+     * @param response   异步模式执行的响应
+     * @param fetchNanos 发出请求到收到响应头的耗时（纳秒）
+     * @param stats      传输统计
+     * @return 解析结果，响应体为空时返回null
+     */
+    public static ParsedBody read(HttpResponse response, long fetchNanos, TransferStats stats) {
+        long start = System.nanoTime();
+        CountingInputStream in = new CountingInputStream(decode(response));
+        JSONObject json = JSON.parseObject(in, StandardCharsets.UTF_8);
+        long parseNanos = System.nanoTime() - start;
+        // Hutool的contentLength()在压缩响应上不返回Content-Length，这里直接读取响应头
+        long contentLength = Convert.toLong(response.header(Header.CONTENT_LENGTH), -1L);
+        stats.record(response.contentEncoding(), contentLength, in.count, fetchNanos, parseNanos);
+        return new ParsedBody(json, in.count);
+    }
+
+    /**
+     * 获取解压后的响应流，Hutool只处理gzip和deflate，br在这里解压
+     */
+    private static InputStream decode(HttpResponse response) {
+        InputStream body = response.bodyStream();
+        if (body == null || !"br".equalsIgnoreCase(response.contentEncoding())) {
+            return body;
+        }
+        try {
+            return new BrotliInputStream(body);
+        } catch (IOException e) {
+            throw new JSONException("Brotli响应解码失败", e);
+        }
+    }
+
+    /**
+     * 解析结果
+     */
+    public static final class ParsedBody {
+
+        /**
+         * 解析后的JSON，响应体为空时为null
+         */
+        public final JSONObject json;
+
+        /**
+         * 解压后的字节数
+         */
+        public final long decodedBytes;
+
+        private ParsedBody(JSONObject json, long decodedBytes) {
+            this.json = json;
+            this.decodedBytes = decodedBytes;
+        }
+    }
+
+    /**
+     * 统计读取字节数的输入流
+     */
+    private static final class CountingInputStream extends FilterInputStream {
+
+        private long count;
+
+        private CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package top.misec.applemonitor.http;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 按站点统计最近的响应时间
+ *
+ * 每个站点保留最近 windowSize 个样本，按需计算分位数
+ *
+ * @author moshi
+ */
+public class LatencyTracker {
+
+    private final int windowSize;
+
+    private final Map<String, Window> windows = new ConcurrentHashMap<>();
+
+    public LatencyTracker(int windowSize) {
+        this.windowSize = Math.max(1, windowSize);
+    }
+
+    /**
+     * 记录一次响应时间
+     *
+     * @param host          站点
+     * @param elapsedMillis 响应时间（毫秒）
+     */
+    public void record(String host, long elapsedMillis) {
+        windows.computeIfAbsent(host, k -> new Window(windowSize)).add(elapsedMillis);
+    }
+
+    /**
+     * 计算站点响应时间的分位数
+     *
+     * @param host       站点
+     * @param percentile 分位数（1-100）
+     * @param minSamples 最少样本数
+     * @return 分位数对应的响应时间（毫秒），样本不足时返回-1
+     */
+    public long percentile(String host, int percentile, int minSamples) {
+        Window window = windows.get(host);
+        if (window == null) {
+            return -1;
+        }
+        long[] samples = window.snapshot();
+        if (samples.length == 0 || samples.length < minSamples) {
+            return -1;
+        }
+        Arrays.sort(samples);
+        int index = (int) Math.ceil(Math.min(100, Math.max(1, percentile)) / 100.0 * samples.length) - 1;
+        return samples[Math.max(0, index)];
+    }
+
+    /**
+     * 环形样本窗口
+     */
+    private static final class Window {
+        private final long[] samples;
+        private int index;
+        private int count;
+
+        private Window(int size) {
+            this.samples = new long[size];
+        }
+
+        private synchronized void add(long value) {
+            samples[index] = value;
+            index = (index + 1) % samples.length;
+            count = Math.min(count + 1, samples.length);
+        }
+
+        private synchronized long[] snapshot() {
+            return Arrays.copyOf(samples, count);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package top.misec.applemonitor.http;
+
+import lombok.Data;
+
+/**
+ * 出口线路的请求节奏和健康状态快照，用于检查点保存和恢复
+ *
+ * @author moshi
+ */
+@Data
+public class RoutePacing {
+
+    /**
+     * 线路名称，恢复时按名称匹配
+     */
+    private String name;
+
+    /**
+     * 当前生效的请求间隔（毫秒）
+     */
+    private long intervalMillis;
+
+    /**
+     * 下一次允许发起请求的时间戳
+     */
+    private long nextAllowedAt;
+
+    /**
+     * 连续被拒绝或失败的次数
+     */
+    private int consecutiveRejections;
+
+    /**
+     * 摘除截止时间戳
+     */
+    private long ejectedUntil;
+
+    /**
+     * 累计被摘除次数
+     */
+    private int ejectCount;
+}
@@ -0,0 +1,339 @@
+package top.misec.applemonitor.http;
+
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.http.Header;
+import cn.hutool.http.HttpRequest;
+import cn.hutool.http.HttpResponse;
+import lombok.extern.slf4j.Slf4j;
+import top.misec.applemonitor.config.CfgSingleton;
+import top.misec.applemonitor.config.HttpConfig;
+import top.misec.applemonitor.config.SessionConfig;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 会话与请求头管理器
+ *
+ * 旧版本只发送一个写死的Referer，User-Agent等请求头沿用Hutool的默认值（末尾带有"Hutool"字样），
+ * 也不携带任何Cookie，很多"请求过于频繁"实际上是被识别为机器人。该管理器：
+ * 1. 每条出口线路访问每个国家站点时维护独立会话，首次请求前访问购买页预热Cookie
+ * 2. 新会话轮换使用内置的浏览器请求头模板，同一会话内请求头保持一致
+ * 3. 根据产品名称推断产品系列，生成与真实购买页一致的Referer
+ * 4. 会话连续被拒绝或超过有效期后丢弃，下次请求重新预热并更换请求头模板
+ *
+ * Cookie由会话自行管理，Hutool的全局Cookie管理器在本类加载时关闭，避免不同线路、不同会话共享Cookie
+ *
+ * @author moshi
+ */
+@Slf4j
+public class SessionManager {
+
+    private static volatile SessionManager instance;
+
+    private static final Pattern IPHONE = Pattern.compile("iphone\\s*(\\d+)\\s*(pro|plus|e)?");
+
+    private static final Pattern IPAD = Pattern.compile("ipad\\s*(pro|air|mini)?");
+
+    private final SessionConfig config;
+
+    private final HttpConfig httpConfig;
+
+    private final List<HeaderProfile> profiles;
+
+    private final Map<String, AppleSession> sessions = new ConcurrentHashMap<>();
+
+    private final AtomicInteger profileCursor = new AtomicInteger();
+
+    /**
+     * 库存接口请求头模板（不含Cookie），key为 请求头模板名称|Referer
+     */
+    private final Map<String, Map<String, List<String>>> fetchHeaderTemplates = new ConcurrentHashMap<>();
+
+    static {
+        // 未设置 cookie(String) 的请求会读写全局Cookie管理器，关闭后请求只携带会话自己的Cookie
+        HttpRequest.closeCookie();
+    }
+
+    public SessionManager(SessionConfig config, HttpConfig httpConfig, List<HeaderProfile> profiles) {
+        this.config = config == null ? new SessionConfig() : config;
+        this.httpConfig = httpConfig == null ? new HttpConfig() : httpConfig;
+        this.profiles = profiles;
+        // 起始模板随机，避免多个实例同时使用同一模板
+        this.profileCursor.set(new Random().nextInt(profiles.size()));
+    }
+
+    /**
+     * 获取全局会话管理器
+     *
+     * @return 会话管理器
+     */
+    public static SessionManager getInstance() {
+        if (instance == null) {
+            synchronized (SessionManager.class) {
+                if (instance == null) {
+                    instance = new SessionManager(CfgSingleton.getInstance().config.getSessionConfig(),
+                            CfgSingleton.getInstance().config.getHttpConfig(), HeaderProfile.BUILT_IN);
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * 获取出口线路访问国家站点的会话，不存在或已过期时创建新会话
+     *
+     * @param route          出口线路
+     * @param baseCountryUrl 国家站点地址
+     * @return 会话
+     */
+    public AppleSession session(EgressRoute route, String baseCountryUrl) {
+        String key = route.getName() + "|" + baseCountryUrl;
+        long now = System.currentTimeMillis();
+        AppleSession session = sessions.get(key);
+        if (session != null && now - session.getCreatedAt() < config.getSessionTtlMinutes() * 60_000) {
+            return session;
+        }
+        return sessions.compute(key, (k, current) -> {
+            if (current != null && current != session) {
+                return current;
+            }
+            AppleSession created = new AppleSession(k, nextProfile(), now);
+            created.warmedUp = !config.isWarmUp();
+            return created;
+        });
+    }
+
+    /**
+     * 为请求设置会话Cookie，会话还没有Cookie时不发送Cookie请求头
+     *
+     * Hutool在写入请求头之后才写入 cookie(String) 的值，即使为空字符串也会发送空的Cookie请求头，
+     * 因此只在会话有Cookie时调用
+     *
+     * @param request 请求
+     * @param session 会话
+     * @return 请求
+     */
+    public static HttpRequest withCookie(HttpRequest request, AppleSession session) {
+        String cookie = session.cookieHeader();
+        return cookie == null ? request : request.cookie(cookie);
+    }
+
+    /**
+     * 访问购买页预热会话Cookie
+     *
+     * @param session        会话
+     * @param route          出口线路
+     * @param baseCountryUrl 国家站点地址
+     * @return 响应状态码，连接失败返回-1
+     */
+    public int warmUp(AppleSession session, EgressRoute route, String baseCountryUrl) {
+        Map<String, List<String>> headers = profileHeaders(session.getProfile(), baseCountryUrl);
+        headers.put(Header.ACCEPT.getValue(), Collections.singletonList(
+                "text/html,application/xhtml+xml,application/xml;q=0.9,image/avif,image/webp,*/*;q=0.8"));
+        headers.put("Sec-Fetch-Site", Collections.singletonList("none"));
+        headers.put("Sec-Fetch-Mode", Collections.singletonList("navigate"));
+        headers.put("Sec-Fetch-Dest", Collections.singletonList("document"));
+        headers.put("Sec-Fetch-User", Collections.singletonList("?1"));
+        headers.put("Upgrade-Insecure-Requests", Collections.singletonList("1"));
+        HttpResponse response = null;
+        try {
+            // 只需要响应头中的Cookie，页面内容不读取，关闭响应流后连接留给库存请求复用
+            response = withCookie(route.apply(HttpRequest.get(baseCountryUrl + config.getWarmUpPath())), session)
+                    .header(headers, true)
+                    .setConnectionTimeout(httpConfig.getConnectTimeoutMillis())
+                    .setReadTimeout(httpConfig.getReadTimeoutMillis())
+                    .executeAsync();
+            session.mergeCookies(response.headerList(Header.SET_COOKIE.getValue()));
+            log.debug("会话{}预热完成，状态码:{}", session, response.getStatus());
+            Connections.finish(response, true);
+            return response.getStatus();
+        } catch (Exception e) {
+            log.debug("会话{}预热失败:{}", session, e.getMessage());
+            Connections.finish(response, false);
+            return -1;
+        } finally {
+            session.warmedUp = true;
+        }
+    }
+
+    /**
+     * 通过出口线路向国家站点发送HEAD请求建立连接，连接保留在JDK连接缓存中供随后的库存请求复用
+     * 请求头与会话保持一致，不计入线路预算，也不更新会话状态
+     *
+     * @param route          出口线路
+     * @param baseCountryUrl 国家站点地址
+     * @return 响应状态码，连接失败返回-1
+     */
+    public int preconnect(EgressRoute route, String baseCountryUrl) {
+        AppleSession session = session(route, baseCountryUrl);
+        HttpResponse response = null;
+        try {
+            response = withCookie(route.apply(HttpRequest.head(baseCountryUrl + "/")), session)
+                    .header(profileHeaders(session.getProfile(), baseCountryUrl), true)
+                    .setConnectionTimeout(httpConfig.getConnectTimeoutMillis())
+                    .setReadTimeout(httpConfig.getReadTimeoutMillis())
+                    .executeAsync();
+            Connections.finish(response, true);
+            return response.getStatus();
+        } catch (Exception e) {
+            log.debug("线路{}预连接{}失败:{}", route, baseCountryUrl, e.getMessage());
+            Connections.finish(response, false);
+            return -1;
+        }
+    }
+
+    /**
+     * 获取库存接口请求头中不含Cookie的部分（模拟购买页发起的XHR请求）
+     *
+     * 同一请求头模板、同一购买页的请求头完全相同，生成一次后缓存，调用方另行添加会话的Cookie
+     *
+     * @param session        会话
+     * @param baseCountryUrl 国家站点地址
+     * @param productCode    产品代码
+     * @param productTitle   产品名称，未知时为null
+     * @param productFamily  配置的产品系列，为空时根据产品名称推断
+     * @return 不可修改的请求头
+     */
+    public Map<String, List<String>> fetchHeaderTemplate(AppleSession session, String baseCountryUrl, String productCode,
+                                                         String productTitle, String productFamily) {
+        String referer = baseCountryUrl + buyPagePath(productTitle, productFamily, config.getWarmUpPath()) + "/" + productCode;
+        return fetchHeaderTemplates.computeIfAbsent(session.getProfile().getName() + "|" + referer, key -> {
+            Map<String, List<String>> headers = profileHeaders(session.getProfile(), baseCountryUrl);
+            headers.put(Header.ACCEPT.getValue(), Collections.singletonList("*/*"));
+            headers.put(Header.REFERER.getValue(), Collections.singletonList(referer));
+            headers.put("Sec-Fetch-Site", Collections.singletonList("same-origin"));
+            headers.put("Sec-Fetch-Mode", Collections.singletonList("cors"));
+            headers.put("Sec-Fetch-Dest", Collections.singletonList("empty"));
+            return Collections.unmodifiableMap(headers);
+        });
+    }
+
+    /**
+     * 处理库存接口响应：合并Cookie，统计连续拒绝次数，达到阈值后丢弃会话
+     *
+     * @param session          会话
+     * @param status           响应状态码
+     * @param setCookieHeaders Set-Cookie 响应头，可为null
+     */
+    public void onResponse(AppleSession session, int status, List<String> setCookieHeaders) {
+        session.mergeCookies(setCookieHeaders);
+        if (!EgressPool.isRejection(status)) {
+            session.rejections = 0;
+            return;
+        }
+        if (++session.rejections >= Math.max(1, config.getRefreshAfterRejections())
+                && sessions.remove(session.getKey(), session)) {
+            log.info("会话{}连续{}次被拒绝，丢弃会话并更换请求头", session, session.rejections);
+        }
+    }
+
+    /**
+     * 根据产品名称推断购买页路径
+     *
+     * 例如 iPhone 16 Pro Max 对应 /shop/buy-iphone/iphone-16-pro，无法推断时返回默认路径
+     *
+     * @param productTitle  产品名称，可为null
+     * @param productFamily 配置的产品系列，不为空时优先使用
+     * @param defaultPath   无法推断时使用的路径
+     * @return 购买页路径
+     */
+    public static String buyPagePath(String productTitle, String productFamily, String defaultPath) {
+        if (StrUtil.isNotBlank(productFamily)) {
+            String family = productFamily.trim().toLowerCase(Locale.ROOT);
+            return "/shop/" + buyCategory(family) + "/" + family;
+        }
+        if (StrUtil.isBlank(productTitle)) {
+            return defaultPath;
+        }
+        String title = productTitle.toLowerCase(Locale.ROOT);
+        Matcher iphone = IPHONE.matcher(title);
+        if (iphone.find()) {
+            String suffix = iphone.group(2);
+            if ("pro".equals(suffix)) {
+                return "/shop/buy-iphone/iphone-" + iphone.group(1) + "-pro";
+            }
+            return "/shop/buy-iphone/iphone-" + iphone.group(1) + ("e".equals(suffix) ? "e" : "");
+        }
+        if (title.contains("iphone air")) {
+            return "/shop/buy-iphone/iphone-air";
+        }
+        Matcher ipad = IPAD.matcher(title);
+        if (ipad.find()) {
+            return "/shop/buy-ipad/ipad" + (ipad.group(1) == null ? "" : "-" + ipad.group(1));
+        }
+        if (title.contains("watch")) {
+            return "/shop/buy-watch/apple-watch";
+        }
+        return defaultPath;
+    }
+
+    private static String buyCategory(String family) {
+        if (family.startsWith("ipad")) {
+            return "buy-ipad";
+        }
+        if (family.contains("watch")) {
+            return "buy-watch";
+        }
+        if (family.startsWith("mac") || family.startsWith("imac")) {
+            return "buy-mac";
+        }
+        return "buy-iphone";
+    }
+
+    private Map<String, List<String>> profileHeaders(HeaderProfile profile, String baseCountryUrl) {
+        Map<String, List<String>> headers = new HashMap<>(16);
+        headers.put(Header.USER_AGENT.getValue(), Collections.singletonList(profile.getUserAgent()));
+        headers.put(Header.ACCEPT_LANGUAGE.getValue(), Collections.singletonList(acceptLanguage(baseCountryUrl)));
+        if (profile.getSecChUa() != null) {
+            headers.put("sec-ch-ua", Collections.singletonList(profile.getSecChUa()));
+            headers.put("sec-ch-ua-mobile", Collections.singletonList("?0"));
+            headers.put("sec-ch-ua-platform", Collections.singletonList(profile.getSecChUaPlatform()));
+        }
+        return headers;
+    }
+
+    /**
+     * 根据国家站点生成 Accept-Language
+     *
+     * @param baseCountryUrl 国家站点地址
+     * @return Accept-Language
+     */
+    static String acceptLanguage(String baseCountryUrl) {
+        if (baseCountryUrl.endsWith(".com.cn")) {
+            return "zh-CN,zh;q=0.9,en;q=0.8";
+        }
+        String region = StrUtil.subAfter(baseCountryUrl, "apple.com/", true).toLowerCase(Locale.ROOT);
+        switch (region) {
+            case "hk":
+                return "zh-HK,zh;q=0.9,en;q=0.8";
+            case "mo":
+                return "zh-MO,zh;q=0.9,en;q=0.8";
+            case "tw":
+                return "zh-TW,zh;q=0.9,en;q=0.8";
+            case "jp":
+                return "ja-JP,ja;q=0.9,en;q=0.8";
+            case "kr":
+                return "ko-KR,ko;q=0.9,en;q=0.8";
+            case "sg":
+                return "en-SG,en;q=0.9";
+            case "my":
+                return "en-MY,en;q=0.9,ms;q=0.8";
+            case "uk":
+                return "en-GB,en;q=0.9";
+            case "au":
+                return "en-AU,en;q=0.9";
+            case "ca":
+                return "en-CA,en;q=0.9,fr-CA;q=0.8";
+            default:
+                return "en-US,en;q=0.9";
+        }
+    }
+
+    private HeaderProfile nextProfile() {
+        return profiles.get(Math.floorMod(profileCursor.getAndIncrement(), profiles.size()));
+    }
+}
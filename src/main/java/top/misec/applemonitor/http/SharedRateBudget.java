@@ -0,0 +1,174 @@
+package top.misec.applemonitor.http;
+
+import cn.hutool.core.io.FileUtil;
+import lombok.extern.slf4j.Slf4j;
+import top.misec.applemonitor.config.SharedBudgetConfig;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 跨进程共享的请求预算
+ *
+ * 预算保存在内存映射文件中，映射同一文件的进程共用同一组令牌桶，每个站点和出口一个桶。
+ * 令牌桶采用GCRA算法，每个桶只有一个"理论到达时间"，通过CAS更新，进程之间不需要加锁：
+ * 1. 请求的理论到达时间为 max(桶的理论到达时间, 当前时间) + 请求间隔
+ * 2. 请求最早可以在 理论到达时间 - 请求间隔 - 突发容量 发出
+ *
+ * 文件布局：头部16字节（魔数、桶数量），之后每个桶16字节（key的哈希、理论到达时间），桶按开放寻址查找，
+ * 首次使用时通过CAS占用空桶。时间使用 {@link System#currentTimeMillis()}，同一主机上的进程共用系统时钟
+ *
+ * @author moshi
+ */
+@Slf4j
+public class SharedRateBudget {
+
+    private static final long MAGIC = 0x414D_4255_4447_4554L;
+
+    /**
+     * 桶数量，同一主机上的站点和出口组合远少于该值
+     */
+    static final int SLOTS = 256;
+
+    private static final int HEADER_BYTES = 16;
+
+    private static final int SLOT_BYTES = 16;
+
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    private final MappedByteBuffer buffer;
+
+    /**
+     * 已查找到的桶，key为桶名称
+     */
+    private final Map<String, Integer> offsets = new ConcurrentHashMap<>();
+
+    /**
+     * 请求间隔（毫秒）
+     */
+    private final long intervalMillis;
+
+    /**
+     * 突发容量（毫秒），允许理论到达时间领先当前时间的部分
+     */
+    private final long toleranceMillis;
+
+    /**
+     * 映射预算文件，文件不存在时创建
+     *
+     * @param config 共享预算配置
+     */
+    public SharedRateBudget(SharedBudgetConfig config) {
+        this(FileUtil.file(config.getPath()), config.getRequestsPerMinute(), config.getBurst());
+    }
+
+    SharedRateBudget(File file, int requestsPerMinute, int burst) {
+        this.intervalMillis = 60_000L / Math.max(1, requestsPerMinute);
+        this.toleranceMillis = intervalMillis * (Math.max(1, burst) - 1);
+        FileUtil.mkParentDirs(file);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // 映射在通道关闭后仍然有效，文件不足时自动扩展并以0填充
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES + (long) SLOTS * SLOT_BYTES);
+        } catch (IOException e) {
+            throw new UncheckedIOException("无法映射共享预算文件" + file.getAbsolutePath(), e);
+        }
+        long magic = (long) LONGS.getVolatile(buffer, 0);
+        if (magic == 0 && LONGS.compareAndSet(buffer, 0, 0L, MAGIC)) {
+            LONGS.setVolatile(buffer, 8, (long) SLOTS);
+        } else if (magic != 0 && magic != MAGIC) {
+            throw new IllegalStateException(file.getAbsolutePath() + "不是共享预算文件");
+        }
+    }
+
+    /**
+     * 预订一次请求，不阻塞
+     *
+     * @param key 桶名称，例如 站点|出口
+     * @param now 本进程计划发出请求的时间
+     * @return 全部进程合计不超出预算时最早可以发出请求的时间，不早于now
+     */
+    public long reserve(String key, long now) {
+        int offset = slot(key);
+        if (offset < 0) {
+            return now;
+        }
+        while (true) {
+            long tat = (long) LONGS.getVolatile(buffer, offset);
+            long next = Math.max(tat, now) + intervalMillis;
+            if (LONGS.compareAndSet(buffer, offset, tat, next)) {
+                return Math.max(now, next - intervalMillis - toleranceMillis);
+            }
+        }
+    }
+
+    /**
+     * 预算充足时立即占用一次请求
+     *
+     * @param key 桶名称
+     * @param now 当前时间
+     * @return 占用成功返回true，需要等待时不占用并返回false
+     */
+    public boolean tryAcquire(String key, long now) {
+        int offset = slot(key);
+        if (offset < 0) {
+            return true;
+        }
+        while (true) {
+            long tat = (long) LONGS.getVolatile(buffer, offset);
+            long next = Math.max(tat, now) + intervalMillis;
+            if (next - intervalMillis - toleranceMillis > now) {
+                return false;
+            }
+            if (LONGS.compareAndSet(buffer, offset, tat, next)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 查找或占用key对应的桶，结果在本进程内缓存
+     *
+     * @return 桶中理论到达时间的偏移量，桶已用完时返回-1，此时不限制
+     */
+    private int slot(String key) {
+        return offsets.computeIfAbsent(key, this::findSlot);
+    }
+
+    private int findSlot(String key) {
+        long hash = hash(key);
+        int start = (int) Long.remainderUnsigned(hash, SLOTS);
+        for (int i = 0; i < SLOTS; i++) {
+            int offset = HEADER_BYTES + ((start + i) % SLOTS) * SLOT_BYTES;
+            long owner = (long) LONGS.getVolatile(buffer, offset);
+            if (owner == hash || (owner == 0 && (LONGS.compareAndSet(buffer, offset, 0L, hash)
+                    || (long) LONGS.getVolatile(buffer, offset) == hash))) {
+                return offset + 8;
+            }
+        }
+        log.warn("共享预算文件的{}个桶已用完，{}不受共享预算限制", SLOTS, key);
+        return -1;
+    }
+
+    /**
+     * FNV-1a 64位哈希，0保留为空桶标记
+     */
+    static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return hash == 0 ? 1 : hash;
+    }
+}
@@ -0,0 +1,85 @@
+package top.misec.applemonitor.http;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Apple响应传输统计
+ *
+ * 统计响应的传输字节数（压缩后）、解压后字节数以及请求和解析耗时，用于观察压缩传输节省的流量。
+ * 压缩响应的传输字节数取自 Content-Length，分块传输没有该响应头时只统计解压后字节数
+ *
+ * @author moshi
+ */
+public class TransferStats {
+
+    private static final TransferStats INSTANCE = new TransferStats();
+
+    private final LongAdder responses = new LongAdder();
+    private final LongAdder compressedResponses = new LongAdder();
+    private final LongAdder wireBytes = new LongAdder();
+    private final LongAdder decodedBytes = new LongAdder();
+
+    /**
+     * 传输字节数已知的响应对应的解压后字节数，用于计算压缩率
+     */
+    private final LongAdder comparableDecodedBytes = new LongAdder();
+
+    private final LongAdder fetchNanos = new LongAdder();
+    private final LongAdder parseNanos = new LongAdder();
+
+    /**
+     * 获取全局传输统计
+     *
+     * @return 传输统计
+     */
+    public static TransferStats getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * 记录一次响应
+     *
+     * @param contentEncoding 响应的 Content-Encoding，未压缩时为null
+     * @param contentLength   响应的 Content-Length，未知时小于0
+     * @param decoded         解压后字节数
+     * @param fetchNanos      发出请求到收到响应头的耗时（纳秒）
+     * @param parseNanos      读取、解压并解析响应体的耗时（纳秒）
+     */
+    public void record(String contentEncoding, long contentLength, long decoded, long fetchNanos, long parseNanos) {
+        boolean compressed = contentEncoding != null && !"identity".equalsIgnoreCase(contentEncoding);
+        responses.increment();
+        decodedBytes.add(decoded);
+        if (compressed) {
+            compressedResponses.increment();
+        }
+        long wire = compressed ? contentLength : decoded;
+        if (wire >= 0) {
+            wireBytes.add(wire);
+            comparableDecodedBytes.add(decoded);
+        }
+        this.fetchNanos.add(fetchNanos);
+        this.parseNanos.add(parseNanos);
+    }
+
+    /**
+     * 获取统计快照
+     *
+     * @return 统计项，平均耗时单位为毫秒，savedRatio为压缩节省的流量比例
+     */
+    public Map<String, Object> snapshot() {
+        long count = responses.sum();
+        long wire = wireBytes.sum();
+        long comparable = comparableDecodedBytes.sum();
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("responses", count);
+        snapshot.put("compressedResponses", compressedResponses.sum());
+        snapshot.put("wireBytes", wire);
+        snapshot.put("decodedBytes", decodedBytes.sum());
+        snapshot.put("savedRatio", comparable == 0 ? 0 : Math.round((1 - (double) wire / comparable) * 1000) / 1000.0);
+        snapshot.put("avgFetchMillis", count == 0 ? 0 : fetchNanos.sum() / count / 1_000_000.0);
+        snapshot.put("avgParseMillis", count == 0 ? 0 : parseNanos.sum() / count / 1_000_000.0);
+        return snapshot;
+    }
+}
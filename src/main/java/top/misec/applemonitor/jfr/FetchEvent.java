@@ -0,0 +1,49 @@
+package top.misec.applemonitor.jfr;
+
+import jdk.jfr.*;
+
+/**
+ * JFR事件：请求Apple库存接口
+ *
+ * 覆盖从发出请求到收到响应头（含连接建立）的耗时
+ *
+ * @author moshi
+ */
+@Name("top.misec.applemonitor.Fetch")
+@Label("Apple Fetch")
+@Category({"Apple Monitor", "Pipeline"})
+@Description("请求Apple库存接口")
+@StackTrace(false)
+public class FetchEvent extends Event {
+
+    @Label("Country")
+    public String country;
+
+    @Label("Part")
+    public String part;
+
+    @Label("Location")
+    public String location;
+
+    @Label("Egress Route")
+    public String route;
+
+    @Label("Hedge")
+    @Description("是否为对冲请求")
+    public boolean hedge;
+
+    @Label("Cancelled")
+    @Description("是否因另一个请求先返回而被取消")
+    public boolean cancelled;
+
+    @Label("Status Code")
+    public int statusCode;
+
+    @Label("Content Encoding")
+    public String contentEncoding;
+
+    @Label("Response Bytes")
+    @Description("解压后的响应体字节数")
+    @DataAmount
+    public long responseBytes;
+}
@@ -0,0 +1,33 @@
+package top.misec.applemonitor.jfr;
+
+import jdk.jfr.*;
+
+/**
+ * JFR事件：门店过滤与库存判断
+ *
+ * 覆盖合并后的门店按白名单过滤、判断库存以及构建消息的整个过程
+ *
+ * @author moshi
+ */
+@Name("top.misec.applemonitor.Filter")
+@Label("Store Filter")
+@Category({"Apple Monitor", "Pipeline"})
+@Description("按白名单过滤门店并判断库存")
+@StackTrace(false)
+public class FilterEvent extends Event {
+
+    @Label("Country")
+    public String country;
+
+    @Label("Part")
+    public String part;
+
+    @Label("Store Count")
+    public int storeCount;
+
+    @Label("Matched Stores")
+    public int matchedCount;
+
+    @Label("Available Stores")
+    public int availableCount;
+}
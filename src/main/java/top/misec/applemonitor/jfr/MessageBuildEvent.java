@@ -0,0 +1,28 @@
+package top.misec.applemonitor.jfr;
+
+import jdk.jfr.*;
+
+/**
+ * JFR事件：构建有货通知消息
+ *
+ * @author moshi
+ */
+@Name("top.misec.applemonitor.MessageBuild")
+@Label("Message Build")
+@Category({"Apple Monitor", "Pipeline"})
+@Description("构建有货通知消息")
+@StackTrace(false)
+public class MessageBuildEvent extends Event {
+
+    @Label("Country")
+    public String country;
+
+    @Label("Part")
+    public String part;
+
+    @Label("Store")
+    public String store;
+
+    @Label("Message Length")
+    public int length;
+}
@@ -0,0 +1,31 @@
+package top.misec.applemonitor.jfr;
+
+import jdk.jfr.*;
+
+/**
+ * JFR事件：解析Apple响应JSON
+ *
+ * 响应体以流的形式边读取边解压边解析，耗时包含读取响应体
+ *
+ * @author moshi
+ */
+@Name("top.misec.applemonitor.Parse")
+@Label("Apple Response Parse")
+@Category({"Apple Monitor", "Pipeline"})
+@Description("读取、解压并解析Apple库存接口响应JSON，提取门店列表")
+@StackTrace(false)
+public class ParseEvent extends Event {
+
+    @Label("Country")
+    public String country;
+
+    @Label("Part")
+    public String part;
+
+    @Label("Bytes")
+    @DataAmount
+    public long bytes;
+
+    @Label("Store Count")
+    public int storeCount;
+}
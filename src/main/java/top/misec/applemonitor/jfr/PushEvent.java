@@ -0,0 +1,29 @@
+package top.misec.applemonitor.jfr;
+
+import jdk.jfr.*;
+
+/**
+ * JFR事件：推送通知
+ *
+ * @author moshi
+ */
+@Name("top.misec.applemonitor.Push")
+@Label("Push")
+@Category({"Apple Monitor", "Pipeline"})
+@Description("通过推送渠道发送通知")
+@StackTrace(false)
+public class PushEvent extends Event {
+
+    @Label("Channel")
+    public String channel;
+
+    @Label("Success")
+    public boolean success;
+
+    @Label("Skipped By Circuit Breaker")
+    public boolean skipped;
+
+    @Label("Message Bytes")
+    @DataAmount
+    public long bytes;
+}
@@ -1,25 +1,36 @@
 package top.misec.applemonitor.job;
 
-import cn.hutool.core.util.CharsetUtil;
 import cn.hutool.core.util.StrUtil;
-import cn.hutool.core.util.URLUtil;
 import cn.hutool.http.Header;
+import cn.hutool.http.HttpException;
 import cn.hutool.http.HttpRequest;
 import cn.hutool.http.HttpResponse;
+import com.alibaba.fastjson2.JSONException;
 import com.alibaba.fastjson2.JSONArray;
 import com.alibaba.fastjson2.JSONObject;
 import lombok.extern.slf4j.Slf4j;
+import top.misec.applemonitor.api.AvailabilityRecord;
+import top.misec.applemonitor.api.AvailabilityStore;
+import top.misec.applemonitor.api.TransitionBroadcaster;
+import top.misec.applemonitor.cache.AlertLedger;
+import top.misec.applemonitor.cache.DeliveryQuoteLedger;
+import top.misec.applemonitor.cache.PartValidityCache;
+import top.misec.applemonitor.cluster.ClusterNode;
 import top.misec.applemonitor.config.*;
-import top.misec.applemonitor.push.impl.FeiShuBotPush;
-import top.misec.applemonitor.push.pojo.feishu.FeiShuPushDTO;
-import top.misec.bark.BarkPush;
-import top.misec.bark.enums.SoundEnum;
-import top.misec.bark.pojo.PushDetails;
-
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import top.misec.applemonitor.http.*;
+import top.misec.applemonitor.jfr.*;
+import top.misec.applemonitor.planner.PollScheduler;
+import top.misec.applemonitor.planner.StoreCoveragePlanner;
+import top.misec.applemonitor.planner.StoreHit;
+import top.misec.applemonitor.push.PushDispatcher;
+import top.misec.applemonitor.push.PushMessage;
+import top.misec.applemonitor.replay.ResponseRecorder;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
 
 /**
  * Apple商店库存监控核心类
@@ -34,27 +45,280 @@ import java.util.Map;
 @Slf4j
 public class AppleMonitor {
     // 全局配置实例，包含监控任务配置、推送配置等
-    private final AppCfg CONFIG = CfgSingleton.getInstance().config;
+    private final AppCfg CONFIG;
+
+    // HTTP请求配置，包含超时设置
+    private final HttpConfig httpConfig;
+
+    // 出口线路池，负责请求节奏控制和多出口分摊
+    private final EgressPool egressPool;
+
+    // 会话管理器，负责Cookie预热和浏览器请求头
+    private final SessionManager sessionManager;
+
+    // 响应传输统计（传输字节数、解压后字节数、耗时）
+    private final TransferStats transferStats;
+
+    // 对冲请求执行器，未开启时为null
+    private final Hedger hedger;
+
+    // 集群节点，未开启集群模式时为null
+    private final ClusterNode clusterNode;
+
+    // 监控调度器，按优先级和新鲜度目标决定查询顺序
+    private final PollScheduler pollScheduler;
+
+    // 门店覆盖规划器，计算每轮需要查询的最少地区组合
+    private final StoreCoveragePlanner coveragePlanner;
+
+    // 型号有效性缓存，跳过被确认无效的型号并缓存产品名称
+    private final PartValidityCache partCache;
+
+    // 内存库存状态表，供本地查询接口读取
+    private final AvailabilityStore availabilityStore;
+
+    // 库存状态变化广播器，向SSE订阅方推送状态变化
+    private final TransitionBroadcaster broadcaster;
+
+    // 到货通知台账，持续有货的门店在提醒间隔内不重复推送
+    private final AlertLedger alertLedger;
+
+    // 取货信息来源，默认请求Apple官网，离线回放时读取录制的响应
+    private final PickupSource pickupSource;
+
+    // 到货通知出口，默认通过全部推送渠道发送
+    private final AlertSink alertSink;
+
+    // 时钟，离线回放时使用虚拟时间
+    private final LongSupplier clock;
+
+    // 通知消息语言，模板已预编译
+    private final MessageLocale messageLocale;
+
+    // 国家站点地址
+    private final String baseCountryUrl;
+
+    // 预编译的请求，key见 RequestPlan.key
+    private final Map<String, RequestPlan> requestPlans = new ConcurrentHashMap<>();
+
+    // 预处理的门店白名单，key为设备配置对象
+    private final Map<DeviceItem, StoreFilter> storeFilters = Collections.synchronizedMap(new IdentityHashMap<>());
+
+    // 是否有一轮监控正在执行
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    // 预计送达日期台账，送达日期变化时发送通知
+    private final DeliveryQuoteLedger deliveryQuotes;
+
+    /**
+     * 取货信息来源
+     */
+    @FunctionalInterface
+    public interface PickupSource {
+
+        /**
+         * 查询指定地区附近门店的取货信息
+         *
+         * @param parts         产品型号代码
+         * @param productFamily 产品系列，可为空
+         * @param location      查询地区
+         * @return 取货信息（pickupMessage），请求失败时返回null
+         */
+        JSONObject fetch(List<String> parts, String productFamily, String location);
+    }
 
+    /**
+     * 到货通知出口
+     */
+    @FunctionalInterface
+    public interface AlertSink {
+
+        /**
+         * 发送一个设备本轮的全部到货通知
+         *
+         * @param deviceItem 设备配置
+         * @param messages   到货通知，同一批通知由推送渠道合并发送
+         */
+        void alert(DeviceItem deviceItem, List<PushMessage> messages);
+    }
+
+    /**
+     * 使用全局配置和全局状态创建监控任务（cron定时任务通过该构造方法创建）
+     */
+    public AppleMonitor() {
+        this.CONFIG = CfgSingleton.getInstance().config;
+        this.httpConfig = CONFIG.getHttpConfig();
+        this.egressPool = EgressPool.getInstance();
+        this.sessionManager = SessionManager.getInstance();
+        this.transferStats = TransferStats.getInstance();
+        this.hedger = Hedger.getInstance();
+        this.clusterNode = ClusterNode.getInstance();
+        this.pollScheduler = PollScheduler.getInstance();
+        this.coveragePlanner = StoreCoveragePlanner.getInstance();
+        this.partCache = PartValidityCache.getInstance();
+        this.availabilityStore = AvailabilityStore.getInstance();
+        this.broadcaster = TransitionBroadcaster.getInstance();
+        this.alertLedger = AlertLedger.getInstance();
+        this.deliveryQuotes = DeliveryQuoteLedger.getInstance();
+        // 开启响应录制时，成功查询到的取货信息同时写入录制文件，供离线回放使用
+        ResponseRecorder recorder = ResponseRecorder.getInstance();
+        this.pickupSource = recorder == null ? this::fetchPickupMessage : recorder.wrap(CONFIG.getAppleTaskConfig().getCountry(), this::fetchPickupMessage);
+        this.alertSink = (deviceItem, messages) -> PushDispatcher.getInstance().dispatch(deviceItem.getPushConfigs(), messages);
+        this.clock = System::currentTimeMillis;
+        this.messageLocale = MessageLocale.of(CONFIG.getAppleTaskConfig().getMessageLanguage(), CONFIG.getAppleTaskConfig().getCountry());
+        this.baseCountryUrl = CountryEnum.getUrlByCountry(CONFIG.getAppleTaskConfig().getCountry());
+        compile();
+    }
+
+    /**
+     * 创建与全局状态隔离的监控任务，用于离线回放
+     *
+     * 调度、去重、库存状态均使用独立的实例，不访问网络、不参与集群分摊，只查询配置的location
+     *
+     * @param config       应用配置
+     * @param pickupSource 取货信息来源
+     * @param alertSink    到货通知出口
+     * @param clock        时钟
+     */
+    public AppleMonitor(AppCfg config, PickupSource pickupSource, AlertSink alertSink, LongSupplier clock) {
+        this.CONFIG = config;
+        this.httpConfig = config.getHttpConfig();
+        this.egressPool = null;
+        this.sessionManager = null;
+        this.transferStats = null;
+        this.hedger = null;
+        this.clusterNode = null;
+        this.pollScheduler = new PollScheduler();
+        this.coveragePlanner = new StoreCoveragePlanner(Collections.singletonList(config.getAppleTaskConfig().getLocation()), 0, null);
+        this.partCache = new PartValidityCache(60_000, 6 * 3600_000L);
+        this.availabilityStore = new AvailabilityStore();
+        this.broadcaster = new TransitionBroadcaster();
+        this.alertLedger = new AlertLedger();
+        this.deliveryQuotes = new DeliveryQuoteLedger();
+        this.pickupSource = pickupSource;
+        this.alertSink = alertSink;
+        this.clock = clock;
+        this.messageLocale = MessageLocale.of(config.getAppleTaskConfig().getMessageLanguage(), config.getAppleTaskConfig().getCountry());
+        this.baseCountryUrl = CountryEnum.getUrlByCountry(config.getAppleTaskConfig().getCountry());
+        compile();
+    }
+
+    /**
+     * 使用指定的国家站点地址和网络组件创建监控任务，用于把请求指向本地替身站点的长时间运行测试
+     *
+     * 查询经过与线上相同的站点熔断器、出口线路池、会话预热、对冲请求和流式解析；
+     * 调度、去重、库存状态均使用独立的实例，不参与集群分摊，只查询配置的location
+     *
+     * @param config         应用配置
+     * @param baseCountryUrl 国家站点地址
+     * @param egressPool     出口线路池
+     * @param sessionManager 会话管理器
+     * @param hedger         对冲请求执行器，为null时不对冲
+     * @param alertSink      到货通知出口
+     * @param clock          时钟
+     */
+    public AppleMonitor(AppCfg config, String baseCountryUrl, EgressPool egressPool, SessionManager sessionManager,
+                        Hedger hedger, AlertSink alertSink, LongSupplier clock) {
+        this.CONFIG = config;
+        this.httpConfig = config.getHttpConfig() == null ? new HttpConfig() : config.getHttpConfig();
+        this.egressPool = egressPool;
+        this.sessionManager = sessionManager;
+        this.transferStats = new TransferStats();
+        this.hedger = hedger;
+        this.clusterNode = null;
+        this.pollScheduler = new PollScheduler();
+        this.coveragePlanner = new StoreCoveragePlanner(Collections.singletonList(config.getAppleTaskConfig().getLocation()), 0, null);
+        this.partCache = new PartValidityCache(60_000, 6 * 3600_000L);
+        this.availabilityStore = new AvailabilityStore();
+        this.broadcaster = new TransitionBroadcaster();
+        this.alertLedger = new AlertLedger();
+        this.deliveryQuotes = new DeliveryQuoteLedger();
+        this.pickupSource = this::fetchPickupMessage;
+        this.alertSink = alertSink;
+        this.clock = clock;
+        this.messageLocale = MessageLocale.of(config.getAppleTaskConfig().getMessageLanguage(), config.getAppleTaskConfig().getCountry());
+        this.baseCountryUrl = baseCountryUrl;
+        compile();
+    }
+
+    /**
+     * 为配置中的全部监控目标预编译请求和门店白名单，每轮监控直接复用
+     */
+    private void compile() {
+        AppleTaskConfig taskConfig = CONFIG.getAppleTaskConfig();
+        if (taskConfig.getDeviceCodeList() == null) {
+            return;
+        }
+        Set<String> locations = new LinkedHashSet<>();
+        locations.add(taskConfig.getLocation());
+        if (taskConfig.getLocations() != null) {
+            taskConfig.getLocations().stream().filter(StrUtil::isNotBlank).map(String::trim).forEach(locations::add);
+        }
+        for (DeviceItem deviceItem : taskConfig.getDeviceCodeList()) {
+            storeFilter(deviceItem);
+            for (String location : locations) {
+                requestPlan(Collections.singletonList(deviceItem.getDeviceCode()), deviceItem.getProductFamily(), location);
+            }
+        }
+    }
+
+    private RequestPlan requestPlan(List<String> parts, String productFamily, String location) {
+        return requestPlans.computeIfAbsent(RequestPlan.key(parts, productFamily, location),
+                key -> new RequestPlan(baseCountryUrl, parts, productFamily, location));
+    }
+
+    private StoreFilter storeFilter(DeviceItem deviceItem) {
+        return storeFilters.computeIfAbsent(deviceItem, item -> StoreFilter.of(item.getStoreWhiteList()));
+    }
 
     /**
      * 监控入口方法（被cron定时任务调用）
      * 
-     * 遍历配置的所有设备型号，依次进行监控
-     * 每个设备监控完成后休眠1.5秒，避免请求过于频繁
+     * 由调度器按设备的优先级和新鲜度目标决定查询顺序，见 {@link PollScheduler}
+     * 请求节奏由出口线路池控制（默认每条线路间隔1.5秒），避免请求过于频繁
+     * 集群模式下只监控由本节点负责的设备
      */
     public void monitor() {
 
-        // 获取需要监控的设备列表
-        List<DeviceItem> deviceItemList = CONFIG.getAppleTaskConfig().getDeviceCodeList();
+        // 上一轮尚未结束时跳过本次触发，避免执行时间超过cron间隔时监控线程越积越多
+        if (!running.compareAndSet(false, true)) {
+            log.warn("上一轮监控尚未结束，跳过本次执行，请调大cron表达式的间隔");
+            return;
+        }
+        try {
+            monitorCycle();
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private void monitorCycle() {
+
+        String country = CONFIG.getAppleTaskConfig().getCountry();
+
+        // 获取本节点需要监控的设备列表，集群模式下跳过由其他节点负责的设备，被确认无效的型号在退避期内不参与调度
+        List<DeviceItem> deviceItemList = new ArrayList<>();
+        for (DeviceItem deviceItem : CONFIG.getAppleTaskConfig().getDeviceCodeList()) {
+            if (clusterNode != null && !clusterNode.owns(ClusterNode.targetKey(country,
+                    CONFIG.getAppleTaskConfig().getLocation(), deviceItem.getDeviceCode()))) {
+                continue;
+            }
+            if (partCache.shouldQuery(country, deviceItem.getDeviceCode())) {
+                deviceItemList.add(deviceItem);
+            }
+        }
 
         try {
-            // 遍历每个需要监控的设备型号
-            for (DeviceItem deviceItem : deviceItemList) {
+            PollScheduler.Cycle cycle = pollScheduler.cycle(country, deviceItemList);
+            // 依次查询调度器选出的设备，直到本轮全部设备都已查询
+            for (DeviceItem deviceItem = cycle.next(clock.getAsLong()); deviceItem != null;
+                 deviceItem = cycle.next(clock.getAsLong())) {
+                if (Thread.currentThread().isInterrupted()) {
+                    return;
+                }
                 // 执行具体的监控逻辑
                 doMonitor(deviceItem);
-                // 休眠1.5秒，避免请求过于频繁导致被限制
-                Thread.sleep(1500);
+                cycle.done(deviceItem, clock.getAsLong());
             }
         } catch (Exception e) {
             log.error("AppleMonitor Error", e);
@@ -65,152 +329,470 @@ public class AppleMonitor {
     /**
      * 通过配置的所有推送渠道发送通知
      * 
-     * 支持的推送方式：
-     * 1. Bark推送（iOS通知）
-     * 2. 飞书机器人推送
+     * 推送渠道由 {@link PushDispatcher} 加载，内置Bark、飞书机器人、通用Webhook和本地推送
      * 
      * @param content 推送的消息内容
      * @param pushConfigs 推送配置列表
      */
     public void pushAll(String content, List<PushConfig> pushConfigs) {
-
-        pushConfigs.forEach(push -> {
-
-            // 如果配置了Bark推送，则通过Bark发送通知
-            if (StrUtil.isAllNotEmpty(push.getBarkPushUrl(), push.getBarkPushToken())) {
-                BarkPush barkPush = new BarkPush(push.getBarkPushUrl(), push.getBarkPushToken());
-                // 构建推送详情
-                PushDetails pushDetails= PushDetails.builder()
-                        .title("苹果商店监控")
-                        .body(content)
-                        .category("苹果商店监控")
-                        .group("Apple Monitor")
-                        .sound(StrUtil.isEmpty(push.getBarkPushSound()) ? SoundEnum.GLASS.getSoundName() : push.getBarkPushSound())
-                        .build();
-                barkPush.simpleWithResp(pushDetails);
-            }
-            
-            // 如果配置了飞书机器人，则通过飞书发送通知
-            if (StrUtil.isAllNotEmpty(push.getFeishuBotSecret(), push.getFeishuBotWebhooks())) {
-
-                FeiShuBotPush.pushTextMessage(FeiShuPushDTO.builder()
-                        .text(content).secret(push.getFeishuBotSecret())
-                        .botWebHooks(push.getFeishuBotWebhooks())
-                        .build());
-            }
-        });
-
+        PushDispatcher.getInstance().dispatch(pushConfigs, Collections.singletonList(PushMessage.of(content)));
     }
 
     /**
      * 执行具体设备的库存监控逻辑
      * 
      * 主要流程：
-     * 1. 构建查询参数和请求头
-     * 2. 调用Apple官网API查询库存信息
-     * 3. 解析返回的商店列表
+     * 1. 由门店覆盖规划器计算本轮需要查询的地区（默认只有配置的location）
+     * 2. 逐个地区调用Apple官网API查询库存信息，同一响应中附带取货时间和预计送达日期
+     * 3. 合并各地区返回的商店列表，按门店编号去重，并写入内存库存状态表
      * 4. 根据白名单过滤商店
      * 5. 检查是否有库存
-     * 6. 如果有库存，发送推送通知
+     * 6. 如果有库存或开启了送达日期监控且日期变化，发送推送通知
      * 
      * @param deviceItem 需要监控的设备信息，包含设备代码、商店白名单、推送配置等
      */
     public void doMonitor(DeviceItem deviceItem) {
 
-        // 构建查询参数Map
-        Map<String, Object> queryMap = new HashMap<>(5);
-        queryMap.put("pl", "true");  // 参数：pl
-        queryMap.put("mts.0", "regular");  // 消息类型：常规
-        queryMap.put("parts.0", deviceItem.getDeviceCode());  // 设备型号代码
-        queryMap.put("location", CONFIG.getAppleTaskConfig().getLocation());  // 位置信息
+        String country = CONFIG.getAppleTaskConfig().getCountry();
 
-        // 根据国家代码获取对应的Apple官网基础URL
-        String baseCountryUrl = CountryEnum.getUrlByCountry(CONFIG.getAppleTaskConfig().getCountry());
+        // 被确认无效的型号在退避期内不再查询
+        if (!partCache.shouldQuery(country, deviceItem.getDeviceCode())) {
+            log.debug("型号{}已被确认无效，等待退避到期后重试", deviceItem.getDeviceCode());
+            return;
+        }
 
-        // 构建请求头
-        Map<String, List<String>> headers = buildHeaders(baseCountryUrl, deviceItem.getDeviceCode());
+        // 合并后的门店，key为门店编号
+        Map<String, StoreHit> mergedStores = new LinkedHashMap<>();
+        boolean fetched = false;
+        // 预计送达日期取第一个返回该信息的地区
+        String deliveryQuote = null;
+
+        for (String location : coveragePlanner.plan(country, deviceItem.getStoreWhiteList())) {
+            JSONObject pickupMessage = fetchValidPickupMessage(deviceItem, location);
+            if (pickupMessage == null) {
+                // 请求失败或产品代码错误，停止查询其余地区，已获取的结果照常处理
+                break;
+            }
+            JSONArray stores = pickupMessage.getJSONArray("stores");
+            if (deliveryQuote == null) {
+                deliveryQuote = FulfillmentParser.deliveryQuote(pickupMessage, deviceItem.getDeviceCode());
+            }
+            fetched = true;
+            coveragePlanner.learn(country, location, stores);
+            StoreCoveragePlanner.merge(mergedStores, location, stores);
+        }
 
-        // 拼接完整的查询URL
-        String url = baseCountryUrl + "/shop/fulfillment-messages?" + URLUtil.buildQuery(queryMap, CharsetUtil.CHARSET_UTF_8);
+        // 检查是否有附近的Apple直营店
+        if (fetched && mergedStores.isEmpty()) {
+            log.info("您所在的 {} 附近没有Apple直营店，请检查您的地址是否正确", CONFIG.getAppleTaskConfig().getLocation());
+        }
 
-        try {
-            JSONObject responseJsonObject;
-            // 发送HTTP GET请求查询库存信息
-            try (HttpResponse httpResponse = HttpRequest.get(url).header(headers).execute()) {
-                // 检查响应状态
-                if (!httpResponse.isOk()) {
-                    log.info("请求过于频繁，请调整cronExpressions，建议您参考推荐的cron表达式");
-                    return;
-                }
+        // 记录全部门店的最新状态（不受白名单限制），供本地查询接口读取
+        recordAvailability(country, deviceItem.getDeviceCode(), mergedStores, deliveryQuote);
 
-                // 解析响应JSON
-                responseJsonObject = JSONObject.parseObject(httpResponse.body());
+        // 本轮需要推送的到货通知，处理完全部门店后一起推送
+        List<PushMessage> alerts = new ArrayList<>();
+
+        // 预计送达日期变化时推送，首次查询到时只记录
+        if (deliveryQuote != null) {
+            String previousQuote = deliveryQuotes.update(country, deviceItem.getDeviceCode(), deliveryQuote);
+            if (Boolean.TRUE.equals(deviceItem.getWatchDelivery()) && previousQuote != null && !previousQuote.equals(deliveryQuote)) {
+                String deviceName = StrUtil.blankToDefault(partCache.getTitle(country, deviceItem.getDeviceCode()), deviceItem.getDeviceCode());
+                String content = messageLocale.renderDeliveryChange(deviceName, deliveryQuote);
+                log.info(content);
+                alerts.add(new PushMessage(country, deviceItem.getDeviceCode(), null, false, content, clock.getAsLong()));
             }
+        }
+        String finalDeliveryQuote = deliveryQuote;
 
-            // 提取取货信息
-            JSONObject pickupMessage = responseJsonObject.getJSONObject("body").getJSONObject("content").getJSONObject("pickupMessage");
+        FilterEvent filterEvent = new FilterEvent();
+        filterEvent.begin();
+        filterEvent.country = country;
+        filterEvent.part = deviceItem.getDeviceCode();
+        filterEvent.storeCount = mergedStores.size();
+        try {
+            // 过滤商店列表并处理每个商店的库存信息
+            mergedStores.values().stream()
+                    // 如果白名单为空，监控所有商店；否则只监控白名单中的商店
+                    .filter(hit -> storeFilter(deviceItem).matches(hit.getStore().getString("storeName")))
+                    .forEach(hit -> {
 
-            // 获取商店列表
-            JSONArray stores = pickupMessage.getJSONArray("stores");
+                filterEvent.matchedCount++;
 
-            // 验证商店列表是否存在
-            if (stores == null) {
-                log.info("您可能填错产品代码了，目前仅支持监控中国和日本地区的产品，注意不同国家的机型型号不同，下面是是错误信息");
-                log.debug(pickupMessage.toString());
-                return;
-            }
+                JSONObject storeJson = hit.getStore();
+                String storeNumber = storeJson.getString("storeNumber");
 
-            // 检查是否有附近的Apple直营店
-            if (stores.isEmpty()) {
-                log.info("您所在的 {} 附近没有Apple直营店，请检查您的地址是否正确", CONFIG.getAppleTaskConfig().getLocation());
-            }
+                // 判断商店是否有库存
+                boolean available = judgingStoreInventory(storeJson, deviceItem.getDeviceCode());
 
-            // 过滤商店列表并处理每个商店的库存信息
-            stores.stream().filter(store -> {
-                // 如果白名单为空，监控所有商店
-                if (deviceItem.getStoreWhiteList().isEmpty()) {
-                    return true;
+                // 消息只在需要推送或输出日志时渲染，日志级别关闭时无货门店不产生任何字符串
+                String content = null;
+                if (available || log.isInfoEnabled()) {
+                    content = buildMessage(country, deviceItem, hit, available, finalDeliveryQuote);
+                }
+
+                if (available) {
+                    filterEvent.availableCount++;
+                    long now = clock.getAsLong();
+                    // 持续有货的门店在提醒间隔内不重复推送
+                    if (alertLedger.shouldAlert(country, deviceItem.getDeviceCode(), storeNumber, alertIntervalMillis(), now)) {
+                        alerts.add(new PushMessage(country, deviceItem.getDeviceCode(), storeNumber, true, content, now));
+                        alertLedger.markSent(country, deviceItem.getDeviceCode(), storeNumber, now);
+                    }
                 } else {
-                    // 否则只监控白名单中的商店
-                    return filterStore((JSONObject) store, deviceItem);
+                    // 门店无货后清除通知记录，下次到货立即推送
+                    alertLedger.clear(country, deviceItem.getDeviceCode(), storeNumber);
+                }
+                // 记录监控信息
+                if (content != null) {
+                    log.info(content);
                 }
-            }).forEach(k -> {
+            });
 
-                JSONObject storeJson = (JSONObject) k;
+        } catch (Exception e) {
+            log.error("AppleMonitor error", e);
+        } finally {
+            filterEvent.commit();
+        }
 
-                // 获取零件库存信息
-                JSONObject partsAvailability = storeJson.getJSONObject("partsAvailability");
+        // 发送推送通知
+        if (!alerts.isEmpty()) {
+            alertSink.alert(deviceItem, alerts);
+        }
 
-                // 提取商店名称、设备名称和库存状态
-                String storeNames = storeJson.getString("storeName").trim();
-                String deviceName = partsAvailability.getJSONObject(deviceItem.getDeviceCode()).getJSONObject("messageTypes").getJSONObject("regular").getString("storePickupProductTitle");
-                String productStatus = partsAvailability.getJSONObject(deviceItem.getDeviceCode()).getString("pickupSearchQuote");
+    }
 
-                // 构建基础消息内容
-                String strTemp = "门店:{},型号:{},状态:{}";
-                String content = StrUtil.format(strTemp, storeNames, deviceName, productStatus);
+    private long alertIntervalMillis() {
+        Integer minutes = CONFIG.getAppleTaskConfig().getAlertIntervalMinutes();
+        return minutes == null ? 0 : minutes * 60_000L;
+    }
 
-                // 判断商店是否有库存
-                if (judgingStoreInventory(storeJson, deviceItem.getDeviceCode())) {
-                    // 如果有库存，添加取货信息
-                    JSONObject retailStore = storeJson.getJSONObject("retailStore");
-                    content += buildPickupInformation(retailStore);
-                    log.info(content);
+    /**
+     * 将本轮查询到的门店状态写入内存库存状态表，可取货状态变化时立即广播
+     *
+     * @param country      国家/地区代码
+     * @param part         产品型号代码
+     * @param mergedStores  合并后的门店
+     * @param deliveryQuote 预计送达日期，可为null
+     */
+    private void recordAvailability(String country, String part, Map<String, StoreHit> mergedStores, String deliveryQuote) {
+        long now = clock.getAsLong();
+        String title = partCache.getTitle(country, part);
+        if (title == null && !mergedStores.isEmpty()) {
+            try {
+                title = parseProductTitle(mergedStores.values().iterator().next().getStore(), part);
+                partCache.markValid(country, part, title);
+            } catch (RuntimeException e) {
+                log.debug("解析产品名称失败", e);
+            }
+        }
+        for (StoreHit hit : mergedStores.values()) {
+            JSONObject storeJson = hit.getStore();
+            JSONObject partsAvailability = storeJson.getJSONObject("partsAvailability");
+            JSONObject partAvailability = partsAvailability == null ? null : partsAvailability.getJSONObject(part);
+            if (partAvailability == null) {
+                continue;
+            }
+            String pickupDisplay = partAvailability.getString("pickupDisplay");
+            AvailabilityRecord current = new AvailabilityRecord(country, part, storeJson.getString("storeNumber"),
+                    StrUtil.trim(storeJson.getString("storeName")), title, "available".equals(pickupDisplay), pickupDisplay,
+                    partAvailability.getString("pickupSearchQuote"), FulfillmentParser.pickupQuote(partAvailability), deliveryQuote,
+                    hit.getLocation(), now, now);
+            AvailabilityRecord previous = availabilityStore.update(current);
+            if (TransitionBroadcaster.isTransition(previous, current)) {
+                broadcaster.publish(previous, current);
+            }
+        }
+    }
 
-                    // 发送推送通知
-                    pushAll(content, deviceItem.getPushConfigs());
+    /**
+     * 查询指定地区附近门店的库存信息
+     *
+     * @param deviceItem 需要监控的设备信息
+     * @param location   查询地区
+     * @return 包含门店列表的取货信息，请求失败、被限流或产品代码错误时返回null
+     */
+    private JSONObject fetchValidPickupMessage(DeviceItem deviceItem, String location) {
+        JSONObject pickupMessage = pickupSource.fetch(Collections.singletonList(deviceItem.getDeviceCode()),
+                deviceItem.getProductFamily(), location);
+        if (pickupMessage == null) {
+            return null;
+        }
 
-                }
-                // 记录监控信息
-                log.info(content);
+        // 获取商店列表
+        JSONArray stores = pickupMessage.getJSONArray("stores");
+
+        // 验证商店列表是否存在，不存在时记为无效型号并按退避时间重试
+        if (stores == null) {
+            log.info("您可能填错产品代码了，目前仅支持监控中国和日本地区的产品，注意不同国家的机型型号不同，下面是是错误信息");
+            log.debug(pickupMessage.toString());
+            partCache.markInvalid(CONFIG.getAppleTaskConfig().getCountry(), deviceItem.getDeviceCode());
+            return null;
+        }
+        partCache.markValid(CONFIG.getAppleTaskConfig().getCountry(), deviceItem.getDeviceCode(), null);
+        return pickupMessage;
+    }
+
+    /**
+     * 查询指定地区附近门店的取货信息，一次请求可以查询多个型号
+     *
+     * 请求受站点熔断器、出口线路池和对冲请求控制，与监控任务共享同一份请求预算。
+     * 响应中的送货上门信息（deliveryMessage）附加在返回的取货信息中，无需再单独请求
+     *
+     * @param parts         产品型号代码，依次作为 parts.0、parts.1…… 参数
+     * @param productFamily 产品系列，用于生成Referer，可为空
+     * @param location      查询地区
+     * @return 取货信息（pickupMessage），请求失败、被限流或站点熔断中时返回null
+     */
+    public JSONObject fetchPickupMessage(List<String> parts, String productFamily, String location) {
+
+        // 同一组型号和地区的请求只编译一次
+        RequestPlan plan = requestPlan(parts, productFamily, location);
+
+        // 国家站点熔断中时跳过查询，避免故障站点拖慢整轮监控
+        CircuitBreaker breaker = CircuitBreakerRegistry.forApple(baseCountryUrl);
+        if (!breaker.tryAcquire()) {
+            log.debug("{}熔断中，跳过本次查询", baseCountryUrl);
+            return null;
+        }
+
+        BreakerPermit permit = new BreakerPermit(breaker);
+        try {
+            // 从线路池获取出口线路，必要时等待该线路的请求预算
+            EgressRoute route = acquireRoute(baseCountryUrl);
+            permit.start = System.currentTimeMillis();
+            FetchAttempt primary = new FetchAttempt(plan, permit, route, false);
+
+            // 开启对冲时，请求超过站点近期p95仍未返回则从线路池申请预算再发送一个对冲请求
+            return hedger == null ? primary.call() : hedger.call(baseCountryUrl, primary, () -> {
+                // 对冲请求只使用当前立即可用的线路预算，不等待也不预热会话
+                EgressRoute hedgeRoute = egressPool.tryAcquire();
+                return hedgeRoute == null ? null
+                        : new FetchAttempt(plan, permit, hedgeRoute, true);
             });
 
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (HttpException e) {
+            // 连接失败或超时已在请求内计入线路健康状态并记录日志，全部请求失败后计入一次站点熔断统计
+            permit.report(true);
+            log.debug("查询失败:{}", e.getMessage());
         } catch (Exception e) {
+            permit.report(true);
             log.error("AppleMonitor error", e);
         }
+        return null;
+    }
+
+    /**
+     * 一次站点熔断器许可
+     *
+     * 首个请求和对冲请求共用同一个许可，结果只上报一次：先完成的请求上报其结果，全部请求失败时上报一次失败，
+     * 避免半开状态下一个探测许可上报两个结果，或关闭状态下一次失败的查询计为两次失败
+     */
+    private static final class BreakerPermit {
+
+        private final CircuitBreaker breaker;
+        private final AtomicBoolean reported = new AtomicBoolean();
+
+        /**
+         * 获取线路后开始计时，不包含等待线路预算的时间
+         */
+        private volatile long start = System.currentTimeMillis();
+
+        private BreakerPermit(CircuitBreaker breaker) {
+            this.breaker = breaker;
+        }
 
+        /**
+         * 上报查询结果，只有首次上报生效
+         *
+         * @param failed 是否失败
+         */
+        private void report(boolean failed) {
+            if (!reported.compareAndSet(false, true)) {
+                return;
+            }
+            long duration = System.currentTimeMillis() - start;
+            if (failed) {
+                breaker.onError(duration);
+            } else {
+                breaker.onSuccess(duration);
+            }
+        }
     }
 
+    /**
+     * 从线路池获取出口线路，线路的会话尚未预热时先完成预热
+     *
+     * 预热后重新获取的线路可能是另一条尚未预热的线路，因此循环到获取的线路已预热为止；
+     * 预热无论成败都会标记会话已预热，循环次数不超过线路数量
+     *
+     * @param baseCountryUrl 国家站点地址
+     * @return 出口线路
+     * @throws InterruptedException 等待期间线程被中断
+     */
+    private EgressRoute acquireRoute(String baseCountryUrl) throws InterruptedException {
+        EgressRoute route = egressPool.acquire();
+        AppleSession session = sessionManager.session(route, baseCountryUrl);
+        while (!session.isWarmedUp()) {
+            // 预热请求占用本次线路预算，完成后重新获取线路
+            int warmUpStatus = sessionManager.warmUp(session, route, baseCountryUrl);
+            if (warmUpStatus < 0) {
+                egressPool.onError(route);
+            } else {
+                egressPool.onResponse(route, warmUpStatus);
+            }
+            route = egressPool.acquire();
+            session = sessionManager.session(route, baseCountryUrl);
+        }
+        return route;
+    }
+
+    /**
+     * 一次库存接口请求
+     *
+     * 请求结果计入所用线路和会话，被对冲取消的请求不计入失败；站点熔断器由先完成的请求通过 {@link BreakerPermit} 上报一次
+     */
+    private class FetchAttempt implements Hedger.Attempt<JSONObject> {
+
+        private final RequestPlan plan;
+        private final BreakerPermit permit;
+        private final EgressRoute route;
+        private final boolean hedge;
+
+        private volatile HttpRequest request;
+        private volatile boolean cancelled;
+
+        private FetchAttempt(RequestPlan plan, BreakerPermit permit, EgressRoute route, boolean hedge) {
+            this.plan = plan;
+            this.permit = permit;
+            this.route = route;
+            this.hedge = hedge;
+        }
+
+        /**
+         * 发送请求并解析取货信息
+         *
+         * @return 取货信息（pickupMessage），响应状态异常时返回null
+         */
+        @Override
+        public JSONObject call() {
+            FetchEvent fetchEvent = new FetchEvent();
+            fetchEvent.country = CONFIG.getAppleTaskConfig().getCountry();
+            fetchEvent.part = plan.getPartsLabel();
+            fetchEvent.location = plan.getLocation();
+            fetchEvent.route = route.toString();
+            fetchEvent.hedge = hedge;
+
+            AppleSession session = sessionManager.session(route, baseCountryUrl);
+            // 使用与会话一致的浏览器请求头，Referer指向该产品系列的购买页
+            String part = plan.getParts().get(0);
+            Map<String, List<String>> headers = sessionManager.fetchHeaderTemplate(session, baseCountryUrl, part,
+                    partCache.getTitle(fetchEvent.country, part), plan.getProductFamily());
+            HttpRequest httpRequest = HttpRequest.get(plan.getUrl()).header(headers, true);
+
+            request = SessionManager.withCookie(route.apply(httpRequest), session)
+                    .header(Header.ACCEPT_ENCODING, JsonResponseReader.ACCEPT_ENCODING, true)
+                    .setConnectionTimeout(httpConfig.getConnectTimeoutMillis())
+                    .setReadTimeout(httpConfig.getReadTimeoutMillis());
+
+            long startNanos = System.nanoTime();
+            fetchEvent.begin();
+            // 发送HTTP GET请求查询库存信息，异步模式下响应体以流的形式边解压边解析
+            HttpResponse httpResponse = null;
+            boolean reusable = false;
+            try {
+                httpResponse = request.executeAsync();
+                long fetchNanos = System.nanoTime() - startNanos;
+                fetchEvent.end();
+                fetchEvent.statusCode = httpResponse.getStatus();
+                fetchEvent.contentEncoding = httpResponse.contentEncoding();
+                // 记录线路的响应状态，用于限流调整和健康检查
+                egressPool.onResponse(route, httpResponse.getStatus());
+                // 更新会话Cookie，连续被拒绝时丢弃会话
+                sessionManager.onResponse(session, httpResponse.getStatus(), httpResponse.headerList(Header.SET_COOKIE.getValue()));
+                // 检查响应状态，服务端错误计入站点熔断统计，限流状态码由线路池处理
+                int status = httpResponse.getStatus();
+                if (!httpResponse.isOk()) {
+                    log.info("请求过于频繁，请调整cronExpressions，建议您参考推荐的cron表达式");
+                    permit.report(status >= 500 && !EgressPool.isRejection(status));
+                    reusable = true;
+                    return null;
+                }
+
+                // 读取、解压并解析响应JSON，提取取货信息
+                ParseEvent parseEvent = new ParseEvent();
+                parseEvent.begin();
+                JsonResponseReader.ParsedBody body;
+                try {
+                    body = JsonResponseReader.read(httpResponse, fetchNanos, transferStats);
+                } catch (JSONException e) {
+                    // 读取响应体超时或连接中断与请求失败同等处理
+                    if (e.getCause() instanceof IOException) {
+                        throw new HttpException(e.getCause());
+                    }
+                    throw e;
+                }
+                JSONObject content = body.json.getJSONObject("body").getJSONObject("content");
+                JSONObject pickupMessage = content.getJSONObject("pickupMessage");
+                JSONObject deliveryMessage = content.getJSONObject("deliveryMessage");
+                if (pickupMessage != null && deliveryMessage != null) {
+                    pickupMessage.put("deliveryMessage", deliveryMessage);
+                }
+                parseEvent.end();
+                fetchEvent.responseBytes = body.decodedBytes;
+                if (parseEvent.shouldCommit()) {
+                    JSONArray stores = pickupMessage == null ? null : pickupMessage.getJSONArray("stores");
+                    parseEvent.country = fetchEvent.country;
+                    parseEvent.part = fetchEvent.part;
+                    parseEvent.bytes = body.decodedBytes;
+                    parseEvent.storeCount = stores == null ? 0 : stores.size();
+                    parseEvent.commit();
+                }
+                permit.report(false);
+                reusable = true;
+                return pickupMessage;
+            } catch (HttpException e) {
+                // 连接失败或超时计入线路健康状态，被对冲取消的请求除外；全部请求失败时由调用方计入站点熔断统计
+                if (!cancelled) {
+                    egressPool.onError(route);
+                    log.error("AppleMonitor error, 出口线路:{}", route, e);
+                }
+                throw e;
+            } finally {
+                // 正常读完的响应只关闭响应流，连接留给下一个请求复用；失败或被取消时断开连接
+                Connections.finish(httpResponse, reusable && !cancelled);
+                fetchEvent.cancelled = cancelled;
+                // 请求失败时也记录，便于在录制中定位超时和连接错误
+                fetchEvent.commit();
+            }
+        }
+
+        /**
+         * 断开连接，阻塞中的读取会立即失败
+         */
+        @Override
+        public void cancel() {
+            cancelled = true;
+            HttpRequest current = request;
+            if (current != null && current.getConnection() != null) {
+                current.getConnection().disconnectQuietly();
+            }
+        }
+    }
+
+    /**
+     * 从门店的库存信息中解析产品名称
+     *
+     * @param storeJson   商店信息JSON对象
+     * @param productCode 产品代码
+     * @return 产品名称（storePickupProductTitle）
+     */
+    private String parseProductTitle(JSONObject storeJson, String productCode) {
+        return storeJson.getJSONObject("partsAvailability").getJSONObject(productCode)
+                .getJSONObject("messageTypes").getJSONObject("regular").getString("storePickupProductTitle");
+    }
 
     /**
      * 判断商店是否有库存
@@ -231,32 +813,42 @@ public class AppleMonitor {
     }
 
     /**
-     * 构建取货信息字符串
+     * 构建门店通知消息
      *
-     * @param retailStore 零售商店信息JSON对象
-     * @return 格式化后的取货信息字符串，包含地址、电话和距离
+     * @param country    国家/地区代码
+     * @param deviceItem 设备配置
+     * @param hit        门店查询结果
+     * @param available  门店是否有货，有货时附加取货地址、电话和距离（相对于返回该门店的查询地区）、取货时间和预计送达日期
+     * @param deliveryQuote 预计送达日期，可为null
+     * @return 通知消息
      */
-    private String buildPickupInformation(JSONObject retailStore) {
-        // 获取距离信息（带单位）
-        String distanceWithUnit = retailStore.getString("distanceWithUnit");
-        // 获取两行格式的地址
-        String twoLineAddress = retailStore.getJSONObject("address").getString("twoLineAddress");
-        if (StrUtil.isEmpty(twoLineAddress)) {
-            twoLineAddress = "暂无取货地址";
+    private String buildMessage(String country, DeviceItem deviceItem, StoreHit hit, boolean available, String deliveryQuote) {
+        MessageBuildEvent messageEvent = new MessageBuildEvent();
+        messageEvent.begin();
+        JSONObject storeJson = hit.getStore();
+
+        // 提取商店名称、设备名称和库存状态（设备名称优先使用缓存）
+        String storeName = storeJson.getString("storeName").trim();
+        String deviceName = partCache.getTitle(country, deviceItem.getDeviceCode());
+        if (deviceName == null) {
+            deviceName = parseProductTitle(storeJson, deviceItem.getDeviceCode());
+            partCache.markValid(country, deviceItem.getDeviceCode(), deviceName);
         }
-
-        // 获取日间联系电话
-        String daytimePhone = retailStore.getJSONObject("address").getString("daytimePhone");
-        if (StrUtil.isEmpty(daytimePhone)) {
-            daytimePhone = "暂无联系电话";
+        JSONObject partAvailability = storeJson.getJSONObject("partsAvailability").getJSONObject(deviceItem.getDeviceCode());
+        String productStatus = partAvailability.getString("pickupSearchQuote");
+
+        String content = messageLocale.render(storeName, deviceName, productStatus,
+                available ? storeJson.getJSONObject("retailStore") : null, hit.getLocation(),
+                FulfillmentParser.pickupQuote(partAvailability), deliveryQuote);
+        messageEvent.end();
+        if (messageEvent.shouldCommit()) {
+            messageEvent.country = country;
+            messageEvent.part = deviceItem.getDeviceCode();
+            messageEvent.store = storeName;
+            messageEvent.length = content.length();
+            messageEvent.commit();
         }
-
-        // 获取配置的位置信息
-        String lo = CONFIG.getAppleTaskConfig().getLocation();
-        // 构建消息模板
-        String messageTemplate = "\n取货地址:{},电话:{},距离{}:{}";
-        // 格式化并返回取货信息（移除地址中的换行符）
-        return StrUtil.format(messageTemplate, twoLineAddress.replace("\n", " "), daytimePhone, lo, distanceWithUnit);
+        return content;
     }
 
     /**
@@ -268,29 +860,7 @@ public class AppleMonitor {
      * @param deviceItem 设备项，包含商店白名单
      * @return 如果商店在白名单中返回true，否则返回false
      */
-    private boolean filterStore(JSONObject storeInfo, DeviceItem deviceItem) {
-        String storeName = storeInfo.getString("storeName");
-        // 使用流式处理判断商店名称是否匹配白名单中的任意一项
-        return deviceItem.getStoreWhiteList().stream().anyMatch(k -> storeName.contains(k) || k.contains(storeName));
-    }
-
-    /**
-     * 构建HTTP请求头
-     *
-     * @param baseCountryUrl 国家对应的Apple官网基础URL
-     * @param productCode    产品代码
-     * @return 包含Referer等信息的请求头Map
-     */
-    private Map<String, List<String>> buildHeaders(String baseCountryUrl, String productCode) {
-
-        // 构建Referer头，模拟从购买页面发起的请求
-        ArrayList<String> referer = new ArrayList<>();
-        referer.add(baseCountryUrl + "/shop/buy-iphone/iphone-14-pro/" + productCode);
-
-        // 创建请求头Map并添加Referer
-        Map<String, List<String>> headers = new HashMap<>(10);
-        headers.put(Header.REFERER.getValue(), referer);
-
-        return headers;
+    public static boolean filterStore(JSONObject storeInfo, DeviceItem deviceItem) {
+        return StoreFilter.of(deviceItem.getStoreWhiteList()).matches(storeInfo.getString("storeName"));
     }
 }
@@ -0,0 +1,90 @@
+package top.misec.applemonitor.job;
+
+import cn.hutool.core.util.StrUtil;
+import com.alibaba.fastjson2.JSONArray;
+import com.alibaba.fastjson2.JSONObject;
+
+/**
+ * 库存接口响应中取货和配送信息的解析
+ *
+ * 请求同时携带 regular 和 compact 两种消息类型，同一次响应中：
+ * 1. 每个门店的 partsAvailability.型号.messageTypes 下有取货时间说明（storePickupQuote）
+ * 2. deliveryMessage.型号 下有送货上门的预计送达日期（deliveryOptions）
+ * 优先读取 regular，缺失时读取 compact
+ *
+ * @author moshi
+ */
+final class FulfillmentParser {
+
+    /**
+     * 请求的消息类型，依次作为 mts.0、mts.1 参数
+     */
+    static final String[] MESSAGE_TYPES = {"regular", "compact"};
+
+    private FulfillmentParser() {
+    }
+
+    /**
+     * 解析门店的取货时间说明
+     *
+     * @param partAvailability 门店的 partsAvailability.型号
+     * @return 取货时间说明，例如"今天可取货"，缺失时返回null
+     */
+    static String pickupQuote(JSONObject partAvailability) {
+        JSONObject messageTypes = partAvailability == null ? null : partAvailability.getJSONObject("messageTypes");
+        if (messageTypes == null) {
+            return null;
+        }
+        for (String type : MESSAGE_TYPES) {
+            JSONObject message = messageTypes.getJSONObject(type);
+            String quote = message == null ? null : message.getString("storePickupQuote");
+            if (StrUtil.isNotBlank(quote)) {
+                return StrUtil.trim(quote);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 解析型号的预计送达日期
+     *
+     * @param pickupMessage 取货信息，附带同一响应中的 deliveryMessage
+     * @param part          产品型号代码
+     * @return 预计送达日期，例如"10月25日 - 10月28日"，缺失时返回null
+     */
+    static String deliveryQuote(JSONObject pickupMessage, String part) {
+        JSONObject deliveryMessage = pickupMessage == null ? null : pickupMessage.getJSONObject("deliveryMessage");
+        JSONObject partDelivery = deliveryMessage == null ? null : deliveryMessage.getJSONObject(part);
+        if (partDelivery == null) {
+            return null;
+        }
+        for (String type : MESSAGE_TYPES) {
+            JSONObject message = partDelivery.getJSONObject(type);
+            if (message == null) {
+                continue;
+            }
+            String quote = firstText(message.getJSONArray("deliveryOptions"), "date");
+            if (quote == null) {
+                quote = firstText(message.getJSONArray("deliveryOptionMessages"), "displayName");
+            }
+            if (quote != null) {
+                return quote;
+            }
+        }
+        return null;
+    }
+
+    private static String firstText(JSONArray array, String field) {
+        for (int i = 0; array != null && i < array.size(); i++) {
+            JSONObject item = array.getJSONObject(i);
+            String text = item == null ? null : item.getString(field);
+            if (StrUtil.isBlank(text) && item != null) {
+                text = item.getString("displayName");
+            }
+            if (StrUtil.isNotBlank(text)) {
+                return StrUtil.trim(text);
+            }
+        }
+        return null;
+    }
+}
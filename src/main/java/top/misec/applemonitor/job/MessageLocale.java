@@ -0,0 +1,153 @@
+package top.misec.applemonitor.job;
+
+import cn.hutool.core.util.StrUtil;
+import com.alibaba.fastjson2.JSONObject;
+
+/**
+ * 通知消息的语言
+ *
+ * 每种语言的模板在类加载时编译一次，渲染时不再解析模板
+ *
+ * @author moshi
+ */
+enum MessageLocale {
+
+    /**
+     * 中文（默认，与之前的消息格式一致）
+     */
+    ZH("门店:{},型号:{},状态:{}", "\n取货地址:{},电话:{},距离{}:{}", "暂无取货地址", "暂无联系电话",
+            "\n取货时间:{}", "\n配送:{}", "型号:{},配送时间更新:{}"),
+
+    /**
+     * 日语
+     */
+    JA("店舗:{},製品:{},状況:{}", "\n受取住所:{},電話:{},{}からの距離:{}", "住所情報なし", "電話番号なし",
+            "\n受取日時:{}", "\n配送:{}", "製品:{},お届け予定日の更新:{}"),
+
+    /**
+     * 韩语
+     */
+    KO("매장:{},제품:{},상태:{}", "\n픽업 주소:{},전화:{},{}에서 거리:{}", "주소 정보 없음", "전화번호 없음",
+            "\n픽업 시간:{}", "\n배송:{}", "제품:{},배송 예정일 변경:{}"),
+
+    /**
+     * 英语
+     */
+    EN("Store:{},Model:{},Status:{}", "\nPickup address:{},Phone:{},Distance from {}:{}", "No pickup address", "No phone number",
+            "\nPickup:{}", "\nDelivery:{}", "Model:{},Delivery estimate changed:{}");
+
+    private final MessageTemplate storeTemplate;
+
+    private final MessageTemplate pickupTemplate;
+
+    private final String noAddress;
+
+    private final String noPhone;
+
+    private final MessageTemplate pickupQuoteTemplate;
+
+    private final MessageTemplate deliveryTemplate;
+
+    private final MessageTemplate deliveryChangeTemplate;
+
+    MessageLocale(String storeTemplate, String pickupTemplate, String noAddress, String noPhone,
+                  String pickupQuoteTemplate, String deliveryTemplate, String deliveryChangeTemplate) {
+        this.storeTemplate = MessageTemplate.compile(storeTemplate);
+        this.pickupTemplate = MessageTemplate.compile(pickupTemplate);
+        this.noAddress = noAddress;
+        this.noPhone = noPhone;
+        this.pickupQuoteTemplate = MessageTemplate.compile(pickupQuoteTemplate);
+        this.deliveryTemplate = MessageTemplate.compile(deliveryTemplate);
+        this.deliveryChangeTemplate = MessageTemplate.compile(deliveryChangeTemplate);
+    }
+
+    /**
+     * 根据配置的消息语言选择
+     *
+     * @param language 配置的消息语言：zh、ja、ko、en，auto表示按国家/地区选择，为空时使用中文
+     * @param country  国家/地区代码
+     * @return 消息语言
+     */
+    static MessageLocale of(String language, String country) {
+        if (StrUtil.isBlank(language)) {
+            return ZH;
+        }
+        if ("auto".equalsIgnoreCase(language)) {
+            if (StrUtil.startWith(country, "CN")) {
+                return ZH;
+            }
+            if ("JP".equals(country)) {
+                return JA;
+            }
+            return "KR".equals(country) ? KO : EN;
+        }
+        for (MessageLocale locale : values()) {
+            if (locale.name().equalsIgnoreCase(language)) {
+                return locale;
+            }
+        }
+        return ZH;
+    }
+
+    /**
+     * 渲染门店通知消息
+     *
+     * @param storeName   门店名称
+     * @param deviceName  产品名称
+     * @param status      取货状态说明
+     * @param retailStore 零售商店信息，门店有货时附加取货信息，为null时只渲染门店行
+     * @param location    返回该门店的查询地区
+     * @param pickupQuote   取货时间说明，为null或与status相同时不附加
+     * @param deliveryQuote 预计送达日期，为null时不附加
+     * @return 通知消息
+     */
+    String render(String storeName, String deviceName, String status, JSONObject retailStore, String location,
+                  String pickupQuote, String deliveryQuote) {
+        int argsLength = StrUtil.length(storeName) + StrUtil.length(deviceName) + StrUtil.length(status);
+        if (retailStore == null) {
+            StringBuilder out = new StringBuilder(storeTemplate.estimate(argsLength));
+            storeTemplate.appendTo(out, storeName, deviceName, status);
+            return out.toString();
+        }
+
+        String distanceWithUnit = retailStore.getString("distanceWithUnit");
+        JSONObject address = retailStore.getJSONObject("address");
+        String twoLineAddress = address == null ? null : address.getString("twoLineAddress");
+        // 移除地址中的换行符
+        twoLineAddress = StrUtil.isEmpty(twoLineAddress) ? noAddress : twoLineAddress.replace('\n', ' ');
+        String daytimePhone = address == null ? null : address.getString("daytimePhone");
+        if (StrUtil.isEmpty(daytimePhone)) {
+            daytimePhone = noPhone;
+        }
+
+        if (StrUtil.equals(pickupQuote, status)) {
+            pickupQuote = null;
+        }
+        argsLength += twoLineAddress.length() + daytimePhone.length() + StrUtil.length(location) + StrUtil.length(distanceWithUnit)
+                + StrUtil.length(pickupQuote) + StrUtil.length(deliveryQuote);
+        StringBuilder out = new StringBuilder(storeTemplate.estimate(0) + pickupTemplate.estimate(argsLength)
+                + pickupQuoteTemplate.estimate(0) + deliveryTemplate.estimate(0));
+        storeTemplate.appendTo(out, storeName, deviceName, status);
+        pickupTemplate.appendTo(out, twoLineAddress, daytimePhone, location, distanceWithUnit);
+        if (pickupQuote != null) {
+            pickupQuoteTemplate.appendTo(out, pickupQuote);
+        }
+        if (deliveryQuote != null) {
+            deliveryTemplate.appendTo(out, deliveryQuote);
+        }
+        return out.toString();
+    }
+
+    /**
+     * 渲染预计送达日期变化的通知消息
+     *
+     * @param deviceName    产品名称
+     * @param deliveryQuote 新的预计送达日期
+     * @return 通知消息
+     */
+    String renderDeliveryChange(String deviceName, String deliveryQuote) {
+        StringBuilder out = new StringBuilder(deliveryChangeTemplate.estimate(StrUtil.length(deviceName) + StrUtil.length(deliveryQuote)));
+        deliveryChangeTemplate.appendTo(out, deviceName, deliveryQuote);
+        return out.toString();
+    }
+}
@@ -0,0 +1,79 @@
+package top.misec.applemonitor.job;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 预编译的消息模板
+ *
+ * 模板中的 {} 为占位符，创建时拆分为固定片段，渲染时按片段直接追加到 StringBuilder，
+ * 不再像 StrUtil.format 那样每次重新查找占位符
+ *
+ * @author moshi
+ */
+final class MessageTemplate {
+
+    private static final String PLACEHOLDER = "{}";
+
+    /**
+     * 固定片段，占位符位于相邻片段之间
+     */
+    private final String[] segments;
+
+    /**
+     * 固定片段的总长度，用于估算渲染结果的容量
+     */
+    private final int fixedLength;
+
+    private MessageTemplate(String[] segments) {
+        this.segments = segments;
+        int length = 0;
+        for (String segment : segments) {
+            length += segment.length();
+        }
+        this.fixedLength = length;
+    }
+
+    /**
+     * 编译模板
+     *
+     * @param template 消息模板
+     * @return 预编译的模板
+     */
+    static MessageTemplate compile(String template) {
+        List<String> segments = new ArrayList<>();
+        int from = 0;
+        for (int at = template.indexOf(PLACEHOLDER); at >= 0; at = template.indexOf(PLACEHOLDER, from)) {
+            segments.add(template.substring(from, at));
+            from = at + PLACEHOLDER.length();
+        }
+        segments.add(template.substring(from));
+        return new MessageTemplate(segments.toArray(new String[0]));
+    }
+
+    /**
+     * 估算渲染结果的长度
+     *
+     * @param argsLength 参数的总长度
+     * @return 估算长度
+     */
+    int estimate(int argsLength) {
+        return fixedLength + argsLength;
+    }
+
+    /**
+     * 按顺序填充占位符并追加到 out，参数不足的占位符保留为空
+     *
+     * @param out  输出
+     * @param args 参数
+     */
+    void appendTo(StringBuilder out, String... args) {
+        out.append(segments[0]);
+        for (int i = 1; i < segments.length; i++) {
+            if (i <= args.length) {
+                out.append(args[i - 1]);
+            }
+            out.append(segments[i]);
+        }
+    }
+}
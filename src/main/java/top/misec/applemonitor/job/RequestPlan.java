@@ -0,0 +1,81 @@
+package top.misec.applemonitor.job;
+
+import cn.hutool.core.util.CharsetUtil;
+import cn.hutool.core.util.URLUtil;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 预编译的库存接口请求
+ *
+ * 同一组型号、同一地区的查询URL完全相同，创建时构建一次查询参数并完成URL编码，之后每次请求直接使用
+ *
+ * @author moshi
+ */
+@Getter
+final class RequestPlan {
+
+    /**
+     * 产品型号代码，依次作为 parts.0、parts.1…… 参数
+     */
+    private final List<String> parts;
+
+    /**
+     * 产品系列，用于生成Referer，可为空
+     */
+    private final String productFamily;
+
+    /**
+     * 查询地区
+     */
+    private final String location;
+
+    /**
+     * 完整的查询URL
+     */
+    private final String url;
+
+    /**
+     * 事件和日志中使用的型号描述
+     */
+    private final String partsLabel;
+
+    RequestPlan(String baseCountryUrl, List<String> parts, String productFamily, String location) {
+        this.parts = Collections.unmodifiableList(new ArrayList<>(parts));
+        this.productFamily = productFamily;
+        this.location = location;
+        this.partsLabel = String.join(",", parts);
+
+        // 构建查询参数Map
+        Map<String, Object> queryMap = new LinkedHashMap<>(parts.size() + 4);
+        queryMap.put("pl", "true");  // 参数：pl
+        // 消息类型：常规和简洁，同一次响应同时返回取货和配送信息
+        for (int i = 0; i < FulfillmentParser.MESSAGE_TYPES.length; i++) {
+            queryMap.put("mts." + i, FulfillmentParser.MESSAGE_TYPES[i]);
+        }
+        for (int i = 0; i < parts.size(); i++) {
+            queryMap.put("parts." + i, parts.get(i));  // 设备型号代码
+        }
+        queryMap.put("location", location);  // 位置信息
+
+        // 拼接完整的查询URL
+        this.url = baseCountryUrl + "/shop/fulfillment-messages?" + URLUtil.buildQuery(queryMap, CharsetUtil.CHARSET_UTF_8);
+    }
+
+    /**
+     * 计划缓存的key
+     *
+     * @param parts         产品型号代码
+     * @param productFamily 产品系列
+     * @param location      查询地区
+     * @return 缓存key
+     */
+    static String key(List<String> parts, String productFamily, String location) {
+        return location + '|' + productFamily + '|' + String.join(",", parts);
+    }
+}
@@ -0,0 +1,61 @@
+package top.misec.applemonitor.job;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 预处理的门店白名单
+ *
+ * 创建时复制为数组并去除重复项，匹配时不再经过Stream，白名单为空时匹配所有门店
+ *
+ * @author moshi
+ */
+final class StoreFilter {
+
+    private static final StoreFilter ALL = new StoreFilter(new String[0]);
+
+    private final String[] keywords;
+
+    private StoreFilter(String[] keywords) {
+        this.keywords = keywords;
+    }
+
+    /**
+     * 根据白名单创建
+     *
+     * @param whiteList 门店白名单，可为null
+     * @return 门店过滤器
+     */
+    static StoreFilter of(List<String> whiteList) {
+        if (whiteList == null || whiteList.isEmpty()) {
+            return ALL;
+        }
+        Set<String> keywords = new LinkedHashSet<>(whiteList);
+        keywords.remove(null);
+        return new StoreFilter(keywords.toArray(new String[0]));
+    }
+
+    /**
+     * 门店是否在白名单中
+     *
+     * 支持模糊匹配：商店名称包含白名单关键词，或白名单关键词包含商店名称
+     *
+     * @param storeName 门店名称
+     * @return 白名单为空或门店在白名单中时返回true
+     */
+    boolean matches(String storeName) {
+        if (keywords.length == 0) {
+            return true;
+        }
+        if (storeName == null) {
+            return false;
+        }
+        for (String keyword : keywords) {
+            if (storeName.contains(keyword) || keyword.contains(storeName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
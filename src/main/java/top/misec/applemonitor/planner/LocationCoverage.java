@@ -0,0 +1,43 @@
+package top.misec.applemonitor.planner;
+
+import lombok.Data;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 单个查询地区的门店覆盖信息
+ *
+ * 记录以某个 location 查询时Apple返回的门店列表及距离，用于计算最少查询地区组合
+ *
+ * @author moshi
+ */
+@Data
+public class LocationCoverage {
+
+    /**
+     * 最近一次学习（实际查询）的时间戳
+     */
+    private long learnedAt;
+
+    /**
+     * 返回的门店，key为storeNumber
+     */
+    private Map<String, StoreRef> stores = new LinkedHashMap<>();
+
+    /**
+     * 门店引用
+     */
+    @Data
+    public static class StoreRef {
+        /**
+         * 门店名称
+         */
+        private String storeName;
+
+        /**
+         * 距查询地区的距离，无法解析时为 {@link Double#MAX_VALUE}
+         */
+        private double distance;
+    }
+}
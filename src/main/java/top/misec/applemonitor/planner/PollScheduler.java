@@ -0,0 +1,194 @@
+package top.misec.applemonitor.planner;
+
+import lombok.extern.slf4j.Slf4j;
+import top.misec.applemonitor.config.DeviceItem;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 截止时间驱动的监控调度器
+ *
+ * 旧版本每轮都按 deviceCodeList 的顺序依次查询，最关心的型号可能排在二十个次要型号和它们的请求间隔之后。
+ * 每个设备可以配置优先级（priority）和新鲜度目标（freshnessSeconds，例如"至少每5秒查询一次"），调度器：
+ * 1. 每次从本轮尚未查询的目标中，按优先级从高到低、截止时间从早到晚选出下一个目标
+ * 2. 本轮查询期间，已查询过的目标再次超过新鲜度目标时会被重新插队查询，
+ *    为保证其余目标都能查到，重复查询最多占用本轮一半的请求
+ * 3. 记录每个目标的查询间隔，超过新鲜度目标时输出警告，并通过本地查询接口报告
+ *
+ * @author moshi
+ */
+@Slf4j
+public class PollScheduler {
+
+    private static final PollScheduler INSTANCE = new PollScheduler();
+
+    private static final Comparator<PollTarget> ORDER = Comparator.comparingInt(PollTarget::getPriority).reversed()
+            .thenComparingLong(PollTarget::deadline)
+            .thenComparingLong(PollTarget::getLastCheckedAt);
+
+    /**
+     * 目标状态，key为 国家|型号
+     */
+    private final Map<String, PollTarget> targets = new ConcurrentHashMap<>();
+
+    /**
+     * 获取全局调度器
+     *
+     * @return 调度器实例
+     */
+    public static PollScheduler getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * 开始一轮调度
+     *
+     * @param country 国家/地区代码
+     * @param items   本轮需要查询的设备
+     * @return 本轮调度
+     */
+    public Cycle cycle(String country, List<DeviceItem> items) {
+        List<Entry> entries = new ArrayList<>(items.size());
+        for (DeviceItem item : items) {
+            PollTarget target = targets.computeIfAbsent(key(country, item.getDeviceCode()), k -> {
+                PollTarget created = new PollTarget();
+                created.setCountry(country);
+                created.setPart(item.getDeviceCode());
+                return created;
+            });
+            synchronized (target) {
+                target.setPriority(item.getPriority() == null ? 0 : item.getPriority());
+                target.setFreshnessMillis(item.getFreshnessSeconds() == null ? 0 : item.getFreshnessSeconds() * 1000L);
+            }
+            entries.add(new Entry(target, item));
+        }
+        return new Cycle(entries);
+    }
+
+    /**
+     * 获取全部目标的调度状态
+     *
+     * @return 状态列表（副本），按优先级和型号排序
+     */
+    public List<PollTarget> snapshot() {
+        List<PollTarget> list = new ArrayList<>(targets.size());
+        for (PollTarget target : targets.values()) {
+            synchronized (target) {
+                PollTarget copy = new PollTarget();
+                copy.setCountry(target.getCountry());
+                copy.setPart(target.getPart());
+                copy.setPriority(target.getPriority());
+                copy.setFreshnessMillis(target.getFreshnessMillis());
+                copy.setLastCheckedAt(target.getLastCheckedAt());
+                copy.setChecks(target.getChecks());
+                copy.setMisses(target.getMisses());
+                copy.setLastIntervalMillis(target.getLastIntervalMillis());
+                copy.setMaxLagMillis(target.getMaxLagMillis());
+                list.add(copy);
+            }
+        }
+        list.sort(Comparator.comparingInt(PollTarget::getPriority).reversed().thenComparing(PollTarget::getPart));
+        return list;
+    }
+
+    private static String key(String country, String part) {
+        return country + "|" + part;
+    }
+
+    /**
+     * 一轮调度，由监控线程单线程使用
+     */
+    public static class Cycle {
+
+        private final List<Entry> entries;
+
+        private int pendingCount;
+
+        private int firstChecks;
+
+        private int repeatChecks;
+
+        private Cycle(List<Entry> entries) {
+            this.entries = entries;
+            this.pendingCount = entries.size();
+        }
+
+        /**
+         * 选出下一个需要查询的目标
+         *
+         * @param now 当前时间戳
+         * @return 设备，本轮全部目标都已查询时返回null
+         */
+        public DeviceItem next(long now) {
+            if (pendingCount == 0) {
+                return null;
+            }
+            boolean allowRepeat = repeatChecks < firstChecks;
+            Entry best = null;
+            for (Entry entry : entries) {
+                synchronized (entry.target) {
+                    boolean due = allowRepeat && entry.target.getFreshnessMillis() > 0 && entry.target.deadline() <= now;
+                    if ((entry.pending || due) && (best == null || ORDER.compare(entry.target, best.target) < 0)) {
+                        best = entry;
+                    }
+                }
+            }
+            return best == null ? null : best.item;
+        }
+
+        /**
+         * 记录目标查询完成
+         *
+         * @param item 设备
+         * @param now  查询完成时间戳
+         */
+        public void done(DeviceItem item, long now) {
+            for (Entry entry : entries) {
+                if (entry.item != item) {
+                    continue;
+                }
+                if (entry.pending) {
+                    entry.pending = false;
+                    pendingCount--;
+                    firstChecks++;
+                } else {
+                    repeatChecks++;
+                }
+                PollTarget target = entry.target;
+                synchronized (target) {
+                    if (target.getLastCheckedAt() > 0) {
+                        long interval = now - target.getLastCheckedAt();
+                        target.setLastIntervalMillis(interval);
+                        if (target.getFreshnessMillis() > 0 && interval > target.getFreshnessMillis()) {
+                            target.setMisses(target.getMisses() + 1);
+                            target.setMaxLagMillis(Math.max(target.getMaxLagMillis(), interval - target.getFreshnessMillis()));
+                            log.warn("型号{}距上次查询{}ms，超过新鲜度目标{}ms，请提高优先级、减少监控型号或缩短cron间隔",
+                                    target.getPart(), interval, target.getFreshnessMillis());
+                        }
+                    }
+                    target.setLastCheckedAt(now);
+                    target.setChecks(target.getChecks() + 1);
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * 本轮的一个目标
+     */
+    private static class Entry {
+
+        private final PollTarget target;
+
+        private final DeviceItem item;
+
+        private boolean pending = true;
+
+        private Entry(PollTarget target, DeviceItem item) {
+            this.target = target;
+            this.item = item;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package top.misec.applemonitor.planner;
+
+import lombok.Data;
+
+/**
+ * 监控目标的调度状态和新鲜度统计
+ *
+ * @author moshi
+ */
+@Data
+public class PollTarget {
+
+    /**
+     * 国家/地区代码
+     */
+    private String country;
+
+    /**
+     * 产品型号代码
+     */
+    private String part;
+
+    /**
+     * 优先级，数值越大越先查询
+     */
+    private int priority;
+
+    /**
+     * 新鲜度目标（毫秒），两次查询的间隔不应超过该值，0表示没有目标
+     */
+    private long freshnessMillis;
+
+    /**
+     * 最近一次查询完成的时间戳，0表示尚未查询
+     */
+    private long lastCheckedAt;
+
+    /**
+     * 累计查询次数
+     */
+    private long checks;
+
+    /**
+     * 累计超过新鲜度目标的次数
+     */
+    private long misses;
+
+    /**
+     * 最近一次查询的间隔（毫秒）
+     */
+    private long lastIntervalMillis;
+
+    /**
+     * 超过新鲜度目标的最大时长（毫秒）
+     */
+    private long maxLagMillis;
+
+    /**
+     * 下一次查询的截止时间，没有新鲜度目标或尚未查询时分别为 {@link Long#MAX_VALUE} 和0
+     *
+     * @return 截止时间戳
+     */
+    public long deadline() {
+        if (lastCheckedAt == 0) {
+            return 0;
+        }
+        return freshnessMillis > 0 ? lastCheckedAt + freshnessMillis : Long.MAX_VALUE;
+    }
+}
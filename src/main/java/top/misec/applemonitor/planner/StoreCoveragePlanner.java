@@ -0,0 +1,344 @@
+package top.misec.applemonitor.planner;
+
+import cn.hutool.core.collection.CollectionUtil;
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.util.StrUtil;
+import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.JSONArray;
+import com.alibaba.fastjson2.JSONObject;
+import com.alibaba.fastjson2.TypeReference;
+import lombok.extern.slf4j.Slf4j;
+import top.misec.applemonitor.config.AppleTaskConfig;
+import top.misec.applemonitor.config.CfgSingleton;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 门店覆盖规划器
+ *
+ * Apple的库存接口只返回某个 location 附近的门店，覆盖大范围的门店白名单需要查询多个地区且结果互有重叠。
+ * 规划器的工作方式：
+ * 1. 学习：每次查询后记录该地区返回的门店（storeNumber、distanceWithUnit），并缓存到本地文件
+ * 2. 规划：求出能覆盖全部白名单门店的最少地区组合（候选地区较少时精确求解，否则贪心近似）
+ * 3. 刷新：超过刷新周期或从未学习过的地区会重新查询，以便发现新门店
+ * 4. 合并：多地区的查询结果按 storeNumber 去重，保留距离最近的一条
+ *
+ * 仅配置了一个地区时规划结果恒为该地区，与旧版本行为一致
+ *
+ * @author moshi
+ */
+@Slf4j
+public class StoreCoveragePlanner {
+
+    /**
+     * 候选地区数不超过该值时精确求解最小覆盖
+     */
+    private static final int EXACT_LIMIT = 12;
+
+    private static final Pattern DISTANCE_PATTERN = Pattern.compile("(\\d+(?:[.,]\\d+)?)");
+
+    private static volatile StoreCoveragePlanner instance;
+
+    /**
+     * 候选查询地区，第一个为主地区
+     */
+    private final List<String> candidateLocations;
+
+    private final long refreshMillis;
+
+    /**
+     * 覆盖信息缓存文件，为null时不持久化
+     */
+    private final File cacheFile;
+
+    /**
+     * 覆盖信息，key为 国家|地区
+     */
+    private final Map<String, LocationCoverage> coverage = new ConcurrentHashMap<>();
+
+    public StoreCoveragePlanner(List<String> candidateLocations, long refreshMillis, File cacheFile) {
+        this.candidateLocations = Collections.unmodifiableList(new ArrayList<>(new LinkedHashSet<>(candidateLocations)));
+        this.refreshMillis = refreshMillis;
+        this.cacheFile = cacheFile;
+        load();
+    }
+
+    /**
+     * 获取全局规划器，首次调用时根据配置文件创建
+     *
+     * @return 规划器实例
+     */
+    public static StoreCoveragePlanner getInstance() {
+        if (instance == null) {
+            synchronized (StoreCoveragePlanner.class) {
+                if (instance == null) {
+                    AppleTaskConfig taskConfig = CfgSingleton.getInstance().config.getAppleTaskConfig();
+                    List<String> locations = new ArrayList<>();
+                    locations.add(taskConfig.getLocation());
+                    if (CollectionUtil.isNotEmpty(taskConfig.getLocations())) {
+                        taskConfig.getLocations().stream().filter(StrUtil::isNotBlank).map(String::trim).forEach(locations::add);
+                    }
+                    long refreshMinutes = taskConfig.getCoverageRefreshMinutes() == null ? 360 : taskConfig.getCoverageRefreshMinutes();
+                    File file = locations.size() > 1 ? new File(System.getProperty("user.dir"), "store-coverage.json") : null;
+                    instance = new StoreCoveragePlanner(locations, refreshMinutes * 60_000, file);
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * 是否配置了多个候选地区
+     *
+     * @return 候选地区多于一个返回true
+     */
+    public boolean isEnabled() {
+        return candidateLocations.size() > 1;
+    }
+
+    /**
+     * 计算本轮需要查询的地区
+     *
+     * 未学习或已过期的地区总是需要查询，其余地区只保留覆盖剩余白名单门店所需的最少组合
+     *
+     * @param country   国家/地区代码
+     * @param whiteList 门店白名单，为空表示覆盖所有已知门店
+     * @return 需要查询的地区列表（保持候选顺序）
+     */
+    public List<String> plan(String country, List<String> whiteList) {
+        if (!isEnabled()) {
+            return candidateLocations;
+        }
+        long now = System.currentTimeMillis();
+        List<String> stale = new ArrayList<>();
+        List<String> fresh = new ArrayList<>();
+        Set<String> target = new HashSet<>();
+        Set<String> coveredByStale = new HashSet<>();
+        for (String location : candidateLocations) {
+            LocationCoverage learned = coverage.get(key(country, location));
+            boolean isStale = learned == null || now - learned.getLearnedAt() > refreshMillis;
+            (isStale ? stale : fresh).add(location);
+            if (learned != null) {
+                learned.getStores().forEach((storeNumber, ref) -> {
+                    if (matchWhiteList(ref.getStoreName(), whiteList)) {
+                        target.add(storeNumber);
+                        if (isStale) {
+                            coveredByStale.add(storeNumber);
+                        }
+                    }
+                });
+            }
+        }
+        target.removeAll(coveredByStale);
+
+        Set<String> chosen = new HashSet<>(stale);
+        chosen.addAll(minimalCover(country, fresh, target));
+        List<String> result = new ArrayList<>();
+        for (String location : candidateLocations) {
+            if (chosen.contains(location)) {
+                result.add(location);
+            }
+        }
+        // 白名单门店在所有地区都未出现时，仍查询主地区以便输出提示
+        if (result.isEmpty()) {
+            result.add(candidateLocations.get(0));
+        }
+        return result;
+    }
+
+    /**
+     * 学习某个地区的查询结果
+     *
+     * @param country  国家/地区代码
+     * @param location 查询地区
+     * @param stores   Apple返回的门店列表
+     */
+    public void learn(String country, String location, JSONArray stores) {
+        LocationCoverage learned = new LocationCoverage();
+        learned.setLearnedAt(System.currentTimeMillis());
+        for (int i = 0; i < stores.size(); i++) {
+            JSONObject store = stores.getJSONObject(i);
+            String storeNumber = store.getString("storeNumber");
+            if (storeNumber == null) {
+                continue;
+            }
+            LocationCoverage.StoreRef ref = new LocationCoverage.StoreRef();
+            ref.setStoreName(StrUtil.trim(store.getString("storeName")));
+            ref.setDistance(distanceOf(store));
+            learned.getStores().put(storeNumber, ref);
+        }
+        LocationCoverage previous = coverage.put(key(country, location), learned);
+        if (previous == null || !previous.getStores().keySet().equals(learned.getStores().keySet())) {
+            log.info("地区[{}]附近的门店:{}", location, learned.getStores().keySet());
+            save();
+        }
+    }
+
+    /**
+     * 将一个地区的查询结果合并到结果集中，同一门店保留距离最近的一条
+     *
+     * @param merged   合并结果，key为storeNumber（缺失时用storeName）
+     * @param location 查询地区
+     * @param stores   Apple返回的门店列表
+     */
+    public static void merge(Map<String, StoreHit> merged, String location, JSONArray stores) {
+        for (int i = 0; i < stores.size(); i++) {
+            JSONObject store = stores.getJSONObject(i);
+            String id = StrUtil.blankToDefault(store.getString("storeNumber"), store.getString("storeName"));
+            double distance = distanceOf(store);
+            StoreHit existing = merged.get(id);
+            if (existing == null || distance < existing.getDistance()) {
+                merged.put(id, new StoreHit(store, location, distance));
+            }
+        }
+    }
+
+    /**
+     * 解析门店距离，例如 "3.2 km"、"12.5 公里"、"5 mi"
+     *
+     * @param distanceWithUnit 带单位的距离
+     * @return 距离数值，无法解析时返回 {@link Double#MAX_VALUE}
+     */
+    public static double parseDistance(String distanceWithUnit) {
+        if (StrUtil.isBlank(distanceWithUnit)) {
+            return Double.MAX_VALUE;
+        }
+        Matcher matcher = DISTANCE_PATTERN.matcher(distanceWithUnit);
+        return matcher.find() ? Double.parseDouble(matcher.group(1).replace(',', '.')) : Double.MAX_VALUE;
+    }
+
+    /**
+     * 门店名称是否匹配白名单（与监控过滤规则一致的模糊匹配）
+     *
+     * @param storeName 门店名称
+     * @param whiteList 白名单，为空时匹配所有门店
+     * @return 匹配返回true
+     */
+    public static boolean matchWhiteList(String storeName, List<String> whiteList) {
+        if (CollectionUtil.isEmpty(whiteList)) {
+            return true;
+        }
+        return storeName != null && whiteList.stream().anyMatch(k -> storeName.contains(k) || k.contains(storeName));
+    }
+
+    private static double distanceOf(JSONObject store) {
+        JSONObject retailStore = store.getJSONObject("retailStore");
+        return parseDistance(retailStore == null ? null : retailStore.getString("distanceWithUnit"));
+    }
+
+    /**
+     * 求覆盖目标门店的最少地区组合，数量相同时选择总距离更近的组合
+     */
+    private List<String> minimalCover(String country, List<String> locations, Set<String> target) {
+        if (target.isEmpty() || locations.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Map<String, LocationCoverage.StoreRef>> sets = new ArrayList<>(locations.size());
+        locations.forEach(location -> sets.add(coverage.get(key(country, location)).getStores()));
+
+        if (locations.size() > EXACT_LIMIT) {
+            return greedyCover(locations, sets, target);
+        }
+
+        int best = -1;
+        int bestCount = Integer.MAX_VALUE;
+        double bestDistance = Double.MAX_VALUE;
+        for (int mask = 1; mask < (1 << locations.size()); mask++) {
+            int count = Integer.bitCount(mask);
+            if (count > bestCount) {
+                continue;
+            }
+            double distance = 0;
+            boolean covered = true;
+            for (String storeNumber : target) {
+                double nearest = Double.MAX_VALUE;
+                for (int i = 0; i < sets.size(); i++) {
+                    LocationCoverage.StoreRef ref = (mask & (1 << i)) != 0 ? sets.get(i).get(storeNumber) : null;
+                    if (ref != null) {
+                        nearest = Math.min(nearest, ref.getDistance());
+                    }
+                }
+                if (nearest == Double.MAX_VALUE) {
+                    covered = false;
+                    break;
+                }
+                distance += nearest;
+            }
+            if (covered && (count < bestCount || distance < bestDistance)) {
+                best = mask;
+                bestCount = count;
+                bestDistance = distance;
+            }
+        }
+
+        List<String> result = new ArrayList<>();
+        for (int i = 0; best > 0 && i < locations.size(); i++) {
+            if ((best & (1 << i)) != 0) {
+                result.add(locations.get(i));
+            }
+        }
+        return result;
+    }
+
+    private List<String> greedyCover(List<String> locations, List<Map<String, LocationCoverage.StoreRef>> sets, Set<String> target) {
+        Set<String> remaining = new HashSet<>(target);
+        List<String> result = new ArrayList<>();
+        while (!remaining.isEmpty()) {
+            int bestIndex = -1;
+            long bestGain = 0;
+            for (int i = 0; i < sets.size(); i++) {
+                long gain = sets.get(i).keySet().stream().filter(remaining::contains).count();
+                if (gain > bestGain) {
+                    bestGain = gain;
+                    bestIndex = i;
+                }
+            }
+            if (bestIndex < 0) {
+                break;
+            }
+            result.add(locations.get(bestIndex));
+            remaining.removeAll(sets.get(bestIndex).keySet());
+        }
+        return result;
+    }
+
+    private static String key(String country, String location) {
+        return country + "|" + location;
+    }
+
+    private void load() {
+        if (cacheFile == null || !cacheFile.isFile()) {
+            return;
+        }
+        try {
+            Map<String, LocationCoverage> cached = JSON.parseObject(FileUtil.readUtf8String(cacheFile),
+                    new TypeReference<Map<String, LocationCoverage>>() {
+                    });
+            if (cached != null) {
+                coverage.putAll(cached);
+                log.info("已加载{}个地区的门店覆盖缓存", cached.size());
+            }
+        } catch (Exception e) {
+            log.warn("门店覆盖缓存读取失败，将重新学习", e);
+        }
+    }
+
+    private synchronized void save() {
+        if (cacheFile == null) {
+            return;
+        }
+        try {
+            File tmp = new File(cacheFile.getPath() + ".tmp");
+            FileUtil.writeUtf8String(JSON.toJSONString(new TreeMap<>(coverage)), tmp);
+            Files.move(tmp.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (Exception e) {
+            log.warn("门店覆盖缓存写入失败", e);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package top.misec.applemonitor.planner;
+
+import com.alibaba.fastjson2.JSONObject;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 合并去重后的门店查询结果
+ *
+ * 同一门店出现在多个地区的查询结果中时，只保留距离最近的一条
+ *
+ * @author moshi
+ */
+@Getter
+@AllArgsConstructor
+public class StoreHit {
+
+    /**
+     * Apple返回的门店JSON
+     */
+    private final JSONObject store;
+
+    /**
+     * 返回该门店的查询地区
+     */
+    private final String location;
+
+    /**
+     * 距查询地区的距离
+     */
+    private final double distance;
+}
@@ -0,0 +1,88 @@
+package top.misec.applemonitor.push;
+
+import top.misec.applemonitor.config.PushConfig;
+
+import java.util.List;
+
+/**
+ * 推送渠道
+ *
+ * 内置渠道和第三方渠道均通过 {@link java.util.ServiceLoader} 加载：实现该接口并在
+ * META-INF/services/top.misec.applemonitor.push.PushChannel 中登记实现类，放入classpath即可使用，
+ * 无需修改监控流程。渠道实现需要是线程安全的
+ *
+ * @author moshi
+ */
+public interface PushChannel {
+
+    /**
+     * 渠道名称，与推送配置的 channel 字段对应，同时用于日志和JFR事件
+     *
+     * @return 渠道名称
+     */
+    String name();
+
+    /**
+     * 该推送配置是否需要通过本渠道推送
+     *
+     * @param config 推送配置
+     * @return 配置了本渠道所需的参数时返回true
+     */
+    boolean supports(PushConfig config);
+
+    /**
+     * 推送目标标识，同一目标共享熔断器
+     *
+     * @param config 推送配置
+     * @return 推送目标，通常为推送地址
+     */
+    String target(PushConfig config);
+
+    /**
+     * 一次调用最多推送的通知条数
+     *
+     * @return 批量大小，为1时逐条推送
+     */
+    default int maxBatchSize() {
+        return 1;
+    }
+
+    /**
+     * 同时进行的推送调用上限
+     *
+     * @return 并发上限
+     */
+    default int maxConcurrency() {
+        return 1;
+    }
+
+    /**
+     * 推送目标每分钟允许的调用次数
+     *
+     * @param config 推送配置
+     * @return 每分钟调用次数，不大于0表示不限制
+     */
+    default int ratePerMinute(PushConfig config) {
+        return 0;
+    }
+
+    /**
+     * 推送目标允许的突发调用次数，即令牌桶的容量
+     *
+     * @param config 推送配置
+     * @return 突发调用次数
+     */
+    default int burst(PushConfig config) {
+        return 1;
+    }
+
+    /**
+     * 推送一批通知
+     *
+     * @param config   推送配置
+     * @param messages 通知，条数不超过 {@link #maxBatchSize()}
+     * @return 推送服务端确认成功时返回true
+     * @throws Exception 推送失败
+     */
+    boolean send(PushConfig config, List<PushMessage> messages) throws Exception;
+}
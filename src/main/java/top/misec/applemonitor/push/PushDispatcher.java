@@ -0,0 +1,172 @@
+package top.misec.applemonitor.push;
+
+import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.util.StrUtil;
+import lombok.extern.slf4j.Slf4j;
+import top.misec.applemonitor.config.PushConfig;
+import top.misec.applemonitor.http.CircuitBreaker;
+import top.misec.applemonitor.http.CircuitBreakerRegistry;
+import top.misec.applemonitor.jfr.PushEvent;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+
+/**
+ * 推送分发器
+ *
+ * 按推送配置找到对应的推送渠道，把一批通知按渠道的批量大小拆分后推送：
+ * 1. 同一推送目标的调用受熔断器保护，熔断期间直接跳过
+ * 2. 每个渠道同时进行的调用不超过渠道声明的并发上限
+ * 3. 推送目标有调用频率限制时交给 {@link PushGovernor}，超出配额的通知排队合并后推送
+ *
+ * @author moshi
+ */
+@Slf4j
+public class PushDispatcher {
+
+    private static volatile PushDispatcher instance;
+
+    private final List<PushChannel> channels;
+
+    /**
+     * 各渠道的并发许可，key为渠道名称
+     */
+    private final Map<String, Semaphore> permits = new ConcurrentHashMap<>();
+
+    private final PushGovernor governor = new PushGovernor(this::deliver, System::currentTimeMillis);
+
+    public PushDispatcher(List<PushChannel> channels) {
+        this.channels = Collections.unmodifiableList(new ArrayList<>(channels));
+    }
+
+    /**
+     * 获取全局推送分发器，首次调用时加载classpath中的全部推送渠道
+     *
+     * @return 推送分发器
+     */
+    public static PushDispatcher getInstance() {
+        if (instance == null) {
+            synchronized (PushDispatcher.class) {
+                if (instance == null) {
+                    List<PushChannel> loaded = new ArrayList<>();
+                    ServiceLoader.load(PushChannel.class).forEach(loaded::add);
+                    instance = new PushDispatcher(loaded);
+                    log.debug("已加载推送渠道:{}", CollUtil.join(loaded, ",", PushChannel::name));
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * 已加载的推送渠道
+     *
+     * @return 推送渠道
+     */
+    public List<PushChannel> getChannels() {
+        return channels;
+    }
+
+    /**
+     * 当前因调用频率限制等待推送的通知数
+     *
+     * @return 待推送通知数
+     */
+    public int pendingCount() {
+        return governor.pendingCount();
+    }
+
+    /**
+     * 查找推送配置对应的全部渠道，一条推送配置可以同时配置多个渠道：
+     * 1. 配置了 channel 时，名称与之相同的渠道
+     * 2. 其他渠道由 {@link PushChannel#supports(PushConfig)} 判断
+     *
+     * @param config 推送配置
+     * @return 推送渠道
+     */
+    public List<PushChannel> resolve(PushConfig config) {
+        List<PushChannel> matched = new ArrayList<>(2);
+        for (PushChannel channel : channels) {
+            if (StrUtil.equals(config.getChannel(), channel.name()) || channel.supports(config)) {
+                matched.add(channel);
+            }
+        }
+        return matched;
+    }
+
+    /**
+     * 通过全部推送配置发送一批通知
+     *
+     * @param pushConfigs 推送配置，可为null
+     * @param messages    通知
+     */
+    public void dispatch(List<PushConfig> pushConfigs, List<PushMessage> messages) {
+        if (pushConfigs == null || messages.isEmpty()) {
+            return;
+        }
+        for (PushConfig config : pushConfigs) {
+            for (PushChannel channel : resolve(config)) {
+                int ratePerMinute = config.getPushRatePerMinute() != null ? config.getPushRatePerMinute() : channel.ratePerMinute(config);
+                if (ratePerMinute > 0) {
+                    governor.submit(channel, config, ratePerMinute, messages);
+                    continue;
+                }
+                for (List<PushMessage> batch : CollUtil.split(messages, Math.max(1, channel.maxBatchSize()))) {
+                    deliver(channel, config, batch);
+                }
+            }
+        }
+    }
+
+    /**
+     * 在熔断器和并发上限保护下调用推送渠道
+     *
+     * @param channel  推送渠道
+     * @param config   推送配置
+     * @param messages 通知
+     * @return 推送成功返回true
+     */
+    public boolean deliver(PushChannel channel, PushConfig config, List<PushMessage> messages) {
+        PushEvent event = new PushEvent();
+        event.channel = channel.name();
+        CircuitBreaker breaker = CircuitBreakerRegistry.forPush(channel.target(config));
+        if (!breaker.tryAcquire()) {
+            log.warn("{}推送地址熔断中，跳过本次推送", channel.name());
+            event.skipped = true;
+            event.commit();
+            return false;
+        }
+        Semaphore semaphore = permits.computeIfAbsent(channel.name(), name -> new Semaphore(Math.max(1, channel.maxConcurrency())));
+        event.begin();
+        try {
+            semaphore.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            event.commit();
+            return false;
+        }
+        // 熔断器只统计推送耗时，不包含等待并发许可的时间
+        long start = System.currentTimeMillis();
+        try {
+            boolean success = channel.send(config, messages);
+            if (success) {
+                breaker.onSuccess(System.currentTimeMillis() - start);
+            } else {
+                breaker.onError(System.currentTimeMillis() - start);
+            }
+            event.success = success;
+            return success;
+        } catch (Exception e) {
+            breaker.onError(System.currentTimeMillis() - start);
+            log.error("{}推送失败", channel.name(), e);
+            return false;
+        } finally {
+            semaphore.release();
+            if (event.shouldCommit()) {
+                event.bytes = messages.stream().mapToLong(message -> StrUtil.utf8Bytes(message.getContent()).length).sum();
+            }
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,284 @@
+package top.misec.applemonitor.push;
+
+import cn.hutool.core.thread.ThreadFactoryBuilder;
+import lombok.extern.slf4j.Slf4j;
+import top.misec.applemonitor.config.PushConfig;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * 推送限流器
+ *
+ * 飞书自定义机器人、自建Bark服务器都有各自的调用频率限制，大量门店同时到货时连续推送会被拒绝，被拒绝的通知随之丢失。
+ * 限流器为每个推送目标维护一个与其配额一致的令牌桶：
+ * 1. 有令牌时立即推送，每次调用消耗一个令牌，调用次数不会超过目标的配额
+ * 2. 没有令牌时通知进入该目标的待推送队列，同一门店的通知合并为最新的一条，令牌补充后与其他待推送通知合并为一批发送
+ * 3. 出队时到货通知优先，其次按创建时间先后
+ * 4. 推送失败的通知放回队列，最多尝试 {@link #MAX_ATTEMPTS} 次
+ *
+ * @author moshi
+ */
+@Slf4j
+public class PushGovernor {
+
+    /**
+     * 每条通知的最大推送次数
+     */
+    static final int MAX_ATTEMPTS = 3;
+
+    /**
+     * 每个推送目标最多保留的待推送通知数，超过后丢弃最早的非到货通知
+     */
+    static final int MAX_PENDING = 500;
+
+    /**
+     * 出队顺序：到货通知优先，其次按创建时间先后
+     */
+    private static final Comparator<Pending> ORDER = Comparator.comparing((Pending pending) -> !pending.message.isAvailable())
+            .thenComparingLong(pending -> pending.message.getCreatedAt());
+
+    /**
+     * 批量推送接口
+     */
+    @FunctionalInterface
+    public interface Delivery {
+
+        /**
+         * 推送一批通知
+         *
+         * @param channel  推送渠道
+         * @param config   推送配置
+         * @param messages 通知
+         * @return 推送成功返回true
+         */
+        boolean deliver(PushChannel channel, PushConfig config, List<PushMessage> messages);
+    }
+
+    /**
+     * 不合并的通知使用的序号
+     */
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+
+    private final Delivery delivery;
+
+    private final LongSupplier clock;
+
+    /**
+     * 各推送目标的队列，key为 渠道名称|推送目标
+     */
+    private final Map<String, TargetQueue> queues = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+            ThreadFactoryBuilder.create().setNamePrefix("push-governor-").setDaemon(true).build());
+
+    public PushGovernor(Delivery delivery, LongSupplier clock) {
+        this.delivery = delivery;
+        this.clock = clock;
+    }
+
+    /**
+     * 提交一批通知，有令牌时在当前线程立即推送，其余通知等待令牌补充后推送
+     *
+     * @param channel       推送渠道
+     * @param config        推送配置
+     * @param ratePerMinute 推送目标每分钟允许的调用次数
+     * @param messages      通知
+     */
+    public void submit(PushChannel channel, PushConfig config, int ratePerMinute, List<PushMessage> messages) {
+        TargetQueue queue = queues.computeIfAbsent(channel.name() + "|" + channel.target(config),
+                key -> new TargetQueue(key, channel, ratePerMinute, channel.burst(config), clock.getAsLong()));
+        queue.offer(config, messages);
+        queue.drain();
+    }
+
+    /**
+     * 当前等待推送的通知数
+     *
+     * @return 全部推送目标的待推送通知数
+     */
+    public int pendingCount() {
+        return queues.values().stream().mapToInt(TargetQueue::size).sum();
+    }
+
+    /**
+     * 一个推送目标的令牌桶和待推送队列
+     */
+    private class TargetQueue {
+
+        private final String key;
+        private final PushChannel channel;
+        private final TokenBucket bucket;
+
+        /**
+         * 待推送通知，key为通知的合并键
+         */
+        private final Map<String, Pending> pending = new LinkedHashMap<>();
+
+        /**
+         * 最近一次使用的推送配置，同一目标的配置相同
+         */
+        private PushConfig config;
+
+        /**
+         * 是否已安排补充令牌后的推送
+         */
+        private boolean scheduled;
+
+        private TargetQueue(String key, PushChannel channel, int ratePerMinute, int burst, long now) {
+            this.key = key;
+            this.channel = channel;
+            this.bucket = new TokenBucket(ratePerMinute, burst, now);
+        }
+
+        private synchronized int size() {
+            return pending.size();
+        }
+
+        private synchronized void offer(PushConfig config, List<PushMessage> messages) {
+            this.config = config;
+            for (PushMessage message : messages) {
+                // 同一门店的通知只保留最新的一条
+                String mergeKey = mergeKey(message);
+                Pending previous = pending.remove(mergeKey);
+                pending.put(mergeKey, new Pending(mergeKey, message, previous == null ? 0 : previous.attempts));
+            }
+            trim();
+        }
+
+        /**
+         * 在令牌允许的范围内推送，令牌不足时安排在下一个令牌可用时继续
+         *
+         * 只在取出一批通知和放回失败通知时持有锁，推送调用在锁外进行，
+         * 推送期间其他线程仍然可以提交通知，也不会因为等待网络调用而阻塞
+         */
+        private void drain() {
+            while (true) {
+                List<Pending> batch;
+                PushConfig batchConfig;
+                synchronized (this) {
+                    batch = take();
+                    batchConfig = config;
+                }
+                if (batch.isEmpty()) {
+                    return;
+                }
+                List<PushMessage> messages = new ArrayList<>(batch.size());
+                for (Pending item : batch) {
+                    messages.add(item.message);
+                }
+                boolean success = false;
+                try {
+                    success = delivery.deliver(channel, batchConfig, messages);
+                } finally {
+                    if (!success) {
+                        synchronized (this) {
+                            requeue(batch);
+                            // 推送失败后等待下一个令牌再重试
+                            long now = clock.getAsLong();
+                            schedule(Math.max(1, bucket.nextAvailableAt(now) - now));
+                        }
+                    }
+                }
+                if (!success) {
+                    return;
+                }
+            }
+        }
+
+        /**
+         * 消耗一个令牌并从队列中取出一批通知
+         *
+         * @return 待推送的通知，队列为空或令牌不足时返回空列表
+         */
+        private List<Pending> take() {
+            if (pending.isEmpty()) {
+                return Collections.emptyList();
+            }
+            long now = clock.getAsLong();
+            if (!bucket.tryAcquire(now)) {
+                schedule(bucket.nextAvailableAt(now) - now);
+                return Collections.emptyList();
+            }
+            List<Pending> batch = new ArrayList<>(pending.values());
+            batch.sort(ORDER);
+            batch = new ArrayList<>(batch.subList(0, Math.min(batch.size(), Math.max(1, channel.maxBatchSize()))));
+            for (Pending item : batch) {
+                pending.remove(item.key);
+            }
+            return batch;
+        }
+
+        private void requeue(List<Pending> batch) {
+            for (Pending item : batch) {
+                if (item.attempts + 1 >= MAX_ATTEMPTS) {
+                    log.warn("{}推送{}次失败，放弃通知:{}", channel.name(), MAX_ATTEMPTS, item.message.getContent());
+                    continue;
+                }
+                // 推送期间同一门店有了更新的通知时保留新通知
+                pending.putIfAbsent(item.key, new Pending(item.key, item.message, item.attempts + 1));
+            }
+            trim();
+        }
+
+        private void trim() {
+            while (pending.size() > MAX_PENDING) {
+                Pending dropped = pending.values().stream().max(ORDER).orElseThrow(IllegalStateException::new);
+                pending.remove(dropped.key);
+                log.warn("{}待推送通知过多，丢弃通知:{}", channel.name(), dropped.message.getContent());
+            }
+        }
+
+        private void schedule(long delayMillis) {
+            if (scheduled) {
+                return;
+            }
+            scheduled = true;
+            log.debug("推送目标{}的调用次数已达上限，{}条通知将在{}ms后推送", key, pending.size(), delayMillis);
+            scheduler.schedule(() -> {
+                synchronized (this) {
+                    scheduled = false;
+                }
+                try {
+                    drain();
+                } catch (Exception e) {
+                    log.error("推送失败", e);
+                }
+            }, Math.max(1, delayMillis), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 通知的合并键，门店通知按 国家|型号|门店编号 合并，其他通知不合并
+     *
+     * @param message 通知
+     * @return 合并键
+     */
+    private static String mergeKey(PushMessage message) {
+        if (message.getStoreNumber() == null) {
+            return "#" + SEQUENCE.incrementAndGet();
+        }
+        return message.getCountry() + "|" + message.getPart() + "|" + message.getStoreNumber();
+    }
+
+    /**
+     * 待推送的通知
+     */
+    private static class Pending {
+
+        private final String key;
+        private final PushMessage message;
+        private final int attempts;
+
+        private Pending(String key, PushMessage message, int attempts) {
+            this.key = key;
+            this.message = message;
+            this.attempts = attempts;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package top.misec.applemonitor.push;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 一条待推送的通知
+ *
+ * @author moshi
+ */
+@Getter
+@AllArgsConstructor
+public class PushMessage {
+
+    /**
+     * 国家/地区代码，非库存通知时为null
+     */
+    private final String country;
+
+    /**
+     * 产品型号代码，非库存通知时为null
+     */
+    private final String part;
+
+    /**
+     * 门店编号，非库存通知时为null
+     */
+    private final String storeNumber;
+
+    /**
+     * 是否为到货通知
+     */
+    private final boolean available;
+
+    /**
+     * 通知内容
+     */
+    private final String content;
+
+    /**
+     * 创建时间戳
+     */
+    private final long createdAt;
+
+    /**
+     * 创建不关联门店的文本通知，例如启动通知
+     *
+     * @param content 通知内容
+     * @return 通知
+     */
+    public static PushMessage of(String content) {
+        return new PushMessage(null, null, null, false, content, System.currentTimeMillis());
+    }
+}
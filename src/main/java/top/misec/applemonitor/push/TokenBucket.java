@@ -0,0 +1,67 @@
+package top.misec.applemonitor.push;
+
+/**
+ * 令牌桶
+ *
+ * 按固定速率补充令牌，最多积累 capacity 个，每次调用消耗一个令牌。非线程安全，由调用方加锁
+ *
+ * @author moshi
+ */
+final class TokenBucket {
+
+    private final int capacity;
+
+    /**
+     * 每个令牌的补充间隔（毫秒）
+     */
+    private final double millisPerToken;
+
+    private double tokens;
+
+    private long refilledAt;
+
+    /**
+     * @param ratePerMinute 每分钟补充的令牌数
+     * @param capacity      最多积累的令牌数
+     * @param now           当前时间戳
+     */
+    TokenBucket(int ratePerMinute, int capacity, long now) {
+        this.capacity = Math.max(1, capacity);
+        this.millisPerToken = 60_000.0 / Math.max(1, ratePerMinute);
+        this.tokens = this.capacity;
+        this.refilledAt = now;
+    }
+
+    /**
+     * 尝试消耗一个令牌
+     *
+     * @param now 当前时间戳
+     * @return 有可用令牌时返回true
+     */
+    boolean tryAcquire(long now) {
+        refill(now);
+        if (tokens >= 1) {
+            tokens -= 1;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 计算下一个令牌可用的时间
+     *
+     * @param now 当前时间戳
+     * @return 时间戳，当前已有令牌时返回now
+     */
+    long nextAvailableAt(long now) {
+        refill(now);
+        return tokens >= 1 ? now : now + (long) Math.ceil((1 - tokens) * millisPerToken);
+    }
+
+    private void refill(long now) {
+        if (now > refilledAt) {
+            tokens = Math.min(capacity, tokens + (now - refilledAt) / millisPerToken);
+            refilledAt = now;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package top.misec.applemonitor.push.impl;
+
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.http.ContentType;
+import cn.hutool.http.HttpRequest;
+import cn.hutool.http.HttpResponse;
+import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.JSONException;
+import com.alibaba.fastjson2.JSONObject;
+import lombok.extern.slf4j.Slf4j;
+import top.misec.applemonitor.config.PushConfig;
+import top.misec.applemonitor.http.Connections;
+import top.misec.applemonitor.push.PushChannel;
+import top.misec.applemonitor.push.PushMessage;
+import top.misec.bark.enums.SoundEnum;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Bark推送渠道（iOS通知）
+ *
+ * Bark没有批量接口，一批通知合并为一条通知发送，避免同时到货的多个门店刷屏
+ *
+ * 直接以JSON请求Bark服务器的推送接口，响应读完后即释放连接，长时间运行时不会残留未关闭的响应
+ *
+ * @author moshi
+ */
+@Slf4j
+public class BarkChannel implements PushChannel {
+
+    @Override
+    public String name() {
+        return "Bark";
+    }
+
+    @Override
+    public boolean supports(PushConfig config) {
+        return StrUtil.isAllNotEmpty(config.getBarkPushUrl(), config.getBarkPushToken());
+    }
+
+    @Override
+    public String target(PushConfig config) {
+        return config.getBarkPushUrl();
+    }
+
+    /**
+     * 合并后的通知仍需在APNs的4KB限制以内
+     */
+    @Override
+    public int maxBatchSize() {
+        return 5;
+    }
+
+    @Override
+    public boolean send(PushConfig config, List<PushMessage> messages) {
+        // 构建推送详情
+        JSONObject pushDetails = new JSONObject()
+                .fluentPut("device_key", config.getBarkPushToken())
+                .fluentPut("title", "苹果商店监控")
+                .fluentPut("body", messages.stream().map(PushMessage::getContent).collect(Collectors.joining("\n\n")))
+                .fluentPut("category", "苹果商店监控")
+                .fluentPut("group", "Apple Monitor")
+                .fluentPut("sound", StrUtil.isEmpty(config.getBarkPushSound()) ? SoundEnum.GLASS.getSoundName() : config.getBarkPushSound());
+        HttpResponse response = HttpRequest.post(config.getBarkPushUrl())
+                .body(pushDetails.toJSONString(), ContentType.JSON.toString())
+                .executeAsync();
+        int status = response.getStatus();
+        String result = Connections.readBody(response);
+        try {
+            JSONObject resp = JSON.parseObject(result);
+            if (status == 200 && resp != null && Integer.valueOf(200).equals(resp.getInteger("code"))) {
+                return true;
+            }
+        } catch (JSONException e) {
+            log.debug("Bark响应解析失败", e);
+        }
+        log.info("Bark推送失败，状态:{}，响应:{}", status, StrUtil.maxLength(result, 200));
+        return false;
+    }
+}
@@ -1,14 +1,24 @@
 package top.misec.applemonitor.push.impl;
 
+import cn.hutool.core.util.StrUtil;
 import cn.hutool.http.HttpRequest;
 import cn.hutool.http.HttpResponse;
+import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.JSONArray;
+import com.alibaba.fastjson2.JSONException;
 import com.alibaba.fastjson2.JSONObject;
 import lombok.extern.slf4j.Slf4j;
+import top.misec.applemonitor.config.AppCfg;
+import top.misec.applemonitor.config.CfgSingleton;
+import top.misec.applemonitor.config.HttpConfig;
+import top.misec.applemonitor.http.Connections;
 import top.misec.applemonitor.push.pojo.feishu.FeiShuPushDTO;
 import top.misec.applemonitor.push.pojo.feishu.FeiShuPushReq;
 import top.misec.applemonitor.push.pojo.feishu.TextContent;
 import top.misec.applemonitor.utils.FeiShuUtils;
 
+import java.util.List;
+
 /**
  * 飞书机器人推送实现类
  * 
@@ -21,6 +31,17 @@ import top.misec.applemonitor.utils.FeiShuUtils;
 @Slf4j
 public class FeiShuBotPush {
 
+    /**
+     * 读取全局HTTP配置（包含超时设置），配置未加载时使用默认值
+     *
+     * @return HTTP配置
+     */
+    private static HttpConfig httpConfig() {
+        AppCfg appCfg = CfgSingleton.getInstance().config;
+        HttpConfig httpConfig = appCfg == null ? null : appCfg.getHttpConfig();
+        return httpConfig == null ? new HttpConfig() : httpConfig;
+    }
+
     /**
      * 推送文本消息到飞书群聊
      * 
@@ -32,15 +53,16 @@ public class FeiShuBotPush {
      * 5. 记录推送结果
      * 
      * @param feiShuPushDTO 飞书推送数据传输对象，包含消息内容、Webhook地址和密钥
+     * @return 飞书服务端确认发送成功（code为0）时返回true
      */
 
-    public static void pushTextMessage(FeiShuPushDTO feiShuPushDTO) {
+    public static boolean pushTextMessage(FeiShuPushDTO feiShuPushDTO) {
         // 获取当前时间戳（秒级）
         long timestamp = System.currentTimeMillis() / 1000;
+        HttpConfig httpConfig = httpConfig();
         
-        try (
-            // 发送POST请求到飞书机器人Webhook
-            HttpResponse httpResponse = HttpRequest.post(feiShuPushDTO.getBotWebHooks())
+        // 发送POST请求到飞书机器人Webhook
+        HttpResponse httpResponse = HttpRequest.post(feiShuPushDTO.getBotWebHooks())
                 // 构建请求体JSON
                 .body(JSONObject.toJSONString(FeiShuPushReq.builder()
                         // 设置消息内容
@@ -52,13 +74,71 @@ public class FeiShuBotPush {
                         // 生成并设置签名
                         .sign(FeiShuUtils.genSign(feiShuPushDTO.getSecret(), timestamp))
                         .build()))
-                // 执行请求
-                .execute()
-        ) {
-            // 记录推送响应状态
-            log.info("飞书机器人推送状态:{}", httpResponse.getStatus());
-            // 记录响应内容
-            log.info(httpResponse.body());
+                // 设置超时，避免Webhook无响应时阻塞监控线程
+                .setConnectionTimeout(httpConfig.getConnectTimeoutMillis())
+                .setReadTimeout(httpConfig.getReadTimeoutMillis())
+                // 执行请求，读完响应后连接保留给下一次推送复用
+                .executeAsync();
+        return accepted(httpResponse);
+    }
+
+    /**
+     * 推送富文本消息到飞书群聊，每个段落一行
+     *
+     * @param feiShuPushDTO 飞书推送数据传输对象，包含Webhook地址和密钥
+     * @param title         消息标题
+     * @param paragraphs    段落
+     * @return 飞书服务端确认发送成功（code为0）时返回true
+     */
+    public static boolean pushPostMessage(FeiShuPushDTO feiShuPushDTO, String title, List<String> paragraphs) {
+        long timestamp = System.currentTimeMillis() / 1000;
+        HttpConfig httpConfig = httpConfig();
+
+        // 每个段落是一行，行内只有一个文本元素
+        JSONArray lines = new JSONArray(paragraphs.size());
+        for (String paragraph : paragraphs) {
+            lines.add(new JSONArray().fluentAdd(new JSONObject().fluentPut("tag", "text").fluentPut("text", paragraph)));
+        }
+        JSONObject post = new JSONObject().fluentPut("zh_cn", new JSONObject().fluentPut("title", title).fluentPut("content", lines));
+        JSONObject body = new JSONObject()
+                .fluentPut("msg_type", "post")
+                .fluentPut("content", new JSONObject().fluentPut("post", post))
+                .fluentPut("timestamp", timestamp)
+                .fluentPut("sign", FeiShuUtils.genSign(feiShuPushDTO.getSecret(), timestamp));
+
+        HttpResponse httpResponse = HttpRequest.post(feiShuPushDTO.getBotWebHooks())
+                .body(body.toJSONString())
+                .setConnectionTimeout(httpConfig.getConnectTimeoutMillis())
+                .setReadTimeout(httpConfig.getReadTimeoutMillis())
+                .executeAsync();
+        return accepted(httpResponse);
+    }
+
+    /**
+     * 读取飞书响应并判断推送是否成功
+     *
+     * 飞书对限流（如9499、11232）和签名校验失败同样返回HTTP 200，错误码在响应体的 code 中，
+     * 只有 code（旧版接口为 StatusCode）为0时才表示消息已发送
+     *
+     * @param httpResponse 飞书响应
+     * @return 推送成功返回true
+     */
+    private static boolean accepted(HttpResponse httpResponse) {
+        int status = httpResponse.getStatus();
+        String result = Connections.readBody(httpResponse);
+        try {
+            JSONObject resp = JSON.parseObject(result);
+            if (status == 200 && resp != null) {
+                Integer code = resp.containsKey("code") ? resp.getInteger("code") : resp.getInteger("StatusCode");
+                if (Integer.valueOf(0).equals(code)) {
+                    log.info("飞书机器人推送成功");
+                    return true;
+                }
+            }
+        } catch (JSONException e) {
+            log.debug("飞书响应解析失败", e);
         }
+        log.info("飞书机器人推送失败，状态:{}，响应:{}", status, StrUtil.maxLength(result, 200));
+        return false;
     }
 }
@@ -0,0 +1,66 @@
+package top.misec.applemonitor.push.impl;
+
+import cn.hutool.core.util.StrUtil;
+import top.misec.applemonitor.config.PushConfig;
+import top.misec.applemonitor.push.PushChannel;
+import top.misec.applemonitor.push.PushMessage;
+import top.misec.applemonitor.push.pojo.feishu.FeiShuPushDTO;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * 飞书机器人推送渠道
+ *
+ * 单条通知以文本消息发送，多条通知合并为一条富文本消息，每条通知一个段落
+ *
+ * @author moshi
+ */
+public class FeiShuChannel implements PushChannel {
+
+    @Override
+    public String name() {
+        return "飞书";
+    }
+
+    @Override
+    public boolean supports(PushConfig config) {
+        return StrUtil.isAllNotEmpty(config.getFeishuBotSecret(), config.getFeishuBotWebhooks());
+    }
+
+    @Override
+    public String target(PushConfig config) {
+        return config.getFeishuBotWebhooks();
+    }
+
+    @Override
+    public int maxBatchSize() {
+        return 20;
+    }
+
+    /**
+     * 飞书自定义机器人限制每分钟100次、每秒5次
+     */
+    @Override
+    public int ratePerMinute(PushConfig config) {
+        return 100;
+    }
+
+    @Override
+    public int burst(PushConfig config) {
+        return 5;
+    }
+
+    @Override
+    public boolean send(PushConfig config, List<PushMessage> messages) {
+        FeiShuPushDTO dto = FeiShuPushDTO.builder()
+                .text(messages.get(0).getContent()).secret(config.getFeishuBotSecret())
+                .botWebHooks(config.getFeishuBotWebhooks())
+                .build();
+        if (messages.size() == 1) {
+            return FeiShuBotPush.pushTextMessage(dto);
+        }
+        return FeiShuBotPush.pushPostMessage(dto, "苹果商店监控",
+                messages.stream().map(PushMessage::getContent).collect(Collectors.toList()));
+    }
+}
@@ -0,0 +1,69 @@
+package top.misec.applemonitor.push.impl;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.util.StrUtil;
+import com.alibaba.fastjson2.JSON;
+import top.misec.applemonitor.config.PushConfig;
+import top.misec.applemonitor.push.PushChannel;
+import top.misec.applemonitor.push.PushMessage;
+
+import java.io.IOException;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * 本地推送渠道，用于测试和对接本机程序
+ *
+ * 每条通知写为一行JSON：localSinkPath 为文件路径时追加写入文件，以 unix: 开头时发送到对应的Unix域套接字
+ *
+ * @author moshi
+ */
+public class LocalSinkChannel implements PushChannel {
+
+    private static final String UNIX_PREFIX = "unix:";
+
+    @Override
+    public String name() {
+        return "Local";
+    }
+
+    @Override
+    public boolean supports(PushConfig config) {
+        return StrUtil.isNotBlank(config.getLocalSinkPath());
+    }
+
+    @Override
+    public String target(PushConfig config) {
+        return config.getLocalSinkPath();
+    }
+
+    @Override
+    public int maxBatchSize() {
+        return 100;
+    }
+
+    @Override
+    public boolean send(PushConfig config, List<PushMessage> messages) throws IOException {
+        StringBuilder lines = new StringBuilder();
+        for (PushMessage message : messages) {
+            lines.append(JSON.toJSONString(message)).append('\n');
+        }
+        String path = config.getLocalSinkPath().trim();
+        if (path.startsWith(UNIX_PREFIX)) {
+            try (SocketChannel channel = SocketChannel.open(UnixDomainSocketAddress.of(path.substring(UNIX_PREFIX.length())))) {
+                ByteBuffer buffer = StandardCharsets.UTF_8.encode(lines.toString());
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+        } else {
+            synchronized (this) {
+                FileUtil.appendUtf8String(lines.toString(), FileUtil.file(path));
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,68 @@
+package top.misec.applemonitor.push.impl;
+
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.http.ContentType;
+import cn.hutool.http.HttpRequest;
+import cn.hutool.http.HttpResponse;
+import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.JSONObject;
+import lombok.extern.slf4j.Slf4j;
+import top.misec.applemonitor.config.PushConfig;
+import top.misec.applemonitor.http.Connections;
+import top.misec.applemonitor.push.PushChannel;
+import top.misec.applemonitor.push.PushMessage;
+
+import java.util.List;
+
+/**
+ * 通用JSON Webhook推送渠道
+ *
+ * 一批通知以一个请求发送到 webhookUrl，请求体格式：
+ * {"title":"苹果商店监控","events":[{"country":"CN","part":"MYLR3CH/A","storeNumber":"R448","available":true,"content":"...","createdAt":1700000000000}]}
+ * 服务端返回2xx视为成功
+ *
+ * @author moshi
+ */
+@Slf4j
+public class WebhookChannel implements PushChannel {
+
+    @Override
+    public String name() {
+        return "Webhook";
+    }
+
+    @Override
+    public boolean supports(PushConfig config) {
+        return StrUtil.startWithIgnoreCase(config.getWebhookUrl(), "http");
+    }
+
+    @Override
+    public String target(PushConfig config) {
+        return config.getWebhookUrl();
+    }
+
+    @Override
+    public int maxBatchSize() {
+        return 50;
+    }
+
+    @Override
+    public int maxConcurrency() {
+        return 4;
+    }
+
+    @Override
+    public boolean send(PushConfig config, List<PushMessage> messages) {
+        String body = JSON.toJSONString(new JSONObject().fluentPut("title", "苹果商店监控").fluentPut("events", messages));
+        HttpResponse response = HttpRequest.post(config.getWebhookUrl())
+                .body(body, ContentType.JSON.toString())
+                .executeAsync();
+        int status = response.getStatus();
+        String result = Connections.readBody(response);
+        if (status < 200 || status >= 300) {
+            log.info("Webhook推送失败，状态:{}，响应:{}", status, StrUtil.maxLength(result, 200));
+            return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,40 @@
+package top.misec.applemonitor.replay;
+
+import com.alibaba.fastjson2.JSONObject;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 一次录制的库存接口响应
+ *
+ * @author moshi
+ */
+@Data
+public class RecordedResponse {
+
+    /**
+     * 查询完成时间戳
+     */
+    private long ts;
+
+    /**
+     * 国家/地区代码
+     */
+    private String country;
+
+    /**
+     * 查询的产品型号代码
+     */
+    private List<String> parts;
+
+    /**
+     * 查询地区
+     */
+    private String location;
+
+    /**
+     * 取货信息（pickupMessage）
+     */
+    private JSONObject pickupMessage;
+}
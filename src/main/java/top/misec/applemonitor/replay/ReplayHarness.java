@@ -0,0 +1,213 @@
+package top.misec.applemonitor.replay;
+
+import com.alibaba.fastjson2.JSONArray;
+import com.alibaba.fastjson2.JSONObject;
+import top.misec.applemonitor.config.AppCfg;
+import top.misec.applemonitor.config.DeviceItem;
+import top.misec.applemonitor.job.AppleMonitor;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 离线回放
+ *
+ * 在虚拟时钟上按给定的监控策略把录制的库存接口响应回放给真实的 {@link AppleMonitor} 解析、过滤、去重流程：
+ * 1. 每轮监控在虚拟时间上按轮询间隔触发，上一轮未结束时跳过，与定时任务一致
+ * 2. 每次请求把虚拟时钟推进 requestMillis（线路请求节奏），返回该时刻之前最近一次录制的响应
+ * 3. 从录制中找出每次门店从无货变为有货的时间，与第一次推送该门店的时间相减得到发现延迟
+ *
+ * 不发起网络请求、不等待真实时间，几个小时的录制可以在几秒内回放完
+ *
+ * @author moshi
+ */
+public class ReplayHarness {
+
+    private final AppCfg config;
+
+    /**
+     * 录制的响应，key为 型号|地区，value按时间排序
+     */
+    private final Map<String, TreeMap<Long, JSONObject>> responses = new HashMap<>();
+
+    private final long firstTs;
+
+    private final long lastTs;
+
+    public ReplayHarness(AppCfg config, List<RecordedResponse> recording) {
+        this.config = config;
+        String country = config.getAppleTaskConfig().getCountry();
+        long first = Long.MAX_VALUE;
+        long last = Long.MIN_VALUE;
+        for (RecordedResponse response : recording) {
+            if (!country.equals(response.getCountry()) || response.getPickupMessage() == null) {
+                continue;
+            }
+            // 批量查询的响应包含多个型号，按每个型号分别索引
+            for (String part : response.getParts()) {
+                responses.computeIfAbsent(key(part, response.getLocation()), k -> new TreeMap<>())
+                        .put(response.getTs(), response.getPickupMessage());
+            }
+            first = Math.min(first, response.getTs());
+            last = Math.max(last, response.getTs());
+        }
+        this.firstTs = first;
+        this.lastTs = last;
+    }
+
+    /**
+     * 按给定的监控策略回放全部录制
+     *
+     * @param pollMillis    两轮监控的间隔
+     * @param requestMillis 每次请求占用的虚拟时间
+     * @return 回放结果
+     */
+    public ReplayReport run(long pollMillis, long requestMillis) {
+        ReplayReport report = new ReplayReport();
+        if (responses.isEmpty()) {
+            return report;
+        }
+        long wallStart = System.currentTimeMillis();
+        AtomicLong clock = new AtomicLong(firstTs);
+        AtomicInteger requests = new AtomicInteger();
+        List<Alert> alerts = new ArrayList<>();
+
+        AppleMonitor monitor = new AppleMonitor(config, (parts, productFamily, location) -> {
+            requests.incrementAndGet();
+            long now = clock.addAndGet(Math.max(0, requestMillis));
+            TreeMap<Long, JSONObject> recorded = responses.get(key(parts.get(0), location));
+            Map.Entry<Long, JSONObject> entry = recorded == null ? null : recorded.floorEntry(now);
+            return entry == null ? null : entry.getValue();
+        }, (deviceItem, messages) -> messages.forEach(message ->
+                alerts.add(new Alert(message.getPart(), message.getStoreNumber(), clock.get()))), clock::get);
+
+        int cycles = 0;
+        long fireAt = firstTs;
+        while (fireAt <= lastTs) {
+            clock.set(Math.max(clock.get(), fireAt));
+            monitor.monitor();
+            cycles++;
+            // 本轮执行期间错过的触发时间直接跳过
+            do {
+                fireAt += Math.max(1, pollMillis);
+            } while (fireAt < clock.get());
+        }
+
+        List<Long> lags = new ArrayList<>();
+        int onsets = 0;
+        for (Onset onset : onsets()) {
+            onsets++;
+            alerts.stream()
+                    .filter(alert -> alert.part.equals(onset.part) && onset.storeNumber.equals(alert.storeNumber)
+                            && alert.at >= onset.start && alert.at < onset.end)
+                    .findFirst()
+                    .ifPresent(alert -> lags.add(alert.at - onset.start));
+        }
+        Collections.sort(lags);
+
+        report.setSimulatedMillis(lastTs - firstTs);
+        report.setWallMillis(System.currentTimeMillis() - wallStart);
+        report.setCycles(cycles);
+        report.setRequests(requests.get());
+        report.setPushes(alerts.size());
+        report.setOnsets(onsets);
+        report.setDetected(lags.size());
+        report.setLagP50Millis(percentile(lags, 0.5));
+        report.setLagP95Millis(percentile(lags, 0.95));
+        report.setLagMaxMillis(lags.isEmpty() ? 0 : lags.get(lags.size() - 1));
+        return report;
+    }
+
+    /**
+     * 从录制中找出监控目标的每次到货，只统计配置的location和白名单内的门店
+     *
+     * @return 到货列表
+     */
+    private List<Onset> onsets() {
+        String location = config.getAppleTaskConfig().getLocation();
+        List<Onset> onsets = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        for (DeviceItem deviceItem : config.getAppleTaskConfig().getDeviceCodeList()) {
+            String part = deviceItem.getDeviceCode();
+            TreeMap<Long, JSONObject> recorded = responses.get(key(part, location));
+            if (recorded == null || !seen.add(part)) {
+                continue;
+            }
+            // 各门店当前未结束的到货
+            Map<String, Onset> open = new HashMap<>();
+            for (Map.Entry<Long, JSONObject> entry : recorded.entrySet()) {
+                JSONArray stores = entry.getValue().getJSONArray("stores");
+                Set<String> available = new HashSet<>();
+                for (int i = 0; stores != null && i < stores.size(); i++) {
+                    JSONObject store = stores.getJSONObject(i);
+                    JSONObject partsAvailability = store.getJSONObject("partsAvailability");
+                    JSONObject partAvailability = partsAvailability == null ? null : partsAvailability.getJSONObject(part);
+                    if (partAvailability != null && "available".equals(partAvailability.getString("pickupDisplay"))
+                            && AppleMonitor.filterStore(store, deviceItem)) {
+                        available.add(store.getString("storeNumber"));
+                    }
+                }
+                for (String storeNumber : available) {
+                    open.computeIfAbsent(storeNumber, k -> {
+                        Onset onset = new Onset(part, storeNumber, entry.getKey());
+                        onsets.add(onset);
+                        return onset;
+                    });
+                }
+                open.entrySet().removeIf(e -> {
+                    if (available.contains(e.getKey())) {
+                        return false;
+                    }
+                    e.getValue().end = entry.getKey();
+                    return true;
+                });
+            }
+        }
+        return onsets;
+    }
+
+    private static long percentile(List<Long> sorted, double p) {
+        if (sorted.isEmpty()) {
+            return 0;
+        }
+        return sorted.get(Math.max(0, (int) Math.ceil(p * sorted.size()) - 1));
+    }
+
+    private static String key(String part, String location) {
+        return part + "|" + location;
+    }
+
+    /**
+     * 一次到货通知
+     */
+    private static class Alert {
+
+        private final String part;
+        private final String storeNumber;
+        private final long at;
+
+        private Alert(String part, String storeNumber, long at) {
+            this.part = part;
+            this.storeNumber = storeNumber;
+            this.at = at;
+        }
+    }
+
+    /**
+     * 录制中的一次到货，从门店变为有货到重新无货
+     */
+    private static class Onset {
+
+        private final String part;
+        private final String storeNumber;
+        private final long start;
+        private long end = Long.MAX_VALUE;
+
+        private Onset(String part, String storeNumber, long start) {
+            this.part = part;
+            this.storeNumber = storeNumber;
+            this.start = start;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package top.misec.applemonitor.replay;
+
+import cn.hutool.core.util.StrUtil;
+import lombok.Data;
+
+/**
+ * 离线回放结果
+ *
+ * @author moshi
+ */
+@Data
+public class ReplayReport {
+
+    /**
+     * 回放覆盖的录制时长（毫秒）
+     */
+    private long simulatedMillis;
+
+    /**
+     * 回放实际耗时（毫秒）
+     */
+    private long wallMillis;
+
+    /**
+     * 执行的监控轮数
+     */
+    private int cycles;
+
+    /**
+     * 发起的库存接口请求数
+     */
+    private int requests;
+
+    /**
+     * 发送的到货通知数
+     */
+    private int pushes;
+
+    /**
+     * 录制中出现的到货次数（门店从无货变为有货）
+     */
+    private int onsets;
+
+    /**
+     * 在门店重新无货前发出了通知的到货次数
+     */
+    private int detected;
+
+    /**
+     * 发现延迟中位数（毫秒）
+     */
+    private long lagP50Millis;
+
+    /**
+     * 发现延迟p95（毫秒）
+     */
+    private long lagP95Millis;
+
+    /**
+     * 最大发现延迟（毫秒）
+     */
+    private long lagMaxMillis;
+
+    /**
+     * 未发出通知的到货次数
+     *
+     * @return 漏报次数
+     */
+    public int getMissed() {
+        return onsets - detected;
+    }
+
+    @Override
+    public String toString() {
+        return StrUtil.format("回放{}秒（耗时{}ms），{}轮监控，请求{}次，推送{}次；到货{}次，发现{}次，漏报{}次，"
+                        + "发现延迟 p50={}ms p95={}ms max={}ms", simulatedMillis / 1000, wallMillis, cycles, requests, pushes,
+                onsets, detected, getMissed(), lagP50Millis, lagP95Millis, lagMaxMillis);
+    }
+}
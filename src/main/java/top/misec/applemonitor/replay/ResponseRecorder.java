@@ -0,0 +1,114 @@
+package top.misec.applemonitor.replay;
+
+import cn.hutool.core.io.FileUtil;
+import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.JSONObject;
+import lombok.extern.slf4j.Slf4j;
+import top.misec.applemonitor.config.CfgSingleton;
+import top.misec.applemonitor.config.RecordConfig;
+import top.misec.applemonitor.job.AppleMonitor;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 库存接口响应录制器
+ *
+ * 把每次成功查询到的取货信息连同查询时间追加写入录制文件（每行一条JSON记录），
+ * 录制文件可通过 {@link ReplayHarness} 在虚拟时钟上回放
+ *
+ * @author moshi
+ */
+@Slf4j
+public class ResponseRecorder {
+
+    private static volatile ResponseRecorder instance;
+
+    private static volatile boolean initialized;
+
+    private final File file;
+
+    public ResponseRecorder(File file) {
+        this.file = file;
+    }
+
+    /**
+     * 获取全局录制器，未配置时返回null
+     *
+     * @return 录制器或null
+     */
+    public static ResponseRecorder getInstance() {
+        if (!initialized) {
+            synchronized (ResponseRecorder.class) {
+                if (!initialized) {
+                    RecordConfig recordConfig = CfgSingleton.getInstance().config.getRecordConfig();
+                    if (recordConfig != null) {
+                        instance = new ResponseRecorder(FileUtil.file(recordConfig.getPath()));
+                        log.info("响应录制已开启，录制文件:{}", instance.file.getAbsolutePath());
+                    }
+                    initialized = true;
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * 包装取货信息来源，成功的查询结果同时写入录制文件
+     *
+     * @param country 国家/地区代码
+     * @param source  取货信息来源
+     * @return 带录制的取货信息来源
+     */
+    public AppleMonitor.PickupSource wrap(String country, AppleMonitor.PickupSource source) {
+        return (parts, productFamily, location) -> {
+            JSONObject pickupMessage = source.fetch(parts, productFamily, location);
+            if (pickupMessage != null) {
+                record(country, parts, location, pickupMessage, System.currentTimeMillis());
+            }
+            return pickupMessage;
+        };
+    }
+
+    /**
+     * 追加一条录制记录，写入失败只记录日志
+     *
+     * @param country       国家/地区代码
+     * @param parts         产品型号代码
+     * @param location      查询地区
+     * @param pickupMessage 取货信息
+     * @param ts            查询完成时间戳
+     */
+    public synchronized void record(String country, List<String> parts, String location, JSONObject pickupMessage, long ts) {
+        RecordedResponse response = new RecordedResponse();
+        response.setTs(ts);
+        response.setCountry(country);
+        response.setParts(new ArrayList<>(parts));
+        response.setLocation(location);
+        response.setPickupMessage(pickupMessage);
+        try {
+            FileUtil.appendString(JSON.toJSONString(response) + "\n", file, StandardCharsets.UTF_8);
+        } catch (Exception e) {
+            log.warn("响应录制写入失败:{}", e.getMessage());
+        }
+    }
+
+    /**
+     * 读取录制文件，按时间排序
+     *
+     * @param file 录制文件
+     * @return 录制的响应
+     */
+    public static List<RecordedResponse> load(File file) {
+        List<RecordedResponse> responses = new ArrayList<>();
+        for (String line : FileUtil.readUtf8Lines(file)) {
+            if (!line.trim().isEmpty()) {
+                responses.add(JSON.parseObject(line, RecordedResponse.class));
+            }
+        }
+        responses.sort((a, b) -> Long.compare(a.getTs(), b.getTs()));
+        return responses;
+    }
+}
@@ -0,0 +1,213 @@
+package top.misec.applemonitor.state;
+
+import cn.hutool.core.thread.ThreadFactoryBuilder;
+import com.alibaba.fastjson2.JSONB;
+import lombok.extern.slf4j.Slf4j;
+import top.misec.applemonitor.api.AvailabilityStore;
+import top.misec.applemonitor.cache.AlertLedger;
+import top.misec.applemonitor.cache.DeliveryQuoteLedger;
+import top.misec.applemonitor.cache.PartValidityCache;
+import top.misec.applemonitor.config.CfgSingleton;
+import top.misec.applemonitor.config.CheckpointConfig;
+import top.misec.applemonitor.http.EgressPool;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 运行状态检查点管理器
+ *
+ * 库存状态、已发送的通知、预计送达日期、线路节奏等运行状态只保存在内存中，重启后全部丢失：
+ * 补货期间重新部署会对仍然有货的门店重复推送，线路也要重新被限流一遍才能学到合适的请求间隔。该管理器：
+ * 1. 按配置的间隔把运行状态以 fastjson2 JSONB 格式写入本地文件，退出时再写入一次
+ * 2. 先写入同目录下的临时文件并刷盘，再原子替换正式文件，写入中途退出也不会留下损坏的检查点
+ * 3. 启动时恢复未过期的检查点，第一轮监控即按恢复的通知台账去重、按恢复的间隔发起请求
+ *
+ * @author moshi
+ */
+@Slf4j
+public class CheckpointManager {
+
+    /**
+     * 当前文件格式版本
+     */
+    static final int FORMAT_VERSION = 1;
+
+    private static volatile CheckpointManager instance;
+
+    private static volatile boolean initialized;
+
+    private final CheckpointConfig config;
+
+    private final Path path;
+
+    private final AvailabilityStore availabilityStore;
+
+    private final AlertLedger alertLedger;
+
+    private final DeliveryQuoteLedger deliveryQuotes;
+
+    private final PartValidityCache partCache;
+
+    private final EgressPool egressPool;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+            ThreadFactoryBuilder.create().setNamePrefix("checkpoint-").setDaemon(true).build());
+
+    public CheckpointManager(CheckpointConfig config, AvailabilityStore availabilityStore, AlertLedger alertLedger,
+                             DeliveryQuoteLedger deliveryQuotes, PartValidityCache partCache, EgressPool egressPool) {
+        this.config = config;
+        this.path = Paths.get(config.getPath()).toAbsolutePath();
+        this.availabilityStore = availabilityStore;
+        this.alertLedger = alertLedger;
+        this.deliveryQuotes = deliveryQuotes;
+        this.partCache = partCache;
+        this.egressPool = egressPool;
+    }
+
+    /**
+     * 获取全局检查点管理器，未配置时返回null
+     * 首次调用时恢复检查点并开始定期写入
+     *
+     * @return 检查点管理器或null
+     */
+    public static CheckpointManager getInstance() {
+        if (!initialized) {
+            synchronized (CheckpointManager.class) {
+                if (!initialized) {
+                    CheckpointConfig checkpointConfig = CfgSingleton.getInstance().config.getCheckpointConfig();
+                    if (checkpointConfig != null) {
+                        instance = new CheckpointManager(checkpointConfig, AvailabilityStore.getInstance(),
+                                AlertLedger.getInstance(), DeliveryQuoteLedger.getInstance(), PartValidityCache.getInstance(),
+                                EgressPool.getInstance());
+                        instance.restore();
+                        instance.start();
+                    }
+                    initialized = true;
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * 开始定期写入，并在JVM退出时写入最后一次
+     */
+    public void start() {
+        long interval = Math.max(1, config.getIntervalSeconds());
+        scheduler.scheduleWithFixedDelay(this::saveQuietly, interval, interval, TimeUnit.SECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(this::saveQuietly, "checkpoint-shutdown"));
+        log.info("运行状态检查点已开启，每{}秒写入{}", interval, path);
+    }
+
+    /**
+     * 停止定期写入
+     */
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * 恢复检查点，文件不存在、已损坏、版本不一致或已过期时跳过
+     *
+     * @return 恢复成功返回true
+     */
+    public boolean restore() {
+        if (!Files.exists(path)) {
+            return false;
+        }
+        EngineCheckpoint checkpoint;
+        try {
+            checkpoint = JSONB.parseObject(Files.readAllBytes(path), EngineCheckpoint.class);
+        } catch (Exception e) {
+            log.warn("检查点{}读取失败，忽略:{}", path, e.getMessage());
+            return false;
+        }
+        if (checkpoint == null || checkpoint.getVersion() != FORMAT_VERSION) {
+            log.warn("检查点{}版本不一致，忽略", path);
+            return false;
+        }
+        long age = System.currentTimeMillis() - checkpoint.getSavedAt();
+        if (age > TimeUnit.MINUTES.toMillis(config.getMaxAgeMinutes())) {
+            log.info("检查点{}已过期（{}分钟前写入），忽略", path, TimeUnit.MILLISECONDS.toMinutes(age));
+            return false;
+        }
+        availabilityStore.restore(checkpoint.getAvailability());
+        alertLedger.restore(checkpoint.getAlerts());
+        if (checkpoint.getDeliveryQuotes() != null) {
+            deliveryQuotes.restore(checkpoint.getDeliveryQuotes());
+        }
+        partCache.restore(checkpoint.getParts());
+        egressPool.restorePacing(checkpoint.getRoutes());
+        log.info("已从检查点恢复{}条库存状态、{}条通知记录、{}条线路状态（{}秒前写入）", checkpoint.getAvailability().size(),
+                checkpoint.getAlerts().size(), checkpoint.getRoutes().size(), age / 1000);
+        return true;
+    }
+
+    /**
+     * 写入检查点
+     *
+     * @throws IOException 写入失败
+     */
+    public synchronized void save() throws IOException {
+        writeAtomically(path, JSONB.toBytes(capture()));
+    }
+
+    /**
+     * 采集当前运行状态
+     *
+     * @return 检查点
+     */
+    EngineCheckpoint capture() {
+        EngineCheckpoint checkpoint = new EngineCheckpoint();
+        checkpoint.setVersion(FORMAT_VERSION);
+        checkpoint.setSavedAt(System.currentTimeMillis());
+        checkpoint.setAvailability(availabilityStore.query(null, null, null));
+        checkpoint.setAlerts(alertLedger.snapshot());
+        checkpoint.setDeliveryQuotes(deliveryQuotes.snapshot());
+        checkpoint.setRoutes(egressPool.snapshotPacing());
+        checkpoint.setParts(partCache.snapshot());
+        return checkpoint;
+    }
+
+    private void saveQuietly() {
+        try {
+            save();
+        } catch (Exception e) {
+            log.warn("检查点写入失败:{}", e.getMessage());
+        }
+    }
+
+    /**
+     * 先写入同目录下的临时文件并刷盘，再原子替换目标文件
+     *
+     * @param target 目标文件
+     * @param data   文件内容
+     * @throws IOException 写入失败
+     */
+    static void writeAtomically(Path target, byte[] data) throws IOException {
+        Path dir = target.getParent();
+        if (dir != null) {
+            Files.createDirectories(dir);
+        }
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        try {
+            Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
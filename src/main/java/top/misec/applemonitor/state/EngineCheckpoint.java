@@ -0,0 +1,56 @@
+package top.misec.applemonitor.state;
+
+import lombok.Data;
+import top.misec.applemonitor.api.AvailabilityRecord;
+import top.misec.applemonitor.cache.AlertRecord;
+import top.misec.applemonitor.cache.PartStatus;
+import top.misec.applemonitor.http.RoutePacing;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 运行状态检查点
+ *
+ * @author moshi
+ */
+@Data
+public class EngineCheckpoint {
+
+    /**
+     * 文件格式版本，不一致时不恢复
+     */
+    private int version;
+
+    /**
+     * 写入时间戳
+     */
+    private long savedAt;
+
+    /**
+     * 最近一次查询到的库存状态
+     */
+    private List<AvailabilityRecord> availability = new ArrayList<>();
+
+    /**
+     * 已发送的到货通知
+     */
+    private List<AlertRecord> alerts = new ArrayList<>();
+
+    /**
+     * 出口线路的请求节奏和健康状态
+     */
+    private List<RoutePacing> routes = new ArrayList<>();
+
+    /**
+     * 型号有效性状态
+     */
+    private List<PartStatus> parts = new ArrayList<>();
+
+    /**
+     * 上一次查询到的预计送达日期，key为 国家|型号
+     */
+    private Map<String, String> deliveryQuotes = new HashMap<>();
+}
@@ -0,0 +1,129 @@
+package top.misec.applemonitor.sweep;
+
+import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.thread.ThreadFactoryBuilder;
+import com.alibaba.fastjson2.JSONArray;
+import com.alibaba.fastjson2.JSONObject;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 全型号库存扫描
+ *
+ * 逐个型号、逐个地区地轮询需要很多分钟才能扫完一遍型号列表，扫描模式：
+ * 1. 每次请求通过 parts.0……parts.N 同时查询一批型号，请求数按批量大小成倍减少
+ * 2. 多个地区、多个批次并行查询，每个请求仍从出口线路池申请预算，不会超过线路的请求节奏
+ * 3. 合并全部结果为门店 × 型号的库存矩阵
+ *
+ * @author moshi
+ */
+@Slf4j
+public class CatalogSweep {
+
+    /**
+     * Apple产品代码，例如 MYLR3CH/A、MTQA3J/A、MU2Q3LL/A
+     */
+    private static final Pattern PART_CODE = Pattern.compile("\\b[A-Z0-9]{5}[A-Z]{1,2}/A\\b");
+
+    /**
+     * 批量查询接口
+     */
+    @FunctionalInterface
+    public interface BatchFetcher {
+
+        /**
+         * 查询一批型号在指定地区附近门店的取货信息
+         *
+         * @param parts    产品型号代码
+         * @param location 查询地区
+         * @return 取货信息（pickupMessage），请求失败时返回null
+         */
+        JSONObject fetch(List<String> parts, String location);
+    }
+
+    private final BatchFetcher fetcher;
+
+    private final int batchSize;
+
+    private final int parallelism;
+
+    public CatalogSweep(BatchFetcher fetcher, int batchSize, int parallelism) {
+        this.fetcher = fetcher;
+        this.batchSize = Math.max(1, batchSize);
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * 执行一次扫描
+     *
+     * @param parts     产品型号代码
+     * @param locations 查询地区
+     * @return 库存矩阵
+     * @throws InterruptedException 等待期间线程被中断
+     */
+    public SweepMatrix run(List<String> parts, List<String> locations) throws InterruptedException {
+        SweepMatrix matrix = new SweepMatrix(parts);
+        List<List<String>> batches = CollUtil.split(parts, batchSize);
+        AtomicInteger failed = new AtomicInteger();
+        long start = System.currentTimeMillis();
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, batches.size() * locations.size()),
+                ThreadFactoryBuilder.create().setNamePrefix("sweep-").setDaemon(true).build());
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (String location : locations) {
+                for (List<String> batch : batches) {
+                    futures.add(executor.submit(() -> {
+                        JSONObject pickupMessage = fetcher.fetch(batch, location);
+                        JSONArray stores = pickupMessage == null ? null : pickupMessage.getJSONArray("stores");
+                        if (stores == null) {
+                            failed.incrementAndGet();
+                            log.warn("地区{}型号{}查询失败，可能被限流或包含当前国家/地区不销售的型号", location, batch);
+                            return;
+                        }
+                        matrix.merge(stores);
+                    }));
+                }
+            }
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    failed.incrementAndGet();
+                    log.warn("扫描请求异常", e.getCause());
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        log.info("扫描完成：{}个型号 × {}个地区，{}次请求（失败{}次），{}家门店，{}个可取货组合，耗时{}ms",
+                parts.size(), locations.size(), batches.size() * locations.size(), failed.get(),
+                matrix.storeCount(), matrix.availableCount(), System.currentTimeMillis() - start);
+        return matrix;
+    }
+
+    /**
+     * 从文本中提取产品代码，保持出现顺序并去重
+     * 可直接读取 docs/apple-device-codes.md 这类型号表格
+     *
+     * @param text 文本
+     * @return 产品代码列表
+     */
+    public static List<String> parseParts(String text) {
+        Set<String> parts = new LinkedHashSet<>();
+        Matcher matcher = PART_CODE.matcher(text);
+        while (matcher.find()) {
+            parts.add(matcher.group());
+        }
+        return new ArrayList<>(parts);
+    }
+}
@@ -0,0 +1,128 @@
+package top.misec.applemonitor.sweep;
+
+import cn.hutool.core.text.csv.CsvUtil;
+import cn.hutool.core.text.csv.CsvWriter;
+import cn.hutool.core.util.StrUtil;
+import com.alibaba.fastjson2.JSONArray;
+import com.alibaba.fastjson2.JSONObject;
+import lombok.Getter;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * 门店 × 型号库存矩阵
+ *
+ * 行为门店，列为型号，单元格为该门店该型号的取货状态（pickupDisplay：available、unavailable、ineligible），
+ * 未返回的组合为空。多个地区返回同一门店时，任一地区可取货即记为可取货
+ *
+ * @author moshi
+ */
+public class SweepMatrix {
+
+    /**
+     * 可取货状态
+     */
+    static final String AVAILABLE = "available";
+
+    @Getter
+    private final List<String> parts;
+
+    /**
+     * 门店编号 -> 门店名称
+     */
+    private final Map<String, String> storeNames = new TreeMap<>();
+
+    /**
+     * 门店编号 -> （型号 -> 取货状态）
+     */
+    private final Map<String, Map<String, String>> cells = new HashMap<>();
+
+    public SweepMatrix(List<String> parts) {
+        this.parts = parts;
+    }
+
+    /**
+     * 合并一次查询返回的门店列表
+     *
+     * @param stores 库存接口返回的门店列表
+     */
+    public synchronized void merge(JSONArray stores) {
+        for (int i = 0; i < stores.size(); i++) {
+            JSONObject store = stores.getJSONObject(i);
+            String storeNumber = store.getString("storeNumber");
+            JSONObject partsAvailability = store.getJSONObject("partsAvailability");
+            if (storeNumber == null || partsAvailability == null) {
+                continue;
+            }
+            storeNames.putIfAbsent(storeNumber, StrUtil.trim(store.getString("storeName")));
+            Map<String, String> row = cells.computeIfAbsent(storeNumber, k -> new HashMap<>());
+            for (String part : partsAvailability.keySet()) {
+                JSONObject availability = partsAvailability.getJSONObject(part);
+                String display = availability == null ? null : availability.getString("pickupDisplay");
+                if (display != null && !AVAILABLE.equals(row.get(part))) {
+                    row.put(part, display);
+                }
+            }
+        }
+    }
+
+    /**
+     * 获取单元格状态
+     *
+     * @param storeNumber 门店编号
+     * @param part        产品型号代码
+     * @return 取货状态，未返回时为null
+     */
+    public synchronized String get(String storeNumber, String part) {
+        Map<String, String> row = cells.get(storeNumber);
+        return row == null ? null : row.get(part);
+    }
+
+    /**
+     * 门店数量
+     *
+     * @return 门店数量
+     */
+    public synchronized int storeCount() {
+        return storeNames.size();
+    }
+
+    /**
+     * 可取货的（门店、型号）组合数量
+     *
+     * @return 组合数量
+     */
+    public synchronized int availableCount() {
+        return (int) cells.values().stream()
+                .flatMap(row -> row.values().stream())
+                .filter(AVAILABLE::equals)
+                .count();
+    }
+
+    /**
+     * 以CSV格式写出矩阵，门店按编号排序，列顺序与型号列表一致
+     *
+     * @param file 输出文件
+     */
+    public synchronized void writeCsv(File file) {
+        try (CsvWriter writer = CsvUtil.getWriter(file, StandardCharsets.UTF_8)) {
+            List<String> header = new ArrayList<>(parts.size() + 2);
+            header.add("storeNumber");
+            header.add("storeName");
+            header.addAll(parts);
+            writer.write(header.toArray(new String[0]));
+            storeNames.forEach((storeNumber, storeName) -> {
+                String[] line = new String[parts.size() + 2];
+                line[0] = storeNumber;
+                line[1] = storeName;
+                Map<String, String> row = cells.get(storeNumber);
+                for (int i = 0; i < parts.size(); i++) {
+                    line[i + 2] = StrUtil.nullToEmpty(row.get(parts.get(i)));
+                }
+                writer.write(line);
+            });
+        }
+    }
+}
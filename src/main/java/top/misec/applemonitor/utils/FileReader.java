@@ -29,17 +29,10 @@ public class FileReader {
      */
     public static String readFile(String filePath) {
         String fileContentStr = null;
-        try {
-            // 创建文件输入流
-            InputStream inputStream = new FileInputStream(filePath);
-            // 获取文件大小
-            int size = inputStream.available();
-            // 创建缓冲区
-            byte[] buffer = new byte[size];
-            // 读取文件内容到缓冲区
-            inputStream.read(buffer);
-            // 关闭输入流
-            inputStream.close();
+        // 输入流在读取失败时同样会被关闭
+        try (InputStream inputStream = new FileInputStream(filePath)) {
+            // 读取到文件末尾，available()只是不阻塞可读的字节数，不一定等于文件大小
+            byte[] buffer = inputStream.readAllBytes();
             // 将字节数组转换为UTF-8字符串
             fileContentStr = new String(buffer, StandardCharsets.UTF_8);
         } catch (FileNotFoundException e) {
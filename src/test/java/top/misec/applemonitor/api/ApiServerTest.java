@@ -0,0 +1,179 @@
+package top.misec.applemonitor.api;
+
+import cn.hutool.core.net.NetUtil;
+import cn.hutool.http.HttpUtil;
+import com.alibaba.fastjson2.JSONArray;
+import com.alibaba.fastjson2.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import top.misec.applemonitor.cache.PartValidityCache;
+import top.misec.applemonitor.config.ApiConfig;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 本地查询接口测试
+ *
+ * @author moshi
+ */
+class ApiServerTest {
+
+    private final AvailabilityStore store = new AvailabilityStore();
+
+    private final TransitionBroadcaster broadcaster = new TransitionBroadcaster();
+
+    private ApiServer server;
+
+    private String baseUrl;
+
+    @BeforeEach
+    void setUp() {
+        ApiConfig config = new ApiConfig();
+        config.setPort(NetUtil.getUsableLocalPort());
+        config.setStaleAfterMillis(60_000);
+        server = new ApiServer(config, store, broadcaster);
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getPort() + "/api/availability";
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop();
+    }
+
+    private static AvailabilityRecord record(String country, String store, String part, boolean available, long checkedAt) {
+        return new AvailabilityRecord(country, part, store, "Apple " + store, "iPhone", available,
+                available ? "available" : "unavailable", available ? "今天可取货" : "暂无供应", null, null, "北京 北京 朝阳区", checkedAt, checkedAt);
+    }
+
+    @Test
+    void keepsChangedAtWhileAvailabilityIsUnchanged() {
+        assertNull(store.update(record("CN", "R448", "MYTM3CH/A", false, 1000)));
+        store.update(record("CN", "R448", "MYTM3CH/A", false, 2000));
+        AvailabilityRecord unchanged = store.get("CN", "R448", "MYTM3CH/A");
+        assertEquals(2000, unchanged.getCheckedAt());
+        assertEquals(1000, unchanged.getChangedAt());
+
+        AvailabilityRecord previous = store.update(record("CN", "R448", "MYTM3CH/A", true, 3000));
+        assertFalse(previous.isAvailable());
+        assertEquals(3000, store.get("CN", "R448", "MYTM3CH/A").getChangedAt());
+    }
+
+    @Test
+    void filtersAndReportsStaleness() {
+        long now = System.currentTimeMillis();
+        store.update(record("CN", "R448", "MYTM3CH/A", true, now));
+        store.update(record("CN", "R388", "MYTM3CH/A", false, now - 120_000));
+        store.update(record("JP", "R005", "MTQA3J/A", false, now));
+
+        JSONObject all = JSONObject.parseObject(HttpUtil.get(baseUrl));
+        assertEquals(3, all.getIntValue("count"));
+
+        JSONArray items = JSONObject.parseObject(HttpUtil.get(baseUrl + "?country=cn")).getJSONArray("items");
+        assertEquals(2, items.size());
+        // 按门店编号排序，R388 超过过期阈值
+        assertEquals("R388", items.getJSONObject(0).getString("storeNumber"));
+        assertTrue(items.getJSONObject(0).getBooleanValue("stale"));
+        assertFalse(items.getJSONObject(1).getBooleanValue("stale"));
+
+        JSONObject available = JSONObject.parseObject(HttpUtil.get(baseUrl + "?available=true"));
+        assertEquals(1, available.getIntValue("count"));
+        assertEquals(1, JSONObject.parseObject(HttpUtil.get(baseUrl + "?store=R005")).getIntValue("count"));
+    }
+
+    @Test
+    void readsDoNotBlockWriter() throws Exception {
+        store.update(record("CN", "R448", "MYTM3CH/A", false, 0));
+        Thread[] readers = new Thread[4];
+        for (int i = 0; i < readers.length; i++) {
+            readers[i] = new Thread(() -> {
+                for (int n = 0; n < 20_000; n++) {
+                    assertEquals(1, store.query("CN", null, null).size());
+                }
+            });
+            readers[i].start();
+        }
+        for (int n = 1; n <= 20_000; n++) {
+            store.update(record("CN", "R448", "MYTM3CH/A", n % 2 == 0, n));
+        }
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        assertEquals(20_000, store.get("CN", "R448", "MYTM3CH/A").getCheckedAt());
+    }
+
+    @Test
+    void streamsFilteredTransitions() throws Exception {
+        HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + "/stream?part=MYTM3CH/A").openConnection();
+        connection.setReadTimeout(5000);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8))) {
+            assertEquals(": connected", reader.readLine());
+            assertEquals(1, broadcaster.subscriberCount());
+
+            // 其他型号的变化被过滤
+            broadcaster.publish(null, record("JP", "R005", "MTQA3J/A", true, 1));
+            broadcaster.publish(null, record("CN", "R448", "MYTM3CH/A", true, 2));
+            reader.readLine();
+
+            assertEquals("id: 2", reader.readLine());
+            assertEquals("event: transition", reader.readLine());
+            JSONObject data = JSONObject.parseObject(reader.readLine().substring("data: ".length()));
+            assertEquals("R448", data.getString("storeNumber"));
+            assertTrue(data.getBooleanValue("available"));
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    @Test
+    void slowSubscriberIsDisconnected() throws Exception {
+        TransitionBroadcaster.Subscriber slow = broadcaster.subscribe("slow", null, null, null, 2);
+        TransitionBroadcaster.Subscriber fast = broadcaster.subscribe("fast", "CN", null, null, 8);
+        for (int i = 0; i < 3; i++) {
+            broadcaster.publish(null, record("CN", "R" + i, "MYTM3CH/A", true, i));
+        }
+        assertTrue(slow.isClosed());
+        assertFalse(fast.isClosed());
+        assertEquals(1, broadcaster.subscriberCount());
+        assertThrows(InterruptedException.class, () -> slow.poll(10));
+        assertEquals("R0", fast.poll(10).getCurrent().getStoreNumber());
+        fast.close();
+    }
+
+    @Test
+    void reportsPartValidity() {
+        // 全局缓存可能含有其他测试写入的型号，只检查本测试使用的国家/地区代码
+        PartValidityCache.getInstance().markValid("ZZ", "MYTM3ZZ/A", "iPhone 16 Pro");
+        PartValidityCache.getInstance().markInvalid("ZZ", "XXXX1ZZ/A");
+        String partsUrl = baseUrl.replace("/api/availability", "/api/parts");
+
+        JSONArray all = JSONObject.parseObject(HttpUtil.get(partsUrl)).getJSONArray("items");
+        assertEquals(2, all.stream().map(JSONObject.class::cast).filter(item -> "ZZ".equals(item.getString("country"))).count());
+
+        JSONArray invalid = JSONObject.parseObject(HttpUtil.get(partsUrl + "?valid=false")).getJSONArray("items");
+        JSONObject part = invalid.stream().map(JSONObject.class::cast).filter(item -> "ZZ".equals(item.getString("country")))
+                .findFirst().orElseThrow(AssertionError::new);
+        assertEquals("XXXX1ZZ/A", part.getString("part"));
+        assertFalse(part.getBooleanValue("valid"));
+        assertEquals(1, part.getIntValue("failures"));
+        assertTrue(part.getLongValue("nextRetryAt") > part.getLongValue("lastCheckedAt"));
+        assertTrue(invalid.stream().map(JSONObject.class::cast).noneMatch(item -> item.getBooleanValue("valid")));
+    }
+
+    @Test
+    void onlyAvailabilityChangesAreTransitions() {
+        assertTrue(TransitionBroadcaster.isTransition(null, record("CN", "R448", "MYTM3CH/A", true, 1)));
+        assertFalse(TransitionBroadcaster.isTransition(null, record("CN", "R448", "MYTM3CH/A", false, 1)));
+        assertFalse(TransitionBroadcaster.isTransition(record("CN", "R448", "MYTM3CH/A", false, 1),
+                record("CN", "R448", "MYTM3CH/A", false, 2)));
+        assertTrue(TransitionBroadcaster.isTransition(record("CN", "R448", "MYTM3CH/A", true, 1),
+                record("CN", "R448", "MYTM3CH/A", false, 2)));
+    }
+}
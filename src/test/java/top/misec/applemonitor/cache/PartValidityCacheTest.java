@@ -0,0 +1,51 @@
+package top.misec.applemonitor.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 型号有效性缓存测试
+ *
+ * @author moshi
+ */
+class PartValidityCacheTest {
+
+    @Test
+    void invalidPartBacksOffExponentially() throws Exception {
+        PartValidityCache cache = new PartValidityCache(100, 250);
+        assertTrue(cache.shouldQuery("JP", "MTQA3J/A"));
+
+        cache.markInvalid("JP", "MTQA3J/A");
+        assertFalse(cache.shouldQuery("JP", "MTQA3J/A"));
+        // 其他国家/地区不受影响
+        assertTrue(cache.shouldQuery("CN", "MTQA3J/A"));
+
+        Thread.sleep(150);
+        assertTrue(cache.shouldQuery("JP", "MTQA3J/A"));
+
+        cache.markInvalid("JP", "MTQA3J/A");
+        cache.markInvalid("JP", "MTQA3J/A");
+        List<PartStatus> invalid = cache.invalidParts();
+        assertEquals(1, invalid.size());
+        assertEquals(3, invalid.get(0).getFailures());
+        // 退避时间封顶为250ms
+        long backoff = invalid.get(0).getNextRetryAt() - invalid.get(0).getLastCheckedAt();
+        assertEquals(250, backoff);
+    }
+
+    @Test
+    void validPartKeepsTitle() {
+        PartValidityCache cache = new PartValidityCache(100, 1000);
+        cache.markInvalid("CN", "MYTM3CH/A");
+        cache.markValid("CN", "MYTM3CH/A", "iPhone 16 Pro Max 256GB 原色钛金属");
+        cache.markValid("CN", "MYTM3CH/A", null);
+
+        assertTrue(cache.shouldQuery("CN", "MYTM3CH/A"));
+        assertTrue(cache.invalidParts().isEmpty());
+        assertEquals("iPhone 16 Pro Max 256GB 原色钛金属", cache.getTitle("CN", "MYTM3CH/A"));
+        assertEquals(0, cache.snapshot().get(0).getFailures());
+    }
+}
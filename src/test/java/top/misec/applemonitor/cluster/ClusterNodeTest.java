@@ -0,0 +1,92 @@
+package top.misec.applemonitor.cluster;
+
+import cn.hutool.core.net.NetUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import top.misec.applemonitor.config.ClusterConfig;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 集群节点测试
+ *
+ * 在本机启动多个节点，验证目标分配唯一、负载大致均衡以及节点下线后的重新分配
+ *
+ * @author moshi
+ */
+@Slf4j
+class ClusterNodeTest {
+
+    private final List<ClusterNode> nodes = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        nodes.forEach(ClusterNode::stop);
+    }
+
+    private List<String> targets() {
+        List<String> targets = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            targets.add(ClusterNode.targetKey("CN", "广东 深圳 南山区", "M" + i + "CH/A"));
+        }
+        return targets;
+    }
+
+    private Map<String, String> assignment(List<ClusterNode> live, List<String> targets) {
+        Map<String, String> owners = new HashMap<>();
+        for (String target : targets) {
+            List<String> owning = new ArrayList<>();
+            live.forEach(node -> {
+                if (node.owns(target)) {
+                    owning.add(node.getSelfId());
+                }
+            });
+            assertEquals(1, owning.size(), "target " + target + " owned by " + owning);
+            owners.put(target, owning.get(0));
+        }
+        return owners;
+    }
+
+    @Test
+    void splitsAndRebalancesTargets() throws Exception {
+        List<String> addresses = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            addresses.add("127.0.0.1:" + NetUtil.getUsableLocalPort());
+        }
+        for (String address : addresses) {
+            ClusterConfig config = new ClusterConfig();
+            config.setSelf(address);
+            config.setPeers(addresses);
+            config.setHeartbeatIntervalMillis(100);
+            config.setFailureTimeoutMillis(500);
+            ClusterNode node = new ClusterNode(config);
+            node.start();
+            nodes.add(node);
+        }
+        Thread.sleep(300);
+
+        List<String> targets = targets();
+        Map<String, String> before = assignment(nodes, targets);
+        Map<String, Long> counts = new HashMap<>();
+        before.values().forEach(owner -> counts.merge(owner, 1L, Long::sum));
+        assertEquals(3, counts.size());
+        counts.values().forEach(count -> assertTrue(count > 50, "unbalanced " + counts));
+
+        // 停止一个节点，剩余节点在超时后接管其目标
+        ClusterNode stopped = nodes.remove(2);
+        stopped.stop();
+        Thread.sleep(1000);
+
+        assertEquals(2, nodes.get(0).getLiveNodes().size());
+        Map<String, String> after = assignment(nodes, targets);
+        for (String target : targets) {
+            // 未受影响的目标保持原节点
+            if (!before.get(target).equals(stopped.getSelfId())) {
+                assertEquals(before.get(target), after.get(target));
+            }
+        }
+    }
+}
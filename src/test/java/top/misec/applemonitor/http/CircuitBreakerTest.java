@@ -0,0 +1,66 @@
+package top.misec.applemonitor.http;
+
+import org.junit.jupiter.api.Test;
+import top.misec.applemonitor.config.CircuitBreakerConfig;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 熔断器测试
+ *
+ * @author moshi
+ */
+class CircuitBreakerTest {
+
+    private CircuitBreakerConfig config() {
+        CircuitBreakerConfig config = new CircuitBreakerConfig();
+        config.setWindowSize(4);
+        config.setMinimumCalls(4);
+        config.setFailureRateThreshold(50);
+        config.setSlowCallRateThreshold(75);
+        config.setSlowCallDurationMillis(100);
+        config.setOpenMillis(100);
+        config.setHalfOpenProbes(2);
+        return config;
+    }
+
+    @Test
+    void opensOnFailureRateAndRecoversAfterProbes() throws Exception {
+        CircuitBreaker breaker = new CircuitBreaker("apple:https://www.apple.com/jp", config());
+        breaker.onSuccess(10);
+        breaker.onError(10);
+        breaker.onSuccess(10);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        breaker.onError(10);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire());
+
+        Thread.sleep(150);
+        assertTrue(breaker.tryAcquire());
+        assertTrue(breaker.tryAcquire());
+        // 半开状态下探测请求数受限
+        assertFalse(breaker.tryAcquire());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+
+        breaker.onSuccess(10);
+        breaker.onSuccess(10);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.tryAcquire());
+    }
+
+    @Test
+    void opensOnSlowCallsAndReopensOnFailedProbe() throws Exception {
+        CircuitBreaker breaker = new CircuitBreaker("push:open.feishu.cn", config());
+        for (int i = 0; i < 3; i++) {
+            breaker.onSuccess(500);
+        }
+        breaker.onSuccess(10);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        Thread.sleep(150);
+        assertTrue(breaker.tryAcquire());
+        breaker.onSuccess(500);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire());
+    }
+}
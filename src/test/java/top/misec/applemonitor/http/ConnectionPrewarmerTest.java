@@ -0,0 +1,104 @@
+package top.misec.applemonitor.http;
+
+import cn.hutool.core.date.DateUtil;
+import cn.hutool.http.HttpRequest;
+import cn.hutool.http.HttpResponse;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import top.misec.applemonitor.config.EgressConfig;
+import top.misec.applemonitor.config.HttpConfig;
+import top.misec.applemonitor.config.PrewarmConfig;
+import top.misec.applemonitor.config.SessionConfig;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 连接预热器测试
+ *
+ * @author moshi
+ */
+class ConnectionPrewarmerTest {
+
+    /**
+     * 每个请求的客户端端口，端口相同说明复用了同一个连接
+     */
+    private final List<Integer> clientPorts = new CopyOnWriteArrayList<>();
+
+    private HttpServer server;
+
+    private String baseUrl;
+
+    private final EgressPool egressPool = new EgressPool(new EgressConfig());
+
+    private final EgressRoute route = egressPool.getRoutes().get(0);
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            clientPorts.add(exchange.getRemoteAddress().getPort());
+            // 请求体读完后服务端才会保留连接
+            exchange.getRequestBody().close();
+            if ("HEAD".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(200, -1);
+            } else {
+                byte[] body = "{\"ok\":true}".getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(200, body.length);
+                exchange.getResponseBody().write(body);
+            }
+            exchange.close();
+        });
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    private ConnectionPrewarmer prewarmer(String cron) {
+        return new ConnectionPrewarmer(new PrewarmConfig(), cron, baseUrl, egressPool,
+                Collections.emptyList(), new SessionManager(new SessionConfig(), new HttpConfig(), HeaderProfile.BUILT_IN),
+                new HttpConfig());
+    }
+
+    @Test
+    void warmsAheadOfIdleCyclesOnly() {
+        // 00:00:00 这一轮已来不及预热
+        long now = DateUtil.parse("2026-01-01 00:00:00").getTime() - 1000;
+        assertEquals(DateUtil.parse("2026-01-01 00:00:08").getTime() + 500, prewarmer("*/10 * * * * ?").nextWarmAt(now));
+
+        // 每2秒执行一次，连接始终处于保留时间内
+        assertTrue(prewarmer("*/2 * * * * ?").nextWarmAt(now) < 0);
+    }
+
+    @Test
+    void warmedConnectionIsReused() {
+        prewarmer("*/10 * * * * ?").warm();
+
+        HttpResponse response = route.apply(HttpRequest.get(baseUrl + "/shop/fulfillment-messages")).executeAsync();
+        assertEquals("{\"ok\":true}", Connections.readBody(response));
+
+        assertEquals(2, clientPorts.size());
+        assertEquals(clientPorts.get(0), clientPorts.get(1));
+    }
+
+    @Test
+    void preconnectUsesRouteBudget() {
+        ConnectionPrewarmer prewarmer = prewarmer("*/10 * * * * ?");
+        prewarmer.warm();
+        // 预热占用了线路的请求预算，间隔内再次预热时跳过该线路
+        assertFalse(egressPool.tryAcquire(route));
+        prewarmer.warm();
+        assertEquals(1, clientPorts.size());
+    }
+}
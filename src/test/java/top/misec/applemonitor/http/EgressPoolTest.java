@@ -0,0 +1,125 @@
+package top.misec.applemonitor.http;
+
+import cn.hutool.http.HttpRequest;
+import cn.hutool.http.HttpResponse;
+import com.sun.net.httpserver.HttpServer;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import top.misec.applemonitor.config.EgressConfig;
+import top.misec.applemonitor.config.EgressRouteConfig;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 出口线路池测试
+ *
+ * 使用本地HTTP服务模拟HTTP代理，验证请求分摊、限流退避和线路摘除
+ *
+ * @author moshi
+ */
+@Slf4j
+class EgressPoolTest {
+
+    private final List<HttpServer> servers = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        servers.forEach(server -> server.stop(0));
+    }
+
+    /**
+     * 启动一个模拟代理，所有请求返回指定状态码
+     */
+    private HttpServer startProxy(int status, AtomicInteger hits) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            hits.incrementAndGet();
+            byte[] body = "{}".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(status, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.start();
+        servers.add(server);
+        return server;
+    }
+
+    private EgressRouteConfig proxyRoute(HttpServer server, long intervalMillis) {
+        EgressRouteConfig cfg = new EgressRouteConfig();
+        cfg.setType("HTTP");
+        cfg.setHost("127.0.0.1");
+        cfg.setPort(server.getAddress().getPort());
+        cfg.setMinIntervalMillis(intervalMillis);
+        return cfg;
+    }
+
+    private void send(EgressPool pool) throws InterruptedException {
+        EgressRoute route = pool.acquire();
+        try (HttpResponse response = route.apply(HttpRequest.get("http://apple.test/shop/fulfillment-messages")).timeout(2000).execute()) {
+            pool.onResponse(route, response.getStatus());
+        }
+    }
+
+    @Test
+    void spreadsRequestsAcrossRoutes() throws Exception {
+        AtomicInteger hitsA = new AtomicInteger();
+        AtomicInteger hitsB = new AtomicInteger();
+        EgressConfig config = new EgressConfig();
+        config.setRoutes(Arrays.asList(proxyRoute(startProxy(200, hitsA), 20), proxyRoute(startProxy(200, hitsB), 20)));
+        EgressPool pool = new EgressPool(config);
+
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < 20; i++) {
+            send(pool);
+        }
+        long elapsed = System.currentTimeMillis() - start;
+
+        assertEquals(10, hitsA.get());
+        assertEquals(10, hitsB.get());
+        // 两条线路各自间隔20ms，20个请求至少需要约 9*20ms
+        assertTrue(elapsed >= 9 * 20, "elapsed " + elapsed);
+    }
+
+    @Test
+    void ejectsRejectedRoute() throws Exception {
+        AtomicInteger throttled = new AtomicInteger();
+        AtomicInteger healthy = new AtomicInteger();
+        EgressConfig config = new EgressConfig();
+        config.setMaxConsecutiveRejections(2);
+        config.setEjectMillis(60_000);
+        config.setRoutes(Arrays.asList(proxyRoute(startProxy(541, throttled), 0), proxyRoute(startProxy(200, healthy), 0)));
+        EgressPool pool = new EgressPool(config);
+
+        for (int i = 0; i < 20; i++) {
+            send(pool);
+        }
+
+        RoutePacing rejected = pool.snapshotPacing().get(0);
+        assertEquals(2, throttled.get());
+        assertEquals(18, healthy.get());
+        assertTrue(rejected.getEjectedUntil() > System.currentTimeMillis());
+        assertEquals(2, rejected.getConsecutiveRejections());
+        assertEquals(1, rejected.getEjectCount());
+    }
+
+    @Test
+    void tryAcquireRespectsBudget() {
+        EgressRouteConfig direct = new EgressRouteConfig();
+        direct.setMinIntervalMillis(60_000);
+        EgressConfig config = new EgressConfig();
+        config.setRoutes(List.of(direct));
+        EgressPool pool = new EgressPool(config);
+
+        assertNotNull(pool.tryAcquire());
+        assertNull(pool.tryAcquire());
+    }
+}
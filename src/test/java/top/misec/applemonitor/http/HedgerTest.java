@@ -0,0 +1,132 @@
+package top.misec.applemonitor.http;
+
+import org.junit.jupiter.api.Test;
+import top.misec.applemonitor.config.HedgeConfig;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 对冲请求执行器测试
+ *
+ * @author moshi
+ */
+class HedgerTest {
+
+    private static final String HOST = "https://www.apple.com.cn";
+
+    /**
+     * 指定耗时后返回结果的请求，取消时立即结束
+     */
+    private static class SleepAttempt implements Hedger.Attempt<String> {
+        private final String result;
+        private final long sleepMillis;
+        private final CountDownLatch cancelled = new CountDownLatch(1);
+
+        SleepAttempt(String result, long sleepMillis) {
+            this.result = result;
+            this.sleepMillis = sleepMillis;
+        }
+
+        @Override
+        public String call() throws Exception {
+            if (cancelled.await(sleepMillis, TimeUnit.MILLISECONDS)) {
+                throw new IllegalStateException("cancelled");
+            }
+            return result;
+        }
+
+        @Override
+        public void cancel() {
+            cancelled.countDown();
+        }
+    }
+
+    private static Hedger warmedUp(double maxHedgeRatio) throws Exception {
+        HedgeConfig config = new HedgeConfig();
+        config.setMinSamples(5);
+        config.setMinDelayMillis(50);
+        config.setMaxHedgeRatio(maxHedgeRatio);
+        Hedger hedger = new Hedger(config);
+        for (int i = 0; i < 5; i++) {
+            assertEquals("warm", hedger.call(HOST, new SleepAttempt("warm", 5), () -> fail("no hedge before p95 is known")));
+        }
+        return hedger;
+    }
+
+    @Test
+    void slowPrimaryIsHedgedAndCancelled() throws Exception {
+        Hedger hedger = warmedUp(1);
+        assertEquals(50, hedger.hedgeDelay(HOST));
+
+        SleepAttempt primary = new SleepAttempt("primary", 5_000);
+        long start = System.currentTimeMillis();
+        assertEquals("hedge", hedger.call(HOST, primary, () -> new SleepAttempt("hedge", 10)));
+        assertTrue(System.currentTimeMillis() - start < 1_000);
+        assertTrue(primary.cancelled.await(1, TimeUnit.SECONDS));
+
+        long[] stats = hedger.stats();
+        assertEquals(1, stats[1]);
+        assertEquals(1, stats[2]);
+
+        // 被取消的首个请求至少等待了对冲等待时间加对冲请求的耗时，计入后p95不再低于该值
+        assertTrue(hedger.hedgeDelay(HOST) >= 60, String.valueOf(hedger.hedgeDelay(HOST)));
+    }
+
+    @Test
+    void interruptDuringHedgeDelayCancelsPrimary() throws Exception {
+        Hedger hedger = warmedUp(1);
+        SleepAttempt primary = new SleepAttempt("primary", 5_000);
+        Thread caller = Thread.currentThread();
+        Thread interrupter = new Thread(() -> {
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                return;
+            }
+            caller.interrupt();
+        });
+        interrupter.start();
+        // 中断发生在对冲等待时间（50ms）内
+        assertThrows(InterruptedException.class, () -> hedger.call(HOST, primary, () -> fail("interrupted before hedge")));
+        assertTrue(primary.cancelled.await(1, TimeUnit.SECONDS));
+        interrupter.join();
+    }
+
+    @Test
+    void noBudgetMeansNoHedge() throws Exception {
+        Hedger hedger = warmedUp(1);
+        AtomicInteger asked = new AtomicInteger();
+        assertEquals("primary", hedger.call(HOST, new SleepAttempt("primary", 200), () -> {
+            asked.incrementAndGet();
+            return null;
+        }));
+        assertEquals(1, asked.get());
+        assertEquals(0, hedger.stats()[1]);
+    }
+
+    @Test
+    void hedgeRatioIsCapped() throws Exception {
+        // 6次请求 * 0.1 不足1次对冲
+        Hedger hedger = warmedUp(0.1);
+        assertEquals("primary", hedger.call(HOST, new SleepAttempt("primary", 200), () -> fail("hedge ratio exceeded")));
+    }
+
+    @Test
+    void failedHedgeFallsBackToPrimary() throws Exception {
+        Hedger hedger = warmedUp(1);
+        assertEquals("primary", hedger.call(HOST, new SleepAttempt("primary", 200), () -> new Hedger.Attempt<String>() {
+            @Override
+            public String call() {
+                throw new IllegalStateException("hedge failed");
+            }
+
+            @Override
+            public void cancel() {
+            }
+        }));
+    }
+}
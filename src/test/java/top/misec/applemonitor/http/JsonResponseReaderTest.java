@@ -0,0 +1,160 @@
+package top.misec.applemonitor.http;
+
+import cn.hutool.http.Header;
+import cn.hutool.http.HttpRequest;
+import cn.hutool.http.HttpResponse;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 流式读取JSON响应测试
+ *
+ * @author moshi
+ */
+class JsonResponseReaderTest {
+
+    private HttpServer server;
+
+    private String baseUrl;
+
+    private byte[] json;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        StringBuilder stores = new StringBuilder();
+        for (int i = 0; i < 50; i++) {
+            stores.append(i == 0 ? "" : ",").append("{\"storeNumber\":\"R").append(i)
+                    .append("\",\"storeName\":\"Apple 三里屯\",\"partsAvailability\":{\"MYTM3CH/A\":{\"pickupDisplay\":\"unavailable\"}}}");
+        }
+        json = ("{\"body\":{\"content\":{\"pickupMessage\":{\"stores\":[" + stores + "]}}}}").getBytes(StandardCharsets.UTF_8);
+
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            byte[] body = json;
+            String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+            if (acceptEncoding != null && acceptEncoding.contains("br")) {
+                body = brotliStored(json);
+                exchange.getResponseHeaders().add("Content-Encoding", "br");
+            } else if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+                ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+                try (GZIPOutputStream gzip = new GZIPOutputStream(buffer)) {
+                    gzip.write(json);
+                }
+                body = buffer.toByteArray();
+                exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+            }
+            exchange.getResponseHeaders().add("Content-Type", "application/json;charset=UTF-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort() + "/shop/fulfillment-messages";
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    /**
+     * 以不压缩的元数据块生成Brotli流（RFC 7932 第9.2节），JDK和测试依赖中没有Brotli编码器
+     */
+    private static byte[] brotliStored(byte[] data) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int[] bits = {0, 0};
+        // WBITS=16
+        writeBits(out, bits, 0, 1);
+        for (int offset = 0; offset < data.length; offset += 65536) {
+            int length = Math.min(65536, data.length - offset);
+            // ISLAST=0，MNIBBLES=4，MLEN-1，ISUNCOMPRESSED=1
+            writeBits(out, bits, 0, 1);
+            writeBits(out, bits, 0, 2);
+            writeBits(out, bits, length - 1, 16);
+            writeBits(out, bits, 1, 1);
+            flushBits(out, bits);
+            out.write(data, offset, length);
+        }
+        // ISLAST=1，ISLASTEMPTY=1
+        writeBits(out, bits, 3, 2);
+        flushBits(out, bits);
+        return out.toByteArray();
+    }
+
+    /**
+     * 按低位在前写入位，bits[0]为待写入的位，bits[1]为位数
+     */
+    private static void writeBits(ByteArrayOutputStream out, int[] bits, int value, int count) {
+        for (int i = 0; i < count; i++) {
+            bits[0] |= ((value >>> i) & 1) << bits[1]++;
+            if (bits[1] == 8) {
+                flushBits(out, bits);
+            }
+        }
+    }
+
+    private static void flushBits(ByteArrayOutputStream out, int[] bits) {
+        if (bits[1] > 0) {
+            out.write(bits[0]);
+            bits[0] = 0;
+            bits[1] = 0;
+        }
+    }
+
+    private JsonResponseReader.ParsedBody fetch(String acceptEncoding, TransferStats stats) {
+        try (HttpResponse response = HttpRequest.get(baseUrl)
+                .header(Header.ACCEPT_ENCODING, acceptEncoding, true)
+                .executeAsync()) {
+            return JsonResponseReader.read(response, 0, stats);
+        }
+    }
+
+    @Test
+    void decompressesStreamIntoParser() {
+        TransferStats stats = new TransferStats();
+        JsonResponseReader.ParsedBody body = fetch("gzip, deflate", stats);
+
+        assertEquals(50, body.json.getJSONObject("body").getJSONObject("content").getJSONObject("pickupMessage")
+                .getJSONArray("stores").size());
+        assertEquals(json.length, body.decodedBytes);
+
+        Map<String, Object> snapshot = stats.snapshot();
+        assertEquals(1L, snapshot.get("compressedResponses"));
+        assertEquals((long) json.length, snapshot.get("decodedBytes"));
+        assertTrue((long) snapshot.get("wireBytes") < json.length / 5, snapshot.toString());
+        assertTrue((double) snapshot.get("savedRatio") > 0.8, snapshot.toString());
+    }
+
+    @Test
+    void decodesBrotliResponses() {
+        TransferStats stats = new TransferStats();
+        JsonResponseReader.ParsedBody body = fetch(JsonResponseReader.ACCEPT_ENCODING, stats);
+
+        assertEquals(50, body.json.getJSONObject("body").getJSONObject("content").getJSONObject("pickupMessage")
+                .getJSONArray("stores").size());
+        assertEquals(json.length, body.decodedBytes);
+        assertEquals(1L, stats.snapshot().get("compressedResponses"));
+    }
+
+    @Test
+    void countsIdentityResponses() {
+        TransferStats stats = new TransferStats();
+        fetch("identity", stats);
+        Map<String, Object> snapshot = stats.snapshot();
+        assertEquals(0L, snapshot.get("compressedResponses"));
+        assertEquals((long) json.length, snapshot.get("wireBytes"));
+        assertEquals(0.0, snapshot.get("savedRatio"));
+    }
+}
@@ -0,0 +1,157 @@
+package top.misec.applemonitor.http;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import top.misec.applemonitor.config.EgressRouteConfig;
+import top.misec.applemonitor.config.HttpConfig;
+import top.misec.applemonitor.config.SessionConfig;
+
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 会话与请求头管理器测试
+ *
+ * @author moshi
+ */
+class SessionManagerTest {
+
+    private final AtomicInteger warmUps = new AtomicInteger();
+
+    /**
+     * 预热页面以外的请求携带的Cookie，没有Cookie请求头时为null
+     */
+    private final List<String> cookies = new CopyOnWriteArrayList<>();
+
+    /**
+     * 预热请求携带的Cookie，没有Cookie请求头时为null
+     */
+    private final List<String> warmUpCookies = new CopyOnWriteArrayList<>();
+
+    private HttpServer server;
+
+    private String baseUrl;
+
+    private final EgressRoute route = EgressRoute.of(new EgressRouteConfig(), 0);
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/shop/buy-iphone", exchange -> {
+            warmUps.incrementAndGet();
+            warmUpCookies.add(String.valueOf(exchange.getRequestHeaders().get("Cookie")));
+            exchange.getResponseHeaders().add("Set-Cookie", "dssid2=abc; Path=/; Secure");
+            exchange.getResponseHeaders().add("Set-Cookie", "as_sfa=Mnx1c3x1c3x; Path=/");
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+        server.createContext("/", exchange -> {
+            cookies.add(String.valueOf(exchange.getRequestHeaders().get("Cookie")));
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    private SessionManager manager() {
+        return new SessionManager(new SessionConfig(), new HttpConfig(), HeaderProfile.BUILT_IN);
+    }
+
+    @Test
+    void warmUpCollectsCookies() {
+        SessionManager manager = manager();
+        AppleSession session = manager.session(route, baseUrl);
+        assertFalse(session.isWarmedUp());
+        assertEquals(200, manager.warmUp(session, route, baseUrl));
+        assertTrue(session.isWarmedUp());
+        assertSame(session, manager.session(route, baseUrl));
+
+        Map<String, List<String>> headers = manager.fetchHeaderTemplate(session, baseUrl, "MYTM3CH/A", "iPhone 16 Pro Max 256GB 原色钛金属", null);
+        // 模板不含Cookie，同一购买页复用同一份模板
+        assertFalse(headers.containsKey("Cookie"));
+        assertSame(headers, manager.fetchHeaderTemplate(session, baseUrl, "MYTM3CH/A", "iPhone 16 Pro Max 256GB 原色钛金属", null));
+        String cookie = session.cookieHeader();
+        assertTrue(cookie.contains("dssid2=abc") && cookie.contains("as_sfa=Mnx1c3x1c3x"), cookie);
+        assertEquals(baseUrl + "/shop/buy-iphone/iphone-16-pro/MYTM3CH/A", headers.get("Referer").get(0));
+        assertEquals(session.getProfile().getUserAgent(), headers.get("User-Agent").get(0));
+        assertFalse(session.getProfile().getUserAgent().contains("Hutool"));
+
+        // Max-Age=0 删除Cookie
+        session.mergeCookies(Arrays.asList("dssid2=; Max-Age=0"));
+        assertEquals("as_sfa=Mnx1c3x1c3x", session.cookieHeader());
+    }
+
+    @Test
+    void requestsCarrySessionCookies() {
+        SessionManager manager = manager();
+        AppleSession session = manager.session(route, baseUrl);
+        manager.warmUp(session, route, baseUrl);
+        assertEquals(200, manager.preconnect(route, baseUrl));
+        assertEquals(1, cookies.size());
+        assertTrue(cookies.get(0).contains("dssid2=abc") && cookies.get(0).contains("as_sfa=Mnx1c3x1c3x"), cookies.get(0));
+    }
+
+    @Test
+    void emptySessionSendsNoCookieHeader() {
+        SessionManager manager = manager();
+        manager.warmUp(manager.session(route, baseUrl), route, baseUrl);
+        assertEquals(Collections.singletonList("null"), warmUpCookies);
+
+        // 其他线路的新会话不携带已预热会话的Cookie，也不发送空的Cookie请求头
+        EgressRouteConfig other = new EgressRouteConfig();
+        other.setName("other");
+        assertEquals(200, manager.preconnect(EgressRoute.of(other, 1), baseUrl));
+        assertEquals(Collections.singletonList("null"), cookies);
+    }
+
+    @Test
+    void rejectionsRotateSession() {
+        SessionManager manager = manager();
+        AppleSession first = manager.session(route, baseUrl);
+        manager.onResponse(first, 541, null);
+        assertSame(first, manager.session(route, baseUrl));
+        manager.onResponse(first, 200, null);
+        manager.onResponse(first, 541, null);
+        // 成功响应重置计数，需连续两次被拒绝才丢弃
+        assertSame(first, manager.session(route, baseUrl));
+        manager.onResponse(first, 403, null);
+
+        AppleSession second = manager.session(route, baseUrl);
+        assertNotSame(first, second);
+        assertNotEquals(first.getProfile(), second.getProfile());
+        assertFalse(second.isWarmedUp());
+    }
+
+    @Test
+    void refererFollowsProductFamily() {
+        assertEquals("/shop/buy-iphone/iphone-16-pro", SessionManager.buyPagePath("iPhone 16 Pro Max 256GB 原色钛金属", null, "/shop/buy-iphone"));
+        assertEquals("/shop/buy-iphone/iphone-17", SessionManager.buyPagePath("iPhone 17 256GB 薰衣草紫色", null, "/shop/buy-iphone"));
+        assertEquals("/shop/buy-iphone/iphone-16e", SessionManager.buyPagePath("iPhone 16e 128GB 白色", null, "/shop/buy-iphone"));
+        assertEquals("/shop/buy-iphone/iphone-air", SessionManager.buyPagePath("iPhone Air 256GB 天蓝色", null, "/shop/buy-iphone"));
+        assertEquals("/shop/buy-ipad/ipad-pro", SessionManager.buyPagePath("iPad Pro 11 英寸", null, "/shop/buy-iphone"));
+        assertEquals("/shop/buy-iphone", SessionManager.buyPagePath(null, null, "/shop/buy-iphone"));
+        assertEquals("/shop/buy-mac/macbook-pro", SessionManager.buyPagePath(null, "macbook-pro", "/shop/buy-iphone"));
+    }
+
+    @Test
+    void acceptLanguageFollowsCountry() {
+        assertTrue(SessionManager.acceptLanguage("https://www.apple.com.cn").startsWith("zh-CN"));
+        assertTrue(SessionManager.acceptLanguage("https://www.apple.com/jp").startsWith("ja-JP"));
+        assertTrue(SessionManager.acceptLanguage("https://www.apple.com").startsWith("en-US"));
+    }
+}
@@ -0,0 +1,78 @@
+package top.misec.applemonitor.http;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 跨进程共享请求预算测试
+ *
+ * 两个实例映射同一个文件，模拟同一主机上的两个监控进程
+ *
+ * @author moshi
+ */
+class SharedRateBudgetTest {
+
+    @TempDir
+    File dir;
+
+    @Test
+    void instancesMappingSameFileShareOneBucket() {
+        File file = new File(dir, "budget.bin");
+        SharedRateBudget first = new SharedRateBudget(file, 40, 1);
+        SharedRateBudget second = new SharedRateBudget(file, 40, 1);
+        long now = 1_000_000;
+
+        assertEquals(now, first.reserve("www.apple.com.cn|direct", now));
+        assertEquals(now + 1500, second.reserve("www.apple.com.cn|direct", now));
+        assertEquals(now + 3000, first.reserve("www.apple.com.cn|direct", now));
+
+        // 不同出口互不影响
+        assertEquals(now, second.reserve("www.apple.com.cn|http-127.0.0.1:8118", now));
+        // 预算不足时不占用
+        assertFalse(second.tryAcquire("www.apple.com.cn|direct", now + 4000));
+        assertTrue(second.tryAcquire("www.apple.com.cn|direct", now + 4500));
+    }
+
+    @Test
+    void burstAllowsConsecutiveRequests() {
+        SharedRateBudget budget = new SharedRateBudget(new File(dir, "budget.bin"), 60, 3);
+        long now = 1_000_000;
+
+        assertTrue(budget.tryAcquire("host|direct", now));
+        assertTrue(budget.tryAcquire("host|direct", now));
+        assertTrue(budget.tryAcquire("host|direct", now));
+        assertFalse(budget.tryAcquire("host|direct", now));
+        assertEquals(now + 1000, budget.reserve("host|direct", now));
+    }
+
+    @Test
+    void concurrentReservationsNeverOverlap() throws Exception {
+        File file = new File(dir, "budget.bin");
+        SharedRateBudget[] budgets = {new SharedRateBudget(file, 60, 1), new SharedRateBudget(file, 60, 1)};
+        Set<Long> starts = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        for (int t = 0; t < 4; t++) {
+            SharedRateBudget budget = budgets[t % 2];
+            executor.execute(() -> {
+                for (int i = 0; i < 100; i++) {
+                    starts.add(budget.reserve("host|direct", 0));
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        // 400次预订依次排在 0、1000……399000
+        assertEquals(400, starts.size());
+        assertEquals(399_000L, starts.stream().mapToLong(Long::longValue).max().getAsLong());
+    }
+}
@@ -0,0 +1,39 @@
+package top.misec.applemonitor.job;
+
+import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 取货和配送信息解析测试
+ *
+ * @author moshi
+ */
+class FulfillmentParserTest {
+
+    @Test
+    void parsesPickupQuoteWithCompactFallback() {
+        JSONObject regular = JSON.parseObject("{\"messageTypes\":{\"regular\":{\"storePickupQuote\":\"今天 在 Apple 益田假日广场 取货\"},"
+                + "\"compact\":{\"storePickupQuote\":\"今天\"}}}");
+        JSONObject compactOnly = JSON.parseObject("{\"messageTypes\":{\"compact\":{\"storePickupQuote\":\" 明天 \"}}}");
+
+        assertEquals("今天 在 Apple 益田假日广场 取货", FulfillmentParser.pickupQuote(regular));
+        assertEquals("明天", FulfillmentParser.pickupQuote(compactOnly));
+        assertNull(FulfillmentParser.pickupQuote(new JSONObject()));
+        assertNull(FulfillmentParser.pickupQuote(null));
+    }
+
+    @Test
+    void parsesDeliveryQuote() {
+        JSONObject pickupMessage = JSON.parseObject("{\"stores\":[],\"deliveryMessage\":{"
+                + "\"MYLR3CH/A\":{\"regular\":{\"deliveryOptions\":[{\"displayName\":\"标准配送\",\"date\":\"10月25日 - 10月28日\"}]}},"
+                + "\"MYLT3CH/A\":{\"compact\":{\"deliveryOptionMessages\":[{\"displayName\":\"目前无法送货\"}]}}}}");
+
+        assertEquals("10月25日 - 10月28日", FulfillmentParser.deliveryQuote(pickupMessage, "MYLR3CH/A"));
+        assertEquals("目前无法送货", FulfillmentParser.deliveryQuote(pickupMessage, "MYLT3CH/A"));
+        assertNull(FulfillmentParser.deliveryQuote(pickupMessage, "MYLW3CH/A"));
+        assertNull(FulfillmentParser.deliveryQuote(new JSONObject(), "MYLR3CH/A"));
+    }
+}
@@ -0,0 +1,54 @@
+package top.misec.applemonitor.job;
+
+import cn.hutool.core.util.StrUtil;
+import com.alibaba.fastjson2.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 通知消息渲染测试
+ *
+ * @author moshi
+ */
+class MessageLocaleTest {
+
+    @Test
+    void rendersSameTextAsFormat() {
+        JSONObject retailStore = new JSONObject().fluentPut("distanceWithUnit", "2.1 公里")
+                .fluentPut("address", new JSONObject().fluentPut("twoLineAddress", "福华三路\n星河COCO Park").fluentPut("daytimePhone", ""));
+
+        assertEquals(StrUtil.format("门店:{},型号:{},状态:{}", "益田假日广场", "iPhone 16 Pro", "暂无供应"),
+                MessageLocale.ZH.render("益田假日广场", "iPhone 16 Pro", "暂无供应", null, "南山区", null, null));
+        assertEquals("门店:益田假日广场,型号:iPhone 16 Pro,状态:今天可取货\n取货地址:福华三路 星河COCO Park,电话:暂无联系电话,距离南山区:2.1 公里",
+                MessageLocale.ZH.render("益田假日广场", "iPhone 16 Pro", "今天可取货", retailStore, "南山区", "今天可取货", null));
+    }
+
+    @Test
+    void appendsPickupWindowAndDelivery() {
+        JSONObject retailStore = new JSONObject().fluentPut("distanceWithUnit", "2.1 公里")
+                .fluentPut("address", new JSONObject().fluentPut("twoLineAddress", "福华三路").fluentPut("daytimePhone", "400-666-8800"));
+
+        assertEquals("门店:益田假日广场,型号:iPhone 16 Pro,状态:今天可取货\n取货地址:福华三路,电话:400-666-8800,距离南山区:2.1 公里"
+                        + "\n取货时间:今天 在 Apple 益田假日广场 取货\n配送:10月25日",
+                MessageLocale.ZH.render("益田假日广场", "iPhone 16 Pro", "今天可取货", retailStore, "南山区",
+                        "今天 在 Apple 益田假日广场 取货", "10月25日"));
+        assertEquals("Model:iPhone 16 Pro,Delivery estimate changed:Oct 25", MessageLocale.EN.renderDeliveryChange("iPhone 16 Pro", "Oct 25"));
+    }
+
+    @Test
+    void selectsLocale() {
+        assertEquals(MessageLocale.ZH, MessageLocale.of(null, "JP"));
+        assertEquals(MessageLocale.JA, MessageLocale.of("auto", "JP"));
+        assertEquals(MessageLocale.ZH, MessageLocale.of("auto", "CN-HK"));
+        assertEquals(MessageLocale.EN, MessageLocale.of("auto", "US"));
+        assertEquals(MessageLocale.KO, MessageLocale.of("ko", "CN"));
+    }
+
+    @Test
+    void compiledTemplateFillsPlaceholders() {
+        StringBuilder out = new StringBuilder();
+        MessageTemplate.compile("{}-{}!").appendTo(out, "a", "b");
+        assertEquals("a-b!", out.toString());
+    }
+}
@@ -0,0 +1,34 @@
+package top.misec.applemonitor.job;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 预编译请求和门店白名单测试
+ *
+ * @author moshi
+ */
+class RequestPlanTest {
+
+    @Test
+    void buildsEncodedUrlOnce() {
+        RequestPlan plan = new RequestPlan("https://www.apple.com.cn", Arrays.asList("MYLR3CH/A", "MYLW3CH/A"), null, "广东 深圳 南山区");
+        assertEquals("https://www.apple.com.cn/shop/fulfillment-messages?pl=true&mts.0=regular&mts.1=compact&parts.0=MYLR3CH/A"
+                + "&parts.1=MYLW3CH/A&location=%E5%B9%BF%E4%B8%9C%20%E6%B7%B1%E5%9C%B3%20%E5%8D%97%E5%B1%B1%E5%8C%BA", plan.getUrl());
+        assertEquals("MYLR3CH/A,MYLW3CH/A", plan.getPartsLabel());
+        assertNotEquals(RequestPlan.key(plan.getParts(), null, "南山区"), RequestPlan.key(plan.getParts(), null, "福田区"));
+    }
+
+    @Test
+    void storeFilterMatchesBothDirections() {
+        StoreFilter filter = StoreFilter.of(Arrays.asList("益田假日", "深圳万象城店"));
+        assertTrue(filter.matches("益田假日广场"));
+        assertTrue(filter.matches("深圳万象城"));
+        assertFalse(filter.matches("珠江新城"));
+        assertTrue(StoreFilter.of(Collections.emptyList()).matches("珠江新城"));
+    }
+}
@@ -0,0 +1,67 @@
+package top.misec.applemonitor.planner;
+
+import org.junit.jupiter.api.Test;
+import top.misec.applemonitor.config.DeviceItem;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 截止时间驱动的监控调度器测试
+ *
+ * @author moshi
+ */
+class PollSchedulerTest {
+
+    private static DeviceItem item(String code, Integer priority, Integer freshnessSeconds) {
+        DeviceItem item = new DeviceItem();
+        item.setDeviceCode(code);
+        item.setPriority(priority);
+        item.setFreshnessSeconds(freshnessSeconds);
+        return item;
+    }
+
+    @Test
+    void highPriorityFirstAndOverdueTargetsCutInLine() {
+        PollScheduler scheduler = new PollScheduler();
+        DeviceItem low1 = item("LOW1", null, null);
+        DeviceItem high = item("HIGH", 5, 1);
+        DeviceItem low2 = item("LOW2", null, null);
+        DeviceItem low3 = item("LOW3", null, null);
+
+        PollScheduler.Cycle cycle = scheduler.cycle("CN", Arrays.asList(low1, high, low2, low3));
+        // 每次查询耗时1.5秒，高优先级目标的新鲜度目标为1秒，每次到期都插队到剩余目标之前
+        List<DeviceItem> order = new ArrayList<>();
+        long now = 10_000;
+        for (DeviceItem next = cycle.next(now); next != null; next = cycle.next(now)) {
+            order.add(next);
+            now += 1500;
+            cycle.done(next, now);
+        }
+        assertEquals(Arrays.asList(high, low1, high, low2, high, low3), order);
+
+        PollTarget target = scheduler.snapshot().get(0);
+        assertEquals("HIGH", target.getPart());
+        assertEquals(3, target.getChecks());
+        assertEquals(2, target.getMisses());
+        assertEquals(2000, target.getMaxLagMillis());
+    }
+
+    @Test
+    void leastRecentlyCheckedFirstWithinPriority() {
+        PollScheduler scheduler = new PollScheduler();
+        DeviceItem a = item("A", null, null);
+        DeviceItem b = item("B", null, null);
+
+        PollScheduler.Cycle first = scheduler.cycle("CN", Arrays.asList(a, b));
+        first.done(first.next(10000), 10000);
+        first.done(first.next(10000), 11000);
+
+        // 上一轮先查询A，本轮也按上次查询时间从早到晚排序
+        PollScheduler.Cycle second = scheduler.cycle("CN", Arrays.asList(b, a));
+        assertSame(a, second.next(12000));
+    }
+}
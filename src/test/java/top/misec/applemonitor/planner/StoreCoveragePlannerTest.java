@@ -0,0 +1,98 @@
+package top.misec.applemonitor.planner;
+
+import com.alibaba.fastjson2.JSONArray;
+import com.alibaba.fastjson2.JSONObject;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 门店覆盖规划器测试
+ *
+ * @author moshi
+ */
+class StoreCoveragePlannerTest {
+
+    private static final List<String> LOCATIONS = Arrays.asList("北京 北京 朝阳区", "北京 北京 海淀区", "北京 北京 西城区", "天津 天津 和平区");
+
+    private static JSONObject store(String storeNumber, String storeName, String distance) {
+        JSONObject retailStore = new JSONObject();
+        retailStore.put("distanceWithUnit", distance);
+        JSONObject store = new JSONObject();
+        store.put("storeNumber", storeNumber);
+        store.put("storeName", storeName);
+        store.put("retailStore", retailStore);
+        return store;
+    }
+
+    private static JSONArray stores(JSONObject... stores) {
+        return new JSONArray(Arrays.asList(stores));
+    }
+
+    /**
+     * 朝阳: 三里屯、朝阳大悦城、王府井
+     * 海淀: 王府井、西单
+     * 西城: 西单、三里屯
+     * 天津: 天津恒隆、天津大悦城
+     */
+    private void learnAll(StoreCoveragePlanner planner) {
+        planner.learn("CN", LOCATIONS.get(0), stores(store("R448", "三里屯", "2 公里"), store("R645", "朝阳大悦城", "5 公里"), store("R388", "王府井", "9 公里")));
+        planner.learn("CN", LOCATIONS.get(1), stores(store("R388", "王府井", "11 公里"), store("R320", "西单大悦城", "8 公里")));
+        planner.learn("CN", LOCATIONS.get(2), stores(store("R320", "西单大悦城", "1 公里"), store("R448", "三里屯", "7 公里")));
+        planner.learn("CN", LOCATIONS.get(3), stores(store("R637", "天津恒隆广场", "1 公里"), store("R579", "天津大悦城", "4 公里")));
+    }
+
+    @Test
+    void queriesEveryUnlearnedLocationFirst() {
+        StoreCoveragePlanner planner = new StoreCoveragePlanner(LOCATIONS, 60_000, null);
+        assertEquals(LOCATIONS, planner.plan("CN", Collections.emptyList()));
+    }
+
+    @Test
+    void choosesMinimalCover() {
+        StoreCoveragePlanner planner = new StoreCoveragePlanner(LOCATIONS, 60_000, null);
+        learnAll(planner);
+
+        assertEquals(Collections.singletonList(LOCATIONS.get(0)), planner.plan("CN", Arrays.asList("三里屯", "王府井")));
+        // 西单只能由海淀或西城覆盖，西城距离更近
+        assertEquals(Arrays.asList(LOCATIONS.get(0), LOCATIONS.get(2)), planner.plan("CN", Arrays.asList("朝阳大悦城", "西单")));
+        assertEquals(Arrays.asList(LOCATIONS.get(0), LOCATIONS.get(2), LOCATIONS.get(3)), planner.plan("CN", Collections.emptyList()));
+        // 白名单门店从未出现时仍查询主地区
+        assertEquals(Collections.singletonList(LOCATIONS.get(0)), planner.plan("CN", Collections.singletonList("上海")));
+    }
+
+    @Test
+    void staleLocationsAreRelearned() throws Exception {
+        StoreCoveragePlanner planner = new StoreCoveragePlanner(LOCATIONS, 50, null);
+        learnAll(planner);
+        Thread.sleep(100);
+        assertEquals(LOCATIONS, planner.plan("CN", Collections.singletonList("三里屯")));
+    }
+
+    @Test
+    void mergeKeepsNearestDuplicate() {
+        Map<String, StoreHit> merged = new LinkedHashMap<>();
+        StoreCoveragePlanner.merge(merged, "朝阳", stores(store("R448", "三里屯", "2 公里"), store("R388", "王府井", "9 公里")));
+        StoreCoveragePlanner.merge(merged, "海淀", stores(store("R388", "王府井", "3.5 km"), store("R320", "西单大悦城", "8 km")));
+
+        assertEquals(3, merged.size());
+        assertEquals("海淀", merged.get("R388").getLocation());
+        assertEquals(3.5, merged.get("R388").getDistance());
+        assertEquals("朝阳", merged.get("R448").getLocation());
+    }
+
+    @Test
+    void persistsLearnedCoverage(@TempDir Path dir) {
+        File cache = dir.resolve("store-coverage.json").toFile();
+        learnAll(new StoreCoveragePlanner(LOCATIONS, 60_000, cache));
+        assertTrue(cache.isFile());
+
+        StoreCoveragePlanner restored = new StoreCoveragePlanner(LOCATIONS, 60_000, cache);
+        assertEquals(Collections.singletonList(LOCATIONS.get(3)), restored.plan("CN", Collections.singletonList("天津")));
+    }
+}
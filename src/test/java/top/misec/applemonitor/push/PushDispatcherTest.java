@@ -0,0 +1,210 @@
+package top.misec.applemonitor.push;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.io.IoUtil;
+import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.JSONObject;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import top.misec.applemonitor.config.PushConfig;
+import top.misec.applemonitor.push.impl.FeiShuChannel;
+import top.misec.applemonitor.push.impl.LocalSinkChannel;
+import top.misec.applemonitor.push.impl.WebhookChannel;
+
+import java.io.File;
+import java.net.InetSocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 推送分发器测试
+ *
+ * @author moshi
+ */
+class PushDispatcherTest {
+
+    @TempDir
+    Path dir;
+
+    private static List<PushMessage> messages(int count) {
+        List<PushMessage> messages = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            messages.add(new PushMessage("CN", "P1", "R" + i, true, "门店" + i + "有货", 1000L + i));
+        }
+        return messages;
+    }
+
+    @Test
+    void loadsBuiltInChannels() {
+        Set<String> names = PushDispatcher.getInstance().getChannels().stream().map(PushChannel::name).collect(Collectors.toSet());
+        assertEquals(new HashSet<>(Arrays.asList("Bark", "飞书", "Webhook", "Local")), names);
+
+        PushConfig config = new PushConfig();
+        config.setWebhookUrl("http://127.0.0.1/hook");
+        config.setLocalSinkPath("alerts.jsonl");
+        assertEquals(2, PushDispatcher.getInstance().resolve(config).size());
+    }
+
+    @Test
+    void splitsBatchesByChannelLimit() {
+        List<Integer> batches = new CopyOnWriteArrayList<>();
+        PushChannel channel = new PushChannel() {
+            @Override
+            public String name() {
+                return "test";
+            }
+
+            @Override
+            public boolean supports(PushConfig config) {
+                return "test".equals(config.getChannel());
+            }
+
+            @Override
+            public String target(PushConfig config) {
+                return "test://batch";
+            }
+
+            @Override
+            public int maxBatchSize() {
+                return 2;
+            }
+
+            @Override
+            public boolean send(PushConfig config, List<PushMessage> messages) {
+                batches.add(messages.size());
+                return true;
+            }
+        };
+        PushConfig config = new PushConfig();
+        config.setChannel("test");
+        new PushDispatcher(Collections.singletonList(channel)).dispatch(Collections.singletonList(config), messages(5));
+        assertEquals(Arrays.asList(2, 2, 1), batches);
+    }
+
+    @Test
+    void resolvesPluginByChannelName() {
+        List<String> tokens = new CopyOnWriteArrayList<>();
+        PushChannel plugin = new PushChannel() {
+            @Override
+            public String name() {
+                return "plugin";
+            }
+
+            @Override
+            public boolean supports(PushConfig config) {
+                return false;
+            }
+
+            @Override
+            public String target(PushConfig config) {
+                return "test://plugin";
+            }
+
+            @Override
+            public boolean send(PushConfig config, List<PushMessage> messages) {
+                tokens.add(config.getOptions().get("token"));
+                return true;
+            }
+        };
+        PushDispatcher dispatcher = new PushDispatcher(Arrays.asList(plugin, new WebhookChannel()));
+        PushConfig config = new PushConfig();
+        config.setChannel("plugin");
+        config.setOptions(Collections.singletonMap("token", "t1"));
+        assertEquals(Collections.singletonList(plugin), dispatcher.resolve(config));
+
+        dispatcher.dispatch(Collections.singletonList(config), messages(1));
+        assertEquals(Collections.singletonList("t1"), tokens);
+
+        config.setChannel("other");
+        assertTrue(dispatcher.resolve(config).isEmpty());
+    }
+
+    @Test
+    void webhookSendsOneRequestPerBatch() throws Exception {
+        List<String> bodies = new CopyOnWriteArrayList<>();
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/hook", exchange -> {
+            bodies.add(IoUtil.read(exchange.getRequestBody(), StandardCharsets.UTF_8));
+            exchange.sendResponseHeaders(204, -1);
+            exchange.close();
+        });
+        server.start();
+        try {
+            PushConfig config = new PushConfig();
+            config.setWebhookUrl("http://127.0.0.1:" + server.getAddress().getPort() + "/hook");
+            new PushDispatcher(Collections.singletonList(new WebhookChannel())).dispatch(Collections.singletonList(config), messages(3));
+        } finally {
+            server.stop(0);
+        }
+        assertEquals(1, bodies.size());
+        JSONObject body = JSON.parseObject(bodies.get(0));
+        assertEquals(3, body.getJSONArray("events").size());
+        assertEquals("R2", body.getJSONArray("events").getJSONObject(2).getString("storeNumber"));
+    }
+
+    @Test
+    void feishuRequiresZeroCode() throws Exception {
+        Deque<String> responses = new ArrayDeque<>(Arrays.asList(
+                "{\"code\":9499,\"msg\":\"Too Many Request\",\"data\":{}}",
+                "{\"code\":19021,\"msg\":\"sign match fail or timestamp is not within one hour from current time\"}",
+                "{\"StatusCode\":0,\"StatusMessage\":\"success\",\"code\":0,\"data\":{},\"msg\":\"success\"}"));
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/hook", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            // 飞书对限流和签名错误同样返回HTTP 200
+            byte[] body = responses.poll().getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.start();
+        try {
+            PushConfig config = new PushConfig();
+            config.setFeishuBotWebhooks("http://127.0.0.1:" + server.getAddress().getPort() + "/hook");
+            config.setFeishuBotSecret("secret");
+            FeiShuChannel channel = new FeiShuChannel();
+            assertFalse(channel.send(config, messages(1)));
+            assertFalse(channel.send(config, messages(2)));
+            assertTrue(channel.send(config, messages(1)));
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    void localSinkWritesJsonLinesToFileAndSocket() throws Exception {
+        File file = dir.resolve("alerts.jsonl").toFile();
+        PushConfig config = new PushConfig();
+        config.setLocalSinkPath(file.getPath());
+        assertTrue(new LocalSinkChannel().send(config, messages(2)));
+        assertEquals(2, FileUtil.readUtf8Lines(file).size());
+
+        Path socket = dir.resolve("sink.sock");
+        try (ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            server.bind(UnixDomainSocketAddress.of(socket));
+            CompletableFuture<String> received = CompletableFuture.supplyAsync(() -> {
+                try (SocketChannel client = server.accept()) {
+                    return IoUtil.read(Channels.newInputStream(client), StandardCharsets.UTF_8);
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            config.setLocalSinkPath("unix:" + socket);
+            assertTrue(new LocalSinkChannel().send(config, messages(1)));
+            assertTrue(received.get(5, TimeUnit.SECONDS).contains("\"storeNumber\":\"R0\""));
+        }
+    }
+}
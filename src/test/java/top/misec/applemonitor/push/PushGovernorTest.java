@@ -0,0 +1,144 @@
+package top.misec.applemonitor.push;
+
+import org.junit.jupiter.api.Test;
+import top.misec.applemonitor.config.PushConfig;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 推送限流器测试
+ *
+ * @author moshi
+ */
+class PushGovernorTest {
+
+    private final AtomicLong clock = new AtomicLong(1_000_000);
+
+    private final List<List<PushMessage>> sent = new CopyOnWriteArrayList<>();
+
+    private final AtomicBoolean reject = new AtomicBoolean();
+
+    private final PushChannel channel = new PushChannel() {
+        @Override
+        public String name() {
+            return "test";
+        }
+
+        @Override
+        public boolean supports(PushConfig config) {
+            return true;
+        }
+
+        @Override
+        public String target(PushConfig config) {
+            return "test://quota";
+        }
+
+        @Override
+        public int maxBatchSize() {
+            return 10;
+        }
+
+        @Override
+        public boolean send(PushConfig config, List<PushMessage> messages) {
+            return true;
+        }
+    };
+
+    private final PushGovernor governor = new PushGovernor((channel, config, messages) -> {
+        if (reject.get()) {
+            return false;
+        }
+        sent.add(messages);
+        return true;
+    }, clock::get);
+
+    private static PushMessage message(String store, boolean available, long createdAt) {
+        return new PushMessage("CN", "P1", store, available, store + (available ? "有货" : "无货"), createdAt);
+    }
+
+    private void submit(PushMessage... messages) {
+        // 每分钟6次，即每10秒一个令牌，不允许突发
+        governor.submit(channel, new PushConfig(), 6, Arrays.asList(messages));
+    }
+
+    @Test
+    void holdsAndMergesOverQuotaMessages() {
+        submit(message("R1", true, 1));
+        assertEquals(1, sent.size());
+
+        // 令牌用完后的通知排队，同一门店合并为最新的一条
+        submit(message("R2", false, 2));
+        submit(message("R3", true, 3));
+        submit(message("R3", true, 4));
+        assertEquals(1, sent.size());
+        assertEquals(2, governor.pendingCount());
+
+        // 补充一个令牌后两条通知合并为一次调用，到货通知在前
+        clock.addAndGet(10_000);
+        submit();
+        assertEquals(2, sent.size());
+        assertEquals(Arrays.asList("R3", "R2"), sent.get(1).stream().map(PushMessage::getStoreNumber).collect(Collectors.toList()));
+        assertEquals(4, sent.get(1).get(0).getCreatedAt());
+        assertEquals(0, governor.pendingCount());
+    }
+
+    @Test
+    void neverExceedsQuota() {
+        for (int second = 0; second < 60; second++) {
+            submit(message("R" + second, true, second));
+            clock.addAndGet(1000);
+        }
+        // 一分钟内最多调用6次（初始令牌 + 每10秒补充一个）
+        assertTrue(sent.size() <= 7, String.valueOf(sent.size()));
+        assertEquals(60, sent.stream().mapToInt(List::size).sum() + governor.pendingCount());
+    }
+
+    @Test
+    void deliversOutsideTheQueueLock() throws Exception {
+        CountDownLatch delivering = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        PushGovernor slow = new PushGovernor((channel, config, messages) -> {
+            delivering.countDown();
+            try {
+                return release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }, clock::get);
+        CompletableFuture<Void> first = CompletableFuture.runAsync(
+                () -> slow.submit(channel, new PushConfig(), 6, Collections.singletonList(message("R1", true, 1))));
+        assertTrue(delivering.await(5, TimeUnit.SECONDS));
+
+        // 推送进行中，同一目标的其他提交和查询不等待推送结束
+        CompletableFuture.runAsync(() -> slow.submit(channel, new PushConfig(), 6, Collections.singletonList(message("R2", true, 2))))
+                .get(1, TimeUnit.SECONDS);
+        assertEquals(1, CompletableFuture.supplyAsync(slow::pendingCount).get(1, TimeUnit.SECONDS));
+
+        release.countDown();
+        first.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void rejectedMessagesAreRetried() {
+        reject.set(true);
+        submit(message("R1", true, 1));
+        assertEquals(1, governor.pendingCount());
+
+        reject.set(false);
+        clock.addAndGet(10_000);
+        submit();
+        assertEquals(1, sent.size());
+        assertEquals("R1", sent.get(0).get(0).getStoreNumber());
+    }
+}
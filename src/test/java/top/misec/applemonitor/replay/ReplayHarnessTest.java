@@ -0,0 +1,112 @@
+package top.misec.applemonitor.replay;
+
+import com.alibaba.fastjson2.JSONArray;
+import com.alibaba.fastjson2.JSONObject;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import top.misec.applemonitor.config.AppCfg;
+import top.misec.applemonitor.config.AppleTaskConfig;
+import top.misec.applemonitor.config.DeviceItem;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 离线回放测试
+ *
+ * @author moshi
+ */
+class ReplayHarnessTest {
+
+    private static final long BASE = 1_700_000_000_000L;
+
+    @TempDir
+    Path dir;
+
+    private static JSONObject pickupMessage(boolean available) {
+        JSONObject part = new JSONObject()
+                .fluentPut("pickupDisplay", available ? "available" : "unavailable")
+                .fluentPut("pickupSearchQuote", available ? "今天可取货" : "暂无供应")
+                .fluentPut("messageTypes", new JSONObject().fluentPut("regular",
+                        new JSONObject().fluentPut("storePickupProductTitle", "iPhone")));
+        JSONObject store = new JSONObject()
+                .fluentPut("storeNumber", "R448")
+                .fluentPut("storeName", "益田假日广场")
+                .fluentPut("partsAvailability", new JSONObject().fluentPut("P1", part))
+                .fluentPut("retailStore", new JSONObject().fluentPut("distanceWithUnit", "1 km")
+                        .fluentPut("address", new JSONObject().fluentPut("twoLineAddress", "深圳").fluentPut("daytimePhone", "400")));
+        return new JSONObject().fluentPut("stores", new JSONArray().fluentAdd(store));
+    }
+
+    private static AppCfg config(Integer alertIntervalMinutes) {
+        DeviceItem deviceItem = new DeviceItem();
+        deviceItem.setDeviceCode("P1");
+        deviceItem.setStoreWhiteList(Collections.emptyList());
+        AppleTaskConfig taskConfig = new AppleTaskConfig();
+        taskConfig.setCountry("CN");
+        taskConfig.setLocation("南山区");
+        taskConfig.setDeviceCodeList(Collections.singletonList(deviceItem));
+        taskConfig.setAlertIntervalMinutes(alertIntervalMinutes);
+        AppCfg appCfg = new AppCfg();
+        appCfg.setAppleTaskConfig(taskConfig);
+        return appCfg;
+    }
+
+    /**
+     * 录制：第60秒到货，第180秒重新无货，每分钟录制一次
+     */
+    private List<RecordedResponse> recording() {
+        File file = dir.resolve("recordings.jsonl").toFile();
+        ResponseRecorder recorder = new ResponseRecorder(file);
+        List<String> parts = Collections.singletonList("P1");
+        recorder.record("CN", parts, "南山区", pickupMessage(false), BASE);
+        recorder.record("CN", parts, "南山区", pickupMessage(true), BASE + 60_000);
+        recorder.record("CN", parts, "南山区", pickupMessage(true), BASE + 120_000);
+        recorder.record("CN", parts, "南山区", pickupMessage(false), BASE + 180_000);
+        return ResponseRecorder.load(file);
+    }
+
+    @Test
+    void reportsLagPushesAndRequests() {
+        ReplayReport report = new ReplayHarness(config(null), recording()).run(10_000, 1000);
+
+        // 第0秒到第180秒每10秒一轮，每轮请求一次
+        assertEquals(19, report.getCycles());
+        assertEquals(19, report.getRequests());
+        assertEquals(1, report.getOnsets());
+        assertEquals(1, report.getDetected());
+        // 第60秒触发的一轮在请求完成后（第61秒）发现到货
+        assertEquals(1000, report.getLagP50Millis());
+        // 未设置提醒间隔时有货期间每轮都推送
+        assertEquals(12, report.getPushes());
+    }
+
+    @Test
+    void alertIntervalSuppressesRepeats() {
+        ReplayReport report = new ReplayHarness(config(60), recording()).run(10_000, 1000);
+        assertEquals(1, report.getPushes());
+        assertEquals(0, report.getMissed());
+    }
+
+    @Test
+    void missingWhiteListMatchesAllStores() {
+        AppCfg config = config(null);
+        config.getAppleTaskConfig().getDeviceCodeList().get(0).setStoreWhiteList(null);
+        ReplayReport report = new ReplayHarness(config, recording()).run(10_000, 1000);
+        assertEquals(1, report.getOnsets());
+        assertEquals(1, report.getDetected());
+    }
+
+    @Test
+    void slowPollingMissesShortAvailability() {
+        // 轮询间隔大于有货时长时本次到货被漏报
+        ReplayReport report = new ReplayHarness(config(null), recording()).run(200_000, 1000);
+        assertEquals(1, report.getOnsets());
+        assertEquals(1, report.getMissed());
+        assertEquals(0, report.getPushes());
+    }
+}
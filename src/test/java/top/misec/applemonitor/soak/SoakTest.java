@@ -0,0 +1,318 @@
+package top.misec.applemonitor.soak;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.core.util.ZipUtil;
+import com.alibaba.fastjson2.JSONArray;
+import com.alibaba.fastjson2.JSONObject;
+import com.sun.management.UnixOperatingSystemMXBean;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+import top.misec.applemonitor.config.*;
+import top.misec.applemonitor.http.EgressPool;
+import top.misec.applemonitor.http.HeaderProfile;
+import top.misec.applemonitor.http.Hedger;
+import top.misec.applemonitor.http.SessionManager;
+import top.misec.applemonitor.job.AppleMonitor;
+import top.misec.applemonitor.push.PushDispatcher;
+import top.misec.applemonitor.push.impl.BarkChannel;
+import top.misec.applemonitor.push.impl.WebhookChannel;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 长时间运行测试
+ *
+ * 在压缩的时间上连续执行监控引擎，Apple站点和推送服务（Bark、Webhook）由本地HTTP服务代替，
+ * 门店按固定节奏到货和售罄，覆盖查询、解析、去重、推送的完整流程。查询与线上一样经过出口线路池、会话预热、
+ * 对冲请求和gzip流式解析，只是站点地址指向本地替身。每个采样窗口记录：
+ * 堆内存（GC后）、线程数、打开的文件描述符、GC停顿时间和平均每轮耗时，
+ * 跳过预热窗口后对各指标做最小二乘拟合，整个运行期间的拟合增长超过容忍值即失败
+ *
+ * 默认不执行，运行方式：mvn -B test -Psoak，可通过 -Dsoak.cycles=N 调整轮数（每轮代表10秒）
+ *
+ * @author moshi
+ */
+@Slf4j
+@Tag("soak")
+class SoakTest {
+
+    private static final String[] PARTS = {"MYLR3CH/A", "MYLT3CH/A", "MYLW3CH/A"};
+
+    private static final int STORES = 8;
+
+    private static final long POLL_MILLIS = 10_000;
+
+    /**
+     * 采样窗口数量，第一个窗口作为预热不参与拟合
+     */
+    private static final int WINDOWS = 21;
+
+    private final AtomicInteger appleRequests = new AtomicInteger();
+
+    /**
+     * 携带会话预热Cookie的库存请求数
+     */
+    private final AtomicInteger sessionRequests = new AtomicInteger();
+
+    private final AtomicInteger pushRequests = new AtomicInteger();
+
+    /**
+     * 虚拟时钟，每次库存请求前进1.5秒，与线上每条线路的请求间隔一致
+     */
+    private final AtomicLong clock = new AtomicLong(1_700_000_000_000L);
+
+    private HttpServer apple;
+
+    private HttpServer push;
+
+    private Level previousLevel;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        // 每轮数十条门店日志会淹没测试输出，也会让日志输出成为耗时的主要部分
+        Logger logger = (Logger) LoggerFactory.getLogger("top.misec");
+        previousLevel = logger.getLevel();
+        logger.setLevel(Level.WARN);
+
+        apple = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        // 会话预热页面，下发后续库存请求需要携带的Cookie
+        apple.createContext("/shop/buy-iphone", exchange -> {
+            exchange.getResponseHeaders().add("Set-Cookie", "as_sfa=soak; Path=/");
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+        apple.createContext("/shop/fulfillment-messages", exchange -> {
+            int request = appleRequests.incrementAndGet();
+            clock.addAndGet(1500);
+            if (StrUtil.contains(exchange.getRequestHeaders().getFirst("Cookie"), "as_sfa=soak")) {
+                sessionRequests.incrementAndGet();
+            }
+            Map<String, String> query = new HashMap<>();
+            for (String pair : exchange.getRequestURI().getQuery().split("&")) {
+                int index = pair.indexOf('=');
+                query.put(pair.substring(0, index), pair.substring(index + 1));
+            }
+            byte[] body = ZipUtil.gzip(fulfillment(URLDecoder.decode(query.get("parts.0"), StandardCharsets.UTF_8), request),
+                    StandardCharsets.UTF_8.name());
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        apple.start();
+
+        push = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        push.createContext("/push", exchange -> {
+            pushRequests.incrementAndGet();
+            exchange.getRequestBody().readAllBytes();
+            respond(exchange, "{\"code\":200,\"message\":\"success\"}");
+        });
+        push.createContext("/hook", exchange -> {
+            pushRequests.incrementAndGet();
+            exchange.getRequestBody().readAllBytes();
+            respond(exchange, "{}");
+        });
+        push.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        apple.stop(0);
+        push.stop(0);
+        ((Logger) LoggerFactory.getLogger("top.misec")).setLevel(previousLevel);
+    }
+
+    private static void respond(HttpExchange exchange, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, bytes.length);
+        exchange.getResponseBody().write(bytes);
+        exchange.close();
+    }
+
+    /**
+     * 模拟库存接口响应，每个门店每50次请求中有10次有货，到货时间按门店错开
+     */
+    private static String fulfillment(String part, int request) {
+        JSONArray stores = new JSONArray();
+        for (int i = 0; i < STORES; i++) {
+            boolean available = (request + i * 7) % 50 < 10;
+            JSONObject partAvailability = new JSONObject()
+                    .fluentPut("pickupDisplay", available ? "available" : "unavailable")
+                    .fluentPut("pickupSearchQuote", available ? "今天可取货" : "暂无供应")
+                    .fluentPut("messageTypes", new JSONObject()
+                            .fluentPut("regular", new JSONObject().fluentPut("storePickupProductTitle", "iPhone 16 Pro " + part)
+                                    .fluentPut("storePickupQuote", available ? "今天 在 Apple 门店" + i + " 取货" : "暂无供应")));
+            stores.add(new JSONObject()
+                    .fluentPut("storeNumber", "R" + (400 + i))
+                    .fluentPut("storeName", "门店" + i)
+                    .fluentPut("partsAvailability", new JSONObject().fluentPut(part, partAvailability))
+                    .fluentPut("retailStore", new JSONObject().fluentPut("distanceWithUnit", i + " 公里")
+                            .fluentPut("address", new JSONObject().fluentPut("twoLineAddress", "深圳市\n南山区").fluentPut("daytimePhone", "400-666-8800"))));
+        }
+        JSONObject delivery = new JSONObject().fluentPut(part, new JSONObject().fluentPut("regular", new JSONObject()
+                .fluentPut("deliveryOptions", new JSONArray().fluentAdd(new JSONObject().fluentPut("date", (request / 100 % 5 + 20) + "日")))));
+        return new JSONObject().fluentPut("body", new JSONObject().fluentPut("content", new JSONObject()
+                .fluentPut("pickupMessage", new JSONObject().fluentPut("stores", stores))
+                .fluentPut("deliveryMessage", delivery))).toJSONString();
+    }
+
+    private AppCfg config() {
+        String pushBase = "http://127.0.0.1:" + push.getAddress().getPort();
+        PushConfig pushConfig = new PushConfig();
+        pushConfig.setBarkPushUrl(pushBase + "/push");
+        pushConfig.setBarkPushToken("soak");
+        pushConfig.setWebhookUrl(pushBase + "/hook");
+
+        List<DeviceItem> deviceItems = new ArrayList<>();
+        for (String part : PARTS) {
+            DeviceItem deviceItem = new DeviceItem();
+            deviceItem.setDeviceCode(part);
+            deviceItem.setStoreWhiteList(Collections.emptyList());
+            deviceItem.setWatchDelivery(true);
+            deviceItem.setPushConfigs(Collections.singletonList(pushConfig));
+            deviceItems.add(deviceItem);
+        }
+        AppleTaskConfig taskConfig = new AppleTaskConfig();
+        taskConfig.setCountry("CN");
+        taskConfig.setLocation("广东 深圳 南山区");
+        taskConfig.setDeviceCodeList(deviceItems);
+        taskConfig.setAlertIntervalMinutes(1);
+        AppCfg appCfg = new AppCfg();
+        appCfg.setAppleTaskConfig(taskConfig);
+        return appCfg;
+    }
+
+    @Test
+    void resourcesStayFlatOverLongRun() {
+        int cycles = Integer.getInteger("soak.cycles", 2160);
+        int windowCycles = Math.max(1, cycles / WINDOWS);
+        String appleBase = "http://127.0.0.1:" + apple.getAddress().getPort();
+        PushDispatcher dispatcher = new PushDispatcher(Arrays.asList(new BarkChannel(), new WebhookChannel()));
+
+        // 线路间隔缩短为1毫秒，节奏由虚拟时钟体现；其余网络组件使用默认配置
+        EgressRouteConfig routeConfig = new EgressRouteConfig();
+        routeConfig.setMinIntervalMillis(1);
+        EgressConfig egressConfig = new EgressConfig();
+        egressConfig.setRoutes(Collections.singletonList(routeConfig));
+
+        // 查询和推送都经过真实的HTTP连接，查询走线上的线路池、会话、对冲和解析流程，连接和响应流的释放方式与线上一致
+        AppleMonitor monitor = new AppleMonitor(config(), appleBase, new EgressPool(egressConfig),
+                new SessionManager(new SessionConfig(), new HttpConfig(), HeaderProfile.BUILT_IN), new Hedger(new HedgeConfig()),
+                (deviceItem, messages) -> dispatcher.dispatch(deviceItem.getPushConfigs(), messages), clock::get);
+
+        List<Sample> samples = new ArrayList<>();
+        Sample previous = Sample.take(0, 0);
+        for (int window = 0; window < WINDOWS; window++) {
+            long cycleNanos = 0;
+            for (int i = 0; i < windowCycles; i++) {
+                long start = System.nanoTime();
+                monitor.monitor();
+                cycleNanos += System.nanoTime() - start;
+                clock.addAndGet(POLL_MILLIS);
+            }
+            Sample sample = Sample.take(cycleNanos / windowCycles / 1_000_000.0, previous.gcMillisTotal);
+            log.warn("soak窗口{}: {}", window, sample);
+            if (window > 0) {
+                samples.add(sample);
+            }
+            previous = sample;
+        }
+        log.warn("soak完成: {}轮，模拟{}小时，Apple请求{}次，推送请求{}次", windowCycles * WINDOWS,
+                windowCycles * WINDOWS * POLL_MILLIS / 3_600_000.0, appleRequests.get(), pushRequests.get());
+
+        assertTrue(pushRequests.get() > 0, "测试期间应有推送");
+        assertEquals(appleRequests.get(), sessionRequests.get(), "库存请求应携带预热会话的Cookie");
+        Sample first = samples.get(0);
+        assertFlat("堆内存(MB)", samples, s -> s.heapMb, Math.max(16, first.heapMb * 0.25));
+        assertFlat("线程数", samples, s -> s.threads, 2);
+        if (first.fds >= 0) {
+            assertFlat("文件描述符", samples, s -> s.fds, 5);
+        }
+        assertFlat("GC停顿(ms/窗口)", samples, s -> s.gcMillis, 50);
+        assertFlat("每轮耗时(ms)", samples, s -> s.cycleMillis, Math.max(2, first.cycleMillis * 0.5));
+    }
+
+    /**
+     * 最小二乘拟合的增长不超过容忍值
+     */
+    private static void assertFlat(String name, List<Sample> samples, Metric metric, double tolerance) {
+        int n = samples.size();
+        double meanX = (n - 1) / 2.0;
+        double meanY = samples.stream().mapToDouble(metric::of).average().orElse(0);
+        double numerator = 0;
+        double denominator = 0;
+        for (int i = 0; i < n; i++) {
+            numerator += (i - meanX) * (metric.of(samples.get(i)) - meanY);
+            denominator += (i - meanX) * (i - meanX);
+        }
+        double rise = denominator == 0 ? 0 : numerator / denominator * (n - 1);
+        log.warn("soak趋势 {}: 拟合增长{}，容忍{}", name, String.format("%.2f", rise), String.format("%.2f", tolerance));
+        assertTrue(rise <= tolerance, StrUtil.format("{}持续上升：拟合增长{}，超过容忍值{}", name, rise, tolerance));
+    }
+
+    @FunctionalInterface
+    private interface Metric {
+        double of(Sample sample);
+    }
+
+    /**
+     * 一个采样窗口结束时的资源状态
+     */
+    private static final class Sample {
+        private double heapMb;
+        private double threads;
+        private double fds;
+        private long gcMillisTotal;
+        private double gcMillis;
+        private double cycleMillis;
+
+        private static Sample take(double cycleMillis, long previousGcMillis) {
+            // 统计GC停顿后再主动GC，使堆内存反映存活对象
+            long gcTotal = 0;
+            for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+                gcTotal += Math.max(0, gc.getCollectionTime());
+            }
+            System.gc();
+            Sample sample = new Sample();
+            sample.heapMb = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed() / 1024.0 / 1024.0;
+            sample.threads = ManagementFactory.getThreadMXBean().getThreadCount();
+            OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+            sample.fds = os instanceof UnixOperatingSystemMXBean ? ((UnixOperatingSystemMXBean) os).getOpenFileDescriptorCount() : -1;
+            sample.gcMillis = gcTotal - previousGcMillis;
+            // 主动GC的耗时不计入下一个窗口
+            long afterGc = 0;
+            for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+                afterGc += Math.max(0, gc.getCollectionTime());
+            }
+            sample.gcMillisTotal = afterGc;
+            sample.cycleMillis = cycleMillis;
+            return sample;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("heap=%.1fMB threads=%.0f fds=%.0f gc=%.0fms cycle=%.2fms", heapMb, threads, fds, gcMillis, cycleMillis);
+        }
+    }
+}
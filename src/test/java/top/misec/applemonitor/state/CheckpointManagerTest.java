@@ -0,0 +1,99 @@
+package top.misec.applemonitor.state;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import top.misec.applemonitor.api.AvailabilityRecord;
+import top.misec.applemonitor.api.AvailabilityStore;
+import top.misec.applemonitor.cache.AlertLedger;
+import top.misec.applemonitor.cache.DeliveryQuoteLedger;
+import top.misec.applemonitor.cache.PartValidityCache;
+import top.misec.applemonitor.config.CheckpointConfig;
+import top.misec.applemonitor.config.EgressConfig;
+import top.misec.applemonitor.http.EgressPool;
+import top.misec.applemonitor.http.RoutePacing;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 运行状态检查点测试
+ *
+ * @author moshi
+ */
+class CheckpointManagerTest {
+
+    @TempDir
+    Path dir;
+
+    private CheckpointConfig config() {
+        CheckpointConfig config = new CheckpointConfig();
+        config.setPath(dir.resolve("state/checkpoint.jsonb").toString());
+        return config;
+    }
+
+    private CheckpointManager manager(CheckpointConfig config, AvailabilityStore store, AlertLedger ledger, EgressPool pool) {
+        return manager(config, store, ledger, new DeliveryQuoteLedger(), pool);
+    }
+
+    private CheckpointManager manager(CheckpointConfig config, AvailabilityStore store, AlertLedger ledger,
+                                      DeliveryQuoteLedger quotes, EgressPool pool) {
+        return new CheckpointManager(config, store, ledger, quotes, new PartValidityCache(100, 1000), pool);
+    }
+
+    @Test
+    void restartResumesDedupAndPacing() throws Exception {
+        long now = System.currentTimeMillis();
+        AvailabilityStore store = new AvailabilityStore();
+        store.update(new AvailabilityRecord("CN", "MYTM3CH/A", "R448", "Apple 益田假日广场", "iPhone 16 Pro Max",
+                true, "available", "今天", "今天可取货", "10月25日", "广东 深圳 南山区", now, now));
+        AlertLedger ledger = new AlertLedger();
+        ledger.markSent("CN", "MYTM3CH/A", "R448", now);
+        DeliveryQuoteLedger quotes = new DeliveryQuoteLedger();
+        quotes.update("CN", "MYTM3CH/A", "10月25日");
+        EgressPool pool = new EgressPool(new EgressConfig());
+        pool.onResponse(pool.getRoutes().get(0), 541);
+
+        CheckpointConfig config = config();
+        manager(config, store, ledger, quotes, pool).save();
+        assertTrue(Files.exists(dir.resolve("state/checkpoint.jsonb")));
+        assertFalse(Files.exists(dir.resolve("state/checkpoint.jsonb.tmp")));
+
+        // 模拟重启
+        AvailabilityStore restoredStore = new AvailabilityStore();
+        AlertLedger restoredLedger = new AlertLedger();
+        DeliveryQuoteLedger restoredQuotes = new DeliveryQuoteLedger();
+        EgressPool restoredPool = new EgressPool(new EgressConfig());
+        assertTrue(manager(config, restoredStore, restoredLedger, restoredQuotes, restoredPool).restore());
+
+        AvailabilityRecord record = restoredStore.get("CN", "R448", "MYTM3CH/A");
+        assertNotNull(record);
+        assertTrue(record.isAvailable());
+        assertEquals("Apple 益田假日广场", record.getStoreName());
+        assertFalse(restoredLedger.shouldAlert("CN", "MYTM3CH/A", "R448", 600_000, now + 1000));
+        // 恢复的送达日期参与下一轮的变化比较
+        assertEquals("10月25日", restoredQuotes.update("CN", "MYTM3CH/A", "10月28日"));
+        RoutePacing pacing = restoredPool.snapshotPacing().get(0);
+        assertEquals(pool.snapshotPacing().get(0).getIntervalMillis(), pacing.getIntervalMillis());
+        assertEquals(1, pacing.getConsecutiveRejections());
+    }
+
+    @Test
+    void expiredOrCorruptCheckpointIsIgnored() throws Exception {
+        CheckpointConfig config = config();
+        config.setMaxAgeMinutes(0);
+        AlertLedger ledger = new AlertLedger();
+        ledger.markSent("CN", "MYTM3CH/A", "R448", System.currentTimeMillis());
+        EgressPool pool = new EgressPool(new EgressConfig());
+        manager(config, new AvailabilityStore(), ledger, pool).save();
+        Thread.sleep(5);
+
+        AlertLedger restoredLedger = new AlertLedger();
+        assertFalse(manager(config, new AvailabilityStore(), restoredLedger, pool).restore());
+        assertTrue(restoredLedger.snapshot().isEmpty());
+
+        Files.write(dir.resolve("state/checkpoint.jsonb"), new byte[]{1, 2, 3});
+        assertFalse(manager(config(), new AvailabilityStore(), restoredLedger, pool).restore());
+    }
+}
@@ -0,0 +1,76 @@
+package top.misec.applemonitor.sweep;
+
+import cn.hutool.core.io.FileUtil;
+import com.alibaba.fastjson2.JSONArray;
+import com.alibaba.fastjson2.JSONObject;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 全型号库存扫描测试
+ *
+ * @author moshi
+ */
+class CatalogSweepTest {
+
+    @TempDir
+    Path dir;
+
+    private static JSONObject store(String storeNumber, String storeName, Map<String, String> displays) {
+        JSONObject partsAvailability = new JSONObject();
+        displays.forEach((part, display) -> partsAvailability.put(part, new JSONObject().fluentPut("pickupDisplay", display)));
+        return new JSONObject().fluentPut("storeNumber", storeNumber).fluentPut("storeName", storeName)
+                .fluentPut("partsAvailability", partsAvailability);
+    }
+
+    @Test
+    void parsesPartsFromDeviceCodeTable() {
+        String markdown = "| iPhone 15 Pro 原色 | MTQ63CH/A | MTQA3CH/A |\n| iPhone 15 Pro 蓝色 | MTQ73CH/A | MTQA3CH/A |\n"
+                + "| iPhone 17 Pro 银色 | 无此配置 | MG8T4CH/A |\n日本 MTQA3J/A";
+        assertEquals(Arrays.asList("MTQ63CH/A", "MTQA3CH/A", "MTQ73CH/A", "MG8T4CH/A", "MTQA3J/A"),
+                CatalogSweep.parseParts(markdown));
+    }
+
+    @Test
+    void batchesPartsAcrossLocationsIntoMatrix() throws Exception {
+        List<String> requests = new CopyOnWriteArrayList<>();
+        CatalogSweep sweep = new CatalogSweep((parts, location) -> {
+            requests.add(location + parts);
+            JSONArray stores = new JSONArray();
+            Map<String, String> displays = new LinkedHashMap<>();
+            for (String part : parts) {
+                // 南山区附近的门店只有 P1 可取货，福田区返回同一门店时均无货
+                displays.put(part, "南山区".equals(location) && "P1".equals(part) ? "available" : "unavailable");
+            }
+            stores.add(store("R448", "益田假日广场", displays));
+            if ("福田区".equals(location)) {
+                stores.add(store("R484", "深圳万象城", displays));
+            }
+            return new JSONObject().fluentPut("stores", stores);
+        }, 2, 4);
+
+        List<String> parts = Arrays.asList("P1", "P2", "P3");
+        SweepMatrix matrix = sweep.run(parts, Arrays.asList("南山区", "福田区"));
+
+        // 3个型号按每批2个分为2批，2个地区共4次请求
+        assertEquals(4, requests.size());
+        assertEquals(2, matrix.storeCount());
+        assertEquals("available", matrix.get("R448", "P1"));
+        assertEquals("unavailable", matrix.get("R484", "P3"));
+        assertEquals(1, matrix.availableCount());
+
+        File csv = dir.resolve("sweep.csv").toFile();
+        matrix.writeCsv(csv);
+        List<String> lines = FileUtil.readLines(csv, StandardCharsets.UTF_8);
+        assertEquals("storeNumber,storeName,P1,P2,P3", lines.get(0));
+        assertEquals("R448,益田假日广场,available,unavailable,unavailable", lines.get(1));
+    }
+}